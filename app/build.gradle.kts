@@ -9,6 +9,8 @@ plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
     id("com.github.johnrengelman.shadow") version "7.1.2" // Use the latest version
+    // JMH benchmarks in src/jmh/java, run with ./gradlew jmh
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 repositories {
@@ -24,6 +26,10 @@ dependencies {
 
     // This dependency is used by the application.
     implementation(libs.guava)
+    // Pure-Java xz decoder for .tar.xz packages
+    implementation(libs.xz)
+    // The download benchmarks share the in-process RangeServer of the tests
+    jmhImplementation(sourceSets.test.get().output)
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -43,6 +49,13 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    // Narrow a run down with e.g. ./gradlew jmh -Pjmh.includes=ExtractBenchmark
+    (findProperty("jmh.includes") as String?)?.let { includes = listOf(it) }
+    resultFormat = "JSON"
+    includeTests = true
+}
+
 tasks.shadowJar {
     // 1. Set the 'Main-Class' for the executable JAR
     manifest {
@@ -55,4 +68,35 @@ tasks.shadowJar {
     // Optional: Change the output JAR name (defaults to build/libs/project-name-version-all.jar)
     // archiveBaseName.set("my-executable-app")
     // archiveClassifier.set("") // Remove the '-all' classifier
-}
\ No newline at end of file
+}
+// Startup-optimized mode: an AppCDS archive of every class loaded up to the first window.
+// The training run opens the start window once, so it needs a display, and exits after the first frame.
+// Start with: java -XX:SharedArchiveFile=app/build/libs/app-all.jsa -jar app/build/libs/app-all.jar
+// Each start appends its time to first frame to ~/.swing-installer/startup.log.
+val cdsLauncher = javaToolchains.launcherFor { languageVersion = JavaLanguageVersion.of(24) }
+val shadowJarFile = tasks.shadowJar.flatMap { it.archiveFile }
+val cdsArchiveFile = shadowJarFile.map { File(it.asFile.path.removeSuffix(".jar") + ".jsa") }
+
+val cdsArchive by tasks.registering(Exec::class) {
+    group = "distribution"
+    description = "Builds a class data sharing archive for the shadow jar."
+    inputs.file(shadowJarFile)
+    outputs.file(cdsArchiveFile)
+    doFirst {
+        executable = cdsLauncher.get().executablePath.asFile.absolutePath
+        args("-XX:ArchiveClassesAtExit=${cdsArchiveFile.get().absolutePath}", "-Dinstaller.cdsTraining=true",
+            "-jar", shadowJarFile.get().asFile.absolutePath)
+    }
+}
+
+tasks.register<JavaExec>("runFast") {
+    group = "application"
+    description = "Runs the shadow jar with the class data sharing archive."
+    dependsOn(cdsArchive)
+    javaLauncher = cdsLauncher
+    classpath = files(shadowJarFile)
+    mainClass = application.mainClass
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-XX:SharedArchiveFile=${cdsArchiveFile.get().absolutePath}")
+    })
+}
@@ -0,0 +1,108 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Test data shared by the benchmarks: archives and directory trees in two shapes.
+ * <ul>
+ *     <li>{@code few-large}: 8 files of 8 MiB each, dominated by copying and inflating.</li>
+ *     <li>{@code many-small}: 4000 files of 4 KiB in 40 directories, dominated by per-file
+ *     system calls, like the Node distribution or a {@code node_modules} tree.</li>
+ * </ul>
+ * The content is half random, half repeated, so it deflates to roughly half its size.
+ */
+final class BenchmarkData {
+
+    static final String FEW_LARGE = "few-large";
+    static final String MANY_SMALL = "many-small";
+
+    private static final String ROOT = "bench-1.0/";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Writes a zip archive of the given shape, with all entries below a single root directory.
+     * @param zipFilePath The file to write.
+     * @param shape {@link #FEW_LARGE} or {@link #MANY_SMALL}.
+     * @throws IOException If the archive cannot be written.
+     */
+    static void createArchive(Path zipFilePath, String shape) throws IOException {
+        Random random = new Random(42);
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
+            zipOut.putNextEntry(new ZipEntry(ROOT));
+            zipOut.closeEntry();
+            int files = fileCount(shape);
+            for (int i = 0; i < files; i++) {
+                zipOut.putNextEntry(new ZipEntry(ROOT + relativeFileName(shape, i)));
+                zipOut.write(content(random, fileSize(shape)));
+                zipOut.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Creates a directory tree of the given shape, as an extraction would.
+     * @param root The directory to create the tree in. It is created if needed.
+     * @param shape {@link #FEW_LARGE} or {@link #MANY_SMALL}.
+     * @throws IOException If the tree cannot be written.
+     */
+    static void createTree(Path root, String shape) throws IOException {
+        Random random = new Random(42);
+        int files = fileCount(shape);
+        for (int i = 0; i < files; i++) {
+            Path file = root.resolve(relativeFileName(shape, i));
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(content(random, fileSize(shape)));
+            }
+        }
+    }
+
+    /**
+     * Creates a byte array that is half random and half zeros.
+     * @param random The source of the random half.
+     * @param size The size in bytes.
+     * @return The bytes.
+     */
+    static byte[] content(Random random, int size) {
+        byte[] data = new byte[size];
+        byte[] randomHalf = new byte[size / 2];
+        random.nextBytes(randomHalf);
+        System.arraycopy(randomHalf, 0, data, 0, randomHalf.length);
+        return data;
+    }
+
+    /**
+     * @param phase The phase the tracker is for.
+     * @return A tracker that reports to nobody, so the benchmarks measure only the I/O.
+     */
+    static ProgressTracker silentTracker(InstallProgressListener.Phase phase) {
+        return new ProgressTracker((appName, p, bytesDone, bytesTotal, entriesDone, entriesTotal, bytesPerSecond, etaMillis) -> {
+        }, "benchmark", phase);
+    }
+
+    private static int fileCount(String shape) {
+        return switch (shape) {
+            case FEW_LARGE -> 8;
+            case MANY_SMALL -> 4000;
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+    }
+
+    private static int fileSize(String shape) {
+        return FEW_LARGE.equals(shape) ? 8 * 1024 * 1024 : 4 * 1024;
+    }
+
+    private static String relativeFileName(String shape, int index) {
+        return FEW_LARGE.equals(shape)
+                ? "data/file-" + index + ".bin"
+                : "lib/dir-" + (index % 40) + "/file-" + index + ".js";
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SoftwareInstaller#deleteDirectory} on an installed tree.
+ * The tree is recreated before every iteration, outside the measurement.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeleteBenchmark {
+
+    @Param({ BenchmarkData.FEW_LARGE, BenchmarkData.MANY_SMALL })
+    public String shape;
+
+    @Param({ "1", "4", "16" })
+    public int threads;
+
+    private Path workDir;
+    private Path tree;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void createWorkDir() throws IOException {
+        workDir = Files.createTempDirectory("delete-benchmark");
+    }
+
+    @Setup(Level.Iteration)
+    public void createTree() throws IOException {
+        tree = workDir.resolve("tree-" + iteration++);
+        BenchmarkData.createTree(tree, shape);
+    }
+
+    @Benchmark
+    public ParallelDeleter.DeleteResult delete() throws IOException {
+        return SoftwareInstaller.deleteDirectory(tree, new ParallelDeleter(threads));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkDir() throws IOException {
+        SoftwareInstaller.deleteDirectory(workDir);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SoftwareInstaller#downloadFile} of a 32 MiB file from an in-process {@link RangeServer}.
+ * With {@code acceptRanges} off the server forces the single-stream path regardless of the connection count;
+ * only that path goes through the {@link IoEngine}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+
+    @Param({ "true", "false" })
+    public boolean acceptRanges;
+
+    @Param({ "4096", "65536" })
+    public int bufferSize;
+
+    @Param({ "stream", "nio" })
+    public String ioEngine;
+
+    @Param({ "1", "4" })
+    public int connections;
+
+    private RangeServer server;
+    private Path workDir;
+    private Path target;
+    private SoftwareInstaller installer;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = new RangeServer(BenchmarkData.content(new Random(42), FILE_SIZE), acceptRanges);
+        workDir = Files.createTempDirectory("download-benchmark");
+        target = workDir.resolve("archive.zip");
+        installer = new SoftwareInstaller();
+        installer.setBufferSize(bufferSize);
+        installer.setDownloadConnections(connections);
+        installer.setIoEngine(IoEngine.forName(ioEngine));
+    }
+
+    @Benchmark
+    public SegmentedDownloader.RangeProbe download() throws IOException {
+        return installer.downloadFile(server.url("archive.zip"), target,
+                BenchmarkData.silentTracker(InstallProgressListener.Phase.DOWNLOAD));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.close();
+        SoftwareInstaller.deleteDirectory(workDir);
+    }
+}
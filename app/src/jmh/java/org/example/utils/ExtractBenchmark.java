@@ -0,0 +1,86 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SoftwareInstaller#extractZipFile} into an empty directory.
+ * Every iteration extracts once into a fresh directory, which is deleted outside the measurement.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractBenchmark {
+
+    @Param({ BenchmarkData.FEW_LARGE, BenchmarkData.MANY_SMALL })
+    public String shape;
+
+    @Param({ "4096", "65536" })
+    public int bufferSize;
+
+    @Param({ "stream", "nio" })
+    public String ioEngine;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "false", "true" })
+    public boolean indexed;
+
+    private Path workDir;
+    private Path archive;
+    private Path destDir;
+    private SoftwareInstaller installer;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        workDir = Files.createTempDirectory("extract-benchmark");
+        archive = workDir.resolve("archive.zip");
+        BenchmarkData.createArchive(archive, shape);
+        installer = new SoftwareInstaller();
+        installer.setBufferSize(bufferSize);
+        installer.setExtractionThreads(threads);
+        installer.setIoEngine(IoEngine.forName(ioEngine));
+        installer.setIndexedExtraction(indexed);
+    }
+
+    @Setup(Level.Iteration)
+    public void createDestination() throws IOException {
+        destDir = Files.createDirectory(workDir.resolve("dest-" + iteration++));
+    }
+
+    @Benchmark
+    public String extract() throws IOException {
+        return installer.extractZipFile(archive, destDir, BenchmarkData.silentTracker(InstallProgressListener.Phase.EXTRACT));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteDestination() throws IOException {
+        SoftwareInstaller.deleteDirectory(destDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkDir() throws IOException {
+        SoftwareInstaller.deleteDirectory(workDir);
+    }
+}
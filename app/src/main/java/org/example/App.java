@@ -3,11 +3,38 @@
  */
 package org.example;
 
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
+import org.example.utils.FatBundle;
+import org.example.utils.InstallerPaths;
+import org.example.utils.StartupMetrics;
 import org.example.windows.*;
 
 public class App {
+    // Set by the cdsArchive Gradle task: show the first window, then exit so the JVM writes the archive
+    private static final boolean CDS_TRAINING = Boolean.getBoolean("installer.cdsTraining");
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Headless install from a manifest; must return before anything below loads AWT
+            System.exit(BatchInstall.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Only the start window is built up front, on the event dispatch thread;
+        // the other windows are built when an option is chosen
+        SwingUtilities.invokeLater(App::showStartWindow);
+    }
+
+    private static void showStartWindow() {
         StartWindow startWindow = new StartWindow();
+        startWindow.onShown(() -> {
+            StartupMetrics.recordFirstFrame();
+            if (CDS_TRAINING) {
+                System.exit(0);
+            }
+        });
         startWindow.onSubmit((selectedOption, directory) -> {
             switch (selectedOption) {
                 case "Install Client":
@@ -15,11 +42,27 @@ public class App {
                     Installing installingWindow = new Installing();
                     installingWindow.createWindow();
                     System.out.println("Selected option: " + selectedOption);
+                    // Runs in the background; the installing window closes when it is done.
+                    // A FAT installer already carries the resolved node_modules.
+                    String[][] commands = FatBundle.isEmbedded()
+                        ? new String[][]{ Console.LAUNCH_COMMAND }
+                        : new String[][]{
+                            Console.INSTALL_DEPENDENCIES_COMMAND,
+                            Console.LAUNCH_COMMAND
+                        };
+                    // If nothing changed since the last completed installation, only the launcher starts
+                    Console.createWindow(commands, installingWindow, installingWindow::closeWindow, null, true);
+                    break;
+                case "Create FAT Installer":
+                    startWindow.closeWindow();
+                    Installing bundlingWindow = new Installing();
+                    bundlingWindow.createWindow();
+                    System.out.println("Selected option: " + selectedOption);
+                    // Install and resolve node_modules as usual, then pack everything into an offline installer
+                    Path fatInstaller = InstallerPaths.userHome().resolve("Downloads").resolve("minecraft-installer-fat.jar");
                     Console.createWindow(new String[][]{
-                        {"powershell.exe", "npm", "i"},
-                        {"powershell.exe", "npm", "run", "start"}
-                    });
-                    installingWindow.closeWindow();
+                        Console.INSTALL_DEPENDENCIES_COMMAND
+                    }, bundlingWindow, bundlingWindow::closeWindow, fatInstaller);
                     break;
                 default:
                     System.out.println("Unknown option selected: " + selectedOption);
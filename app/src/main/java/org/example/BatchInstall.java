@@ -0,0 +1,115 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.example.utils.*;
+
+/**
+ * Headless entry point: installs the packages of a {@link BatchManifest} and runs its commands without any UI,
+ * e.g. {@code java -jar app-all.jar --batch install.properties}.
+ * <p>
+ * Nothing here touches AWT or Swing, so it runs on machines without a display. Packages install in parallel
+ * up to the manifest's {@code parallelism}; commands run in order once all packages are in place. The only
+ * output on standard output is the JSON summary of the run, in the format of the install report; all progress
+ * and log lines go to standard error. The exit code is 0 if every step succeeded, 1 if a step failed and 2 if
+ * the manifest could not be used.
+ */
+public class BatchInstall {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs a batch installation.
+     * @param args The path of the manifest.
+     * @return The exit code.
+     */
+    public static int run(String[] args) {
+        // Nothing should load AWT, but if a library does, it must not look for a display
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 1) {
+            System.err.println("Usage: --batch <manifest.properties>");
+            return 2;
+        }
+        // Keep standard output for the summary, so scripts can parse it
+        PrintStream summaryOut = System.out;
+        System.setOut(System.err);
+
+        BatchManifest manifest;
+        try {
+            manifest = BatchManifest.read(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.err.println("Cannot use manifest: " + e.getMessage());
+            return 2;
+        }
+
+        InstallTelemetry telemetry = new InstallTelemetry();
+        SoftwareInstaller softwareInstaller = new SoftwareInstaller();
+        softwareInstaller.setTelemetry(telemetry);
+        softwareInstaller.addProgressListener(new ConsoleProgressListener());
+        softwareInstaller.setDownloadConnections(4);
+        softwareInstaller.setMirrorStats(MirrorStats.load());
+        softwareInstaller.setExtractionThreads(Runtime.getRuntime().availableProcessors());
+        softwareInstaller.setIncrementalInstall(true);
+        softwareInstaller.setIoEngine(new NioIoEngine());
+        softwareInstaller.setIndexedExtraction(true);
+
+        InstallPlan plan = new InstallPlan();
+        try {
+            for (BatchManifest.Package pkg : manifest.getPackages()) {
+                plan.addPackage(pkg.id(), softwareInstaller, pkg.urls(), pkg.checksum(), pkg.appName(),
+                        pkg.relativeBinPath(), pkg.skipPath(), pkg.dependsOn().toArray(new String[0]));
+            }
+            String[] previous = manifest.getPackages().stream().map(BatchManifest.Package::id).toArray(String[]::new);
+            for (BatchManifest.Command command : manifest.getCommands()) {
+                plan.addStep(command.id(), () -> runCommand(command, telemetry), previous);
+                previous = new String[] { command.id() };
+            }
+        } catch (IllegalArgumentException e) {
+            // Duplicate ids or a dependency on a package that is not listed before
+            System.err.println("Cannot use manifest: " + e.getMessage());
+            return 2;
+        }
+
+        InstallScheduler.Report report = new InstallScheduler(manifest.getParallelism()).run(plan);
+        report.print();
+        try {
+            Path reportFile = telemetry.writeReport(report);
+            System.err.println("Install report written to " + reportFile);
+        } catch (IOException e) {
+            System.err.println("Could not write install report: " + e.getMessage());
+        }
+        summaryOut.print(telemetry.toJson(report));
+        summaryOut.flush();
+        return report.succeeded() ? 0 : 1;
+    }
+
+    private static void runCommand(BatchManifest.Command command, InstallTelemetry telemetry) throws Exception {
+        long start = System.nanoTime();
+        List<String> args = command.command();
+        ProcessRunner.Result result = new ProcessRunner(command.timeout()).run(args, command.workingDir(),
+                event -> System.err.println("[" + command.id() + "] " + event.line()));
+
+        String summary = result.timedOut()
+                ? String.join(" ", args) + " timed out after " + command.timeout().toSeconds() + " s and was stopped"
+                : String.join(" ", args) + " exited with code " + result.exitCode() + " after " + result.wallTimeMs() + " ms";
+        System.err.println(summary);
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("exitCode", (long) result.exitCode());
+        counters.put("firstOutputMs", result.firstOutputMs());
+        counters.put("timedOut", result.timedOut() ? 1L : 0L);
+        telemetry.recordPhase(command.id(), "command", start, System.nanoTime(), 0, counters);
+        // A stopped process may still exit with 0, e.g. if it handles the signal
+        if (result.timedOut() || result.exitCode() != 0) {
+            throw new IOException(summary);
+        }
+    }
+}
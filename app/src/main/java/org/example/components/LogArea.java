@@ -0,0 +1,130 @@
+package org.example.components;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+
+/**
+ * Read-only text area for streaming log output from background threads.
+ * <p>
+ * The Swing components are only built on the first {@link #getPanel()}, so a log can be created and
+ * filled by a worker before its window exists.
+ * <p>
+ * {@link #append(String)} may be called from any thread and only stores the line in a bounded
+ * ring buffer. A Swing timer drains the buffer every {@code FLUSH_INTERVAL_MS} and appends all
+ * pending lines to the text area in a single update, so a chatty process costs one repaint per
+ * tick instead of one per line. If producers outrun the timer, the oldest pending lines are
+ * dropped and replaced by a short notice. The text area itself keeps at most {@code maxLines}
+ * lines; older ones are removed from the top.
+ */
+public class LogArea {
+    private static final int FLUSH_INTERVAL_MS = 50;
+
+    private final int maxLines;
+    // Built on the event dispatch thread by the first getPanel()
+    private JTextArea textArea;
+    private JScrollPane scrollPane;
+    private Timer flushTimer;
+
+    // Ring buffer of lines waiting to be shown, guarded by "this"
+    private final String[] pending;
+    private int head;
+    private int count;
+    private long dropped;
+
+    /**
+     * Creates a log area with room for 10000 pending lines that keeps the last 5000 lines on screen.
+     */
+    public LogArea() {
+        this(10_000, 5_000);
+    }
+
+    /**
+     * @param pendingCapacity How many lines may wait for the next flush before the oldest are dropped.
+     * @param maxLines How many lines the text area keeps.
+     */
+    public LogArea(int pendingCapacity, int maxLines) {
+        this.pending = new String[pendingCapacity];
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Returns the scrollable text area, building it on the first call. Must be called on the event dispatch thread.
+     * @return The component to add to a window.
+     */
+    public JScrollPane getPanel() {
+        if (scrollPane == null) {
+            textArea = new JTextArea();
+            textArea.setEditable(false);
+            scrollPane = new JScrollPane(textArea);
+            flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+            flushTimer.start();
+        }
+        return scrollPane;
+    }
+
+    /**
+     * Queues a line for display. Safe to call from any thread.
+     * @param line The line to show, without a trailing newline.
+     */
+    public synchronized void append(String line) {
+        if (count == pending.length) {
+            // Buffer full: overwrite the oldest line
+            head = (head + 1) % pending.length;
+            count--;
+            dropped++;
+        }
+        pending[(head + count) % pending.length] = line;
+        count++;
+    }
+
+    /**
+     * Stops the flush timer after showing whatever is still pending.
+     */
+    public void stop() {
+        SwingUtilities.invokeLater(() -> {
+            if (flushTimer != null) {
+                flushTimer.stop();
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Runs on the event dispatch thread: moves all pending lines into the text area at once.
+     */
+    private void flush() {
+        StringBuilder batch = new StringBuilder();
+        synchronized (this) {
+            if (count == 0 && dropped == 0) {
+                return;
+            }
+            if (dropped > 0) {
+                batch.append("... ").append(dropped).append(" lines dropped ...\n");
+                dropped = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % pending.length;
+                batch.append(pending[index]).append('\n');
+                pending[index] = null;
+            }
+            head = 0;
+            count = 0;
+        }
+        textArea.append(batch.toString());
+        trimToMaxLines();
+        textArea.setCaretPosition(textArea.getDocument().getLength());
+    }
+
+    private void trimToMaxLines() {
+        int excess = textArea.getLineCount() - maxLines;
+        if (excess <= 0) {
+            return;
+        }
+        try {
+            textArea.getDocument().remove(0, textArea.getLineStartOffset(excess));
+        } catch (BadLocationException e) {
+            // Cannot happen, the offset comes from the document itself
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * The archive formats {@link SoftwareInstaller#installSoftware} can install, recognized by file name.
+ * <p>
+ * Every format can extract from a stream in a single forward pass, decompressing as it reads, so an
+ * archive can be extracted while it downloads without any temporary file. Zip is special: its
+ * authoritative index is the central directory at the end, so the installer prefers the
+ * central-directory extractors (parallel, indexed, incremental) for a downloaded zip and only streams
+ * it on request, see {@link StreamingZipExtractor}. The tar formats have no index and are always
+ * extracted in stream order; the installer still downloads them completely first, so their downloads
+ * resume, use mirrors and land in the download cache like any other.
+ */
+public enum ArchiveFormat {
+
+    ZIP(".zip") {
+        @Override
+        public Result extract(InputStream archive, Path destDir, ProgressTracker progress) throws IOException {
+            return StreamingZipExtractor.extractEntries(archive, destDir, progress, new ArrayList<>());
+        }
+    },
+
+    TAR_GZ(".tar.gz", ".tgz") {
+        @Override
+        public Result extract(InputStream archive, Path destDir, ProgressTracker progress) throws IOException {
+            // GZIPInputStream also reads archives made of several concatenated gzip members
+            return new TarExtractor().extract(new GZIPInputStream(archive, BUFFER_SIZE), destDir, progress);
+        }
+    },
+
+    TAR_XZ(".tar.xz", ".txz") {
+        @Override
+        public Result extract(InputStream archive, Path destDir, ProgressTracker progress) throws IOException {
+            // XZInputStream reads byte by byte internally, so it needs a buffered source
+            return new TarExtractor().extract(new XZInputStream(new BufferedInputStream(archive, BUFFER_SIZE)),
+                    destDir, progress);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Result of an extraction.
+     * @param rootDirectoryName The detected root directory of the archive, or null.
+     * @param fileNames The names of the files (and links) written, as they appear in the archive.
+     */
+    public record Result(String rootDirectoryName, List<String> fileNames) {
+    }
+
+    private final String[] extensions;
+
+    ArchiveFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Extracts an archive in one forward pass, decompressing as it reads.
+     * Entry names are checked with {@link SoftwareInstaller#resolveEntryPath}, so nothing is written outside {@code destDir}.
+     * @param archive The archive as it is stored or downloaded. It is read but not closed.
+     * @param destDir The directory to extract into. It should be empty.
+     * @param progress Tracks the extracted entries.
+     * @return The detected root directory and the files written.
+     * @throws IOException If the archive is invalid or cannot be extracted.
+     */
+    public abstract Result extract(InputStream archive, Path destDir, ProgressTracker progress) throws IOException;
+
+    /**
+     * @param fileName The file name of an archive, e.g. {@code node-v22.16.0-linux-x64.tar.xz}.
+     * @return Whether it has one of this format's extensions.
+     */
+    public boolean matches(String fileName) {
+        String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param fileName The file name of an archive.
+     * @return Its format; zip for any name no format claims, as the installer always assumed.
+     */
+    public static ArchiveFormat forFileName(String fileName) {
+        for (ArchiveFormat format : values()) {
+            if (format.matches(fileName)) {
+                return format;
+            }
+        }
+        return ZIP;
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Declarative description of a headless installation: the packages to install and the commands to run
+ * afterwards. It is a {@link Properties} file; packages and commands are numbered from 1 without gaps:
+ * <pre>
+ * # At most this many steps run at once (default: one per processor)
+ * parallelism=4
+ *
+ * package.1.id=node
+ * # Equivalent mirrors, separated by spaces; the fastest one serves the download.
+ * # More than one URL requires sha256 or checksums, so no mirror can serve other content
+ * package.1.url=https://nodejs.org/dist/v22.16.0/node-v22.16.0-linux-x64.zip
+ * package.1.appName=Node
+ * package.1.relativeBinPath=bin
+ * package.1.skipPath=true
+ * # Either the archive's digest or a sha256sum file listing it; both are optional
+ * package.1.sha256=...
+ * package.1.checksums=https://nodejs.org/dist/v22.16.0/SHASUMS256.txt
+ * # Ids of earlier packages that must be installed first
+ * package.1.dependsOn=
+ *
+ * # Runs after all packages, in order; arguments are separated by spaces
+ * command.1=npm i
+ * # Relative to the user's home; default is the home itself
+ * command.1.workingDir=Minecraft/minecraft-launcher-main
+ * # Stopped and counted as failed if it runs longer; default is no limit
+ * command.1.timeoutSeconds=600
+ * </pre>
+ */
+public final class BatchManifest {
+
+    /**
+     * A package to install.
+     * @param id The unique id of its install step.
+     * @param urls The URLs of identical copies of the archive, the canonical one first.
+     * @param appName The name of the extraction directory under the user's home.
+     * @param relativeBinPath The path to add to the PATH, relative to the extracted root.
+     * @param skipPath Whether to skip the PATH modification.
+     * @param checksum The digest the archive must have, or null to not verify it.
+     * @param dependsOn The ids of packages that must be installed first.
+     */
+    public record Package(String id, List<String> urls, String appName, String relativeBinPath, boolean skipPath,
+                          ExpectedChecksum checksum, List<String> dependsOn) {
+    }
+
+    /**
+     * A command to run once all packages are installed.
+     * @param id The unique id of its step.
+     * @param command The program and its arguments.
+     * @param workingDir The directory to run it in.
+     * @param timeout How long it may run before it is stopped, or null for no limit.
+     */
+    public record Command(String id, List<String> command, Path workingDir, Duration timeout) {
+    }
+
+    private final int parallelism;
+    private final List<Package> packages;
+    private final List<Command> commands;
+
+    private BatchManifest(int parallelism, List<Package> packages, List<Command> commands) {
+        this.parallelism = parallelism;
+        this.packages = packages;
+        this.commands = commands;
+    }
+
+    /**
+     * Reads a manifest.
+     * @param manifestPath The manifest file.
+     * @return The manifest.
+     * @throws IOException If the file cannot be read or a required key is missing or invalid.
+     */
+    public static BatchManifest read(Path manifestPath) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifestPath)) {
+            properties.load(in);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed manifest " + manifestPath + ": " + e.getMessage(), e);
+        }
+
+        int parallelism;
+        try {
+            parallelism = Integer.parseInt(properties.getProperty("parallelism",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("parallelism must be a number in " + manifestPath);
+        }
+        if (parallelism < 1) {
+            throw new IOException("parallelism must be at least 1 in " + manifestPath);
+        }
+
+        List<Package> packages = new ArrayList<>();
+        for (int i = 1; properties.containsKey("package." + i + ".id"); i++) {
+            String prefix = "package." + i + ".";
+            String sha256 = optional(properties, prefix + "sha256");
+            String checksumsUrl = optional(properties, prefix + "checksums");
+            ExpectedChecksum checksum;
+            try {
+                checksum = sha256 != null ? ExpectedChecksum.sha256(sha256)
+                        : checksumsUrl != null ? ExpectedChecksum.fromChecksumFile(checksumsUrl) : null;
+            } catch (IllegalArgumentException e) {
+                throw new IOException(prefix + "sha256 is invalid in " + manifestPath + ": " + e.getMessage());
+            }
+            List<String> urls = split(required(properties, prefix + "url", manifestPath));
+            if (urls.size() > 1 && checksum == null) {
+                throw new IOException(prefix + "url lists mirrors, so " + prefix + "sha256 or " + prefix
+                        + "checksums is required in " + manifestPath);
+            }
+            packages.add(new Package(
+                    required(properties, prefix + "id", manifestPath),
+                    urls,
+                    required(properties, prefix + "appName", manifestPath),
+                    properties.getProperty(prefix + "relativeBinPath", "").trim(),
+                    Boolean.parseBoolean(properties.getProperty(prefix + "skipPath", "false").trim()),
+                    checksum,
+                    split(properties.getProperty(prefix + "dependsOn", ""))));
+        }
+
+        List<Command> commands = new ArrayList<>();
+        for (int i = 1; properties.containsKey("command." + i); i++) {
+            String workingDir = optional(properties, "command." + i + ".workingDir");
+            String timeoutSeconds = optional(properties, "command." + i + ".timeoutSeconds");
+            Duration timeout = null;
+            if (timeoutSeconds != null) {
+                try {
+                    timeout = Duration.ofSeconds(Long.parseLong(timeoutSeconds));
+                } catch (NumberFormatException e) {
+                    throw new IOException("command." + i + ".timeoutSeconds must be a number in " + manifestPath);
+                }
+                if (timeout.isNegative() || timeout.isZero()) {
+                    throw new IOException("command." + i + ".timeoutSeconds must be at least 1 in " + manifestPath);
+                }
+            }
+            commands.add(new Command("command-" + i,
+                    split(required(properties, "command." + i, manifestPath)),
+                    workingDir != null ? InstallerPaths.userHome().resolve(workingDir) : InstallerPaths.userHome(),
+                    timeout));
+        }
+        if (packages.isEmpty() && commands.isEmpty()) {
+            throw new IOException("Manifest " + manifestPath + " lists no packages and no commands");
+        }
+        return new BatchManifest(parallelism, packages, commands);
+    }
+
+    /**
+     * @return The maximum number of steps running at once.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return The packages, in manifest order.
+     */
+    public List<Package> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return The commands, in the order they run.
+     */
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    private static String required(Properties properties, String key, Path manifestPath) throws IOException {
+        String value = optional(properties, key);
+        if (value == null) {
+            throw new IOException("Missing " + key + " in " + manifestPath);
+        }
+        return value;
+    }
+
+    private static String optional(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static List<String> split(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? List.of() : Arrays.asList(trimmed.split("\\s+"));
+    }
+}
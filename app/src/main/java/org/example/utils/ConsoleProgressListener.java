@@ -0,0 +1,41 @@
+package org.example.utils;
+
+/**
+ * Prints throttled progress updates to standard output, overwriting the current line.
+ */
+public class ConsoleProgressListener implements InstallProgressListener {
+
+    @Override
+    public void onProgress(String appName, Phase phase, long bytesDone, long bytesTotal,
+                           int entriesDone, int entriesTotal, long bytesPerSecond, long etaMillis) {
+        StringBuilder line = new StringBuilder("\r").append(appName).append(": ");
+        switch (phase) {
+            case DOWNLOAD:
+                line.append("Downloading: ");
+                if (bytesTotal > 0) {
+                    line.append((int) ((bytesDone * 100) / bytesTotal)).append("% (").append(bytesDone)
+                            .append('/').append(bytesTotal).append(" bytes)");
+                } else {
+                    line.append(bytesDone).append(" bytes");
+                }
+                break;
+            case EXTRACT:
+            case BUNDLE:
+                line.append(phase == Phase.EXTRACT ? "Extracting: " : "Bundling: ").append(entriesDone);
+                if (entriesTotal > 0) {
+                    line.append('/').append(entriesTotal);
+                }
+                line.append(" entries");
+                break;
+            default:
+                line.append(phase);
+                System.out.println(line);
+                return;
+        }
+        line.append(", ").append(bytesPerSecond / 1024).append(" KiB/s");
+        if (etaMillis >= 0) {
+            line.append(", ETA ").append(etaMillis / 1000).append(" s");
+        }
+        System.out.print(line);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Small helpers for computing SHA-256 digests as lowercase hex strings.
+ */
+public final class Digests {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Digests() {
+    }
+
+    /**
+     * @return A new SHA-256 message digest.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of a file.
+     * @param file The file to hash.
+     * @return The digest as lowercase hex.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the SHA-256 digest of a string's UTF-8 bytes.
+     * @param text The text to hash.
+     * @return The digest as lowercase hex.
+     */
+    public static String sha256(String text) {
+        return toHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param digest Raw digest bytes.
+     * @return The digest as lowercase hex.
+     */
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+}
@@ -0,0 +1,292 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Content-addressed cache for downloaded archives.
+ * <p>
+ * Archives are stored once per content hash under {@code blobs/<sha256>}. Each URL gets a small
+ * entry file under {@code entries/} recording which blob it resolved to together with the
+ * server's ETag / Last-Modified validators, so the next install can revalidate with a
+ * conditional request and reuse the blob on {@code 304 Not Modified}.
+ * The total size of the blobs is bounded; the least recently used entries are evicted first.
+ */
+public class DownloadCache {
+
+    /** Default size bound for all cached archives, 1 GiB. */
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    /**
+     * A cached download.
+     * @param url The URL the archive was downloaded from.
+     * @param sha256 The SHA-256 of the archive, which is also its blob name.
+     * @param size The size of the archive in bytes.
+     * @param etag The ETag the server sent, or null.
+     * @param lastModified The Last-Modified date the server sent, or null.
+     * @param lastUsed When the entry was last used, in epoch milliseconds.
+     * @param blobPath Where the archive is stored in the cache.
+     */
+    public record Entry(String url, String sha256, long size, String etag, String lastModified, long lastUsed, Path blobPath) {
+    }
+
+    /**
+     * Creates a cache in the default location, {@code ~/.swing-installer/cache}.
+     */
+    public DownloadCache() {
+        this(InstallerPaths.stateDir().resolve("cache"), DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param cacheDir The directory holding the cache.
+     * @param maxBytes The maximum total size of cached archives.
+     */
+    public DownloadCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the cached archive for a URL.
+     * @param url The download URL.
+     * @return The entry, or null if the URL is not cached or its blob has gone missing.
+     */
+    public Entry lookup(String url) {
+        Path entryPath = entryPathFor(url);
+        if (!Files.exists(entryPath)) {
+            return null;
+        }
+        try {
+            Entry entry = readEntry(entryPath);
+            if (!entry.url().equals(url) || !Files.exists(entry.blobPath())) {
+                return null;
+            }
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable cache entry " + entryPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Asks the server whether the cached copy is still current, using a conditional HEAD
+     * request with {@code If-None-Match} / {@code If-Modified-Since}.
+     * Entries without any validator are never considered fresh.
+     * @param entry The cached entry.
+     * @return {@code true} if the server answered 304 or reported the same validator.
+     */
+    public boolean revalidate(Entry entry) {
+        if (entry.etag() == null && entry.lastModified() == null) {
+            return false;
+        }
+        try {
+            HttpRequest.Builder request = HttpTransport.head(HttpTransport.toUri(entry.url()));
+            if (entry.etag() != null) {
+                request.header("If-None-Match", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                request.header("If-Modified-Since", entry.lastModified());
+            }
+            try (HttpTransport.Response response = HttpTransport.shared().send(request.build())) {
+                if (response.status() == 304) {
+                    return true;
+                }
+                if (response.status() != 200) {
+                    return false;
+                }
+                // Some servers ignore conditional headers on HEAD; compare the validators ourselves
+                String etag = response.header("ETag");
+                if (entry.etag() != null && etag != null) {
+                    return entry.etag().equals(etag);
+                }
+                String lastModified = response.header("Last-Modified");
+                return entry.lastModified() != null && entry.lastModified().equals(lastModified);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not revalidate cached download " + entry.url() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Looks up a cached archive by its content, whatever URL it came from.
+     * @param sha256 The SHA-256 of the archive as lowercase hex.
+     * @return The cached archive, or null if no archive with that digest is cached.
+     */
+    public Path findBlob(String sha256) {
+        Path blobPath = blobPathFor(sha256);
+        return Files.isRegularFile(blobPath) ? blobPath : null;
+    }
+
+    /**
+     * Marks an entry as used now, for LRU eviction.
+     * @param entry The entry that was used.
+     * @return The updated entry.
+     * @throws IOException If the entry cannot be written.
+     */
+    public Entry touch(Entry entry) throws IOException {
+        Entry touched = new Entry(entry.url(), entry.sha256(), entry.size(), entry.etag(), entry.lastModified(),
+                System.currentTimeMillis(), entry.blobPath());
+        writeEntry(touched);
+        return touched;
+    }
+
+    /**
+     * Adds a freshly downloaded archive to the cache and evicts old entries if the cache grew too large.
+     * The archive is hard-linked into the blob store where possible, so the downloaded file stays usable.
+     * @param url The URL the archive was downloaded from.
+     * @param downloadedFile The downloaded archive.
+     * @param etag The ETag the server sent, or null.
+     * @param lastModified The Last-Modified date the server sent, or null.
+     * @return The new entry.
+     * @throws IOException If the archive cannot be hashed or stored.
+     */
+    public Entry store(String url, Path downloadedFile, String etag, String lastModified) throws IOException {
+        return store(url, downloadedFile, Digests.sha256(downloadedFile), etag, lastModified);
+    }
+
+    /**
+     * Adds a freshly downloaded archive whose digest is already known, e.g. because it was computed
+     * while downloading, without reading the archive again.
+     * @param url The URL the archive was downloaded from.
+     * @param downloadedFile The downloaded archive.
+     * @param sha256 The SHA-256 of the archive as lowercase hex.
+     * @param etag The ETag the server sent, or null.
+     * @param lastModified The Last-Modified date the server sent, or null.
+     * @return The new entry.
+     * @throws IOException If the archive cannot be stored.
+     */
+    public Entry store(String url, Path downloadedFile, String sha256, String etag, String lastModified) throws IOException {
+        Path blobPath = blobPathFor(sha256);
+        Files.createDirectories(blobPath.getParent());
+        if (!Files.exists(blobPath)) {
+            // A temp name of its own, so concurrent installs storing the same content do not clash
+            Path tempPath = Files.createTempFile(blobPath.getParent(), sha256 + ".", ".tmp");
+            Files.delete(tempPath);
+            try {
+                Files.createLink(tempPath, downloadedFile);
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different file system or no hard link support, fall back to a copy
+                Files.copy(downloadedFile, tempPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                Files.move(tempPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Another install stored the same content concurrently
+                Files.deleteIfExists(tempPath);
+            }
+        }
+        Entry entry = new Entry(url, sha256, Files.size(blobPath), etag, lastModified, System.currentTimeMillis(), blobPath);
+        writeEntry(entry);
+        evict();
+        return entry;
+    }
+
+    /**
+     * Removes least recently used entries until the blobs fit within the size bound.
+     * A blob is only deleted once no remaining entry refers to it.
+     * @throws IOException If the cache directory cannot be listed.
+     */
+    public synchronized void evict() throws IOException {
+        Path entriesDir = cacheDir.resolve("entries");
+        if (!Files.isDirectory(entriesDir)) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(entriesDir, "*.properties")) {
+            for (Path entryPath : stream) {
+                try {
+                    entries.add(readEntry(entryPath));
+                } catch (IOException | RuntimeException e) {
+                    // Unreadable entries are useless, drop them
+                    Files.deleteIfExists(entryPath);
+                }
+            }
+        }
+
+        // Several URLs may share one blob; count each blob once
+        Map<String, Integer> blobReferences = new HashMap<>();
+        long totalBytes = 0;
+        for (Entry entry : entries) {
+            if (blobReferences.merge(entry.sha256(), 1, Integer::sum) == 1) {
+                totalBytes += entry.size();
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::lastUsed));
+        for (Entry entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entryPathFor(entry.url()));
+            if (blobReferences.merge(entry.sha256(), -1, Integer::sum) == 0) {
+                Files.deleteIfExists(entry.blobPath());
+                totalBytes -= entry.size();
+                System.out.println("Evicted cached download " + entry.url() + " (" + entry.size() + " bytes)");
+            }
+        }
+    }
+
+    private Path blobPathFor(String sha256) {
+        return cacheDir.resolve("blobs").resolve(sha256);
+    }
+
+    private Path entryPathFor(String url) {
+        // Hash the URL so any URL maps to a safe file name
+        return cacheDir.resolve("entries").resolve(Digests.sha256(url) + ".properties");
+    }
+
+    private Entry readEntry(Path entryPath) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(entryPath)) {
+            properties.load(in);
+        }
+        String sha256 = properties.getProperty("sha256");
+        return new Entry(
+                properties.getProperty("url"),
+                sha256,
+                Long.parseLong(properties.getProperty("size")),
+                properties.getProperty("etag"),
+                properties.getProperty("lastModified"),
+                Long.parseLong(properties.getProperty("lastUsed", "0")),
+                blobPathFor(sha256));
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", entry.url());
+        properties.setProperty("sha256", entry.sha256());
+        properties.setProperty("size", Long.toString(entry.size()));
+        if (entry.etag() != null) {
+            properties.setProperty("etag", entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            properties.setProperty("lastModified", entry.lastModified());
+        }
+        properties.setProperty("lastUsed", Long.toString(entry.lastUsed()));
+
+        Path entryPath = entryPathFor(entry.url());
+        Files.createDirectories(entryPath.getParent());
+        Path tempPath = Files.createTempFile(entryPath.getParent(), entryPath.getFileName() + ".", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            properties.store(out, "Download cache entry");
+        }
+        Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,262 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Sidecar file that remembers how far a {@code .part} download got.
+ * It stores the source URL, the server validators (ETag / Last-Modified), the total length
+ * and the byte ranges that have already been written, so an interrupted download can be
+ * resumed with {@code Range} requests instead of starting over.
+ * <p>
+ * The checkpoint is a plain {@link Properties} file next to the partial download,
+ * e.g. {@code node.zip.part.checkpoint}. All mutating methods are synchronized because
+ * segment threads record their progress concurrently.
+ */
+public class DownloadCheckpoint {
+
+    private final Path checkpointPath;
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final long contentLength;
+    // Completed byte ranges as start (inclusive) -> end (exclusive), kept merged
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+
+    private DownloadCheckpoint(Path checkpointPath, String url, String etag, String lastModified, long contentLength) {
+        this.checkpointPath = checkpointPath;
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Returns the sidecar path used for a partial download.
+     * @param partPath The path of the {@code .part} file.
+     * @return The checkpoint path next to it.
+     */
+    public static Path sidecarFor(Path partPath) {
+        return partPath.resolveSibling(partPath.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Loads the checkpoint for a partial download and checks it against what the server reports now.
+     * If there is no usable checkpoint, or the server's validator changed, the stale {@code .part}
+     * file is deleted and a fresh, empty checkpoint is returned.
+     * @param partPath The path of the {@code .part} file.
+     * @param url The URL being downloaded.
+     * @param probe The result of probing the URL.
+     * @return A checkpoint that is safe to resume from.
+     * @throws IOException If stale files cannot be deleted.
+     */
+    public static DownloadCheckpoint loadOrCreate(Path partPath, String url, SegmentedDownloader.RangeProbe probe) throws IOException {
+        Path checkpointPath = sidecarFor(partPath);
+        DownloadCheckpoint fresh = new DownloadCheckpoint(checkpointPath, url, probe.etag(), probe.lastModified(), probe.contentLength());
+
+        if (Files.exists(checkpointPath) && Files.exists(partPath)) {
+            try {
+                DownloadCheckpoint previous = read(checkpointPath);
+                if (previous.canResumeAs(fresh)) {
+                    System.out.println("Resuming partial download: " + previous.completedBytes() + "/" + previous.contentLength + " bytes already present.");
+                    return previous;
+                }
+                System.out.println("Server copy changed since the partial download was started. Restarting from the beginning.");
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable download checkpoint " + checkpointPath + ": " + e.getMessage());
+            }
+        }
+        discard(partPath);
+        return fresh;
+    }
+
+    /**
+     * Deletes a partial download and its checkpoint, if present.
+     * @param partPath The path of the {@code .part} file.
+     * @throws IOException If a file cannot be deleted.
+     */
+    public static void discard(Path partPath) throws IOException {
+        Files.deleteIfExists(partPath);
+        Files.deleteIfExists(sidecarFor(partPath));
+    }
+
+    /**
+     * A checkpoint can only be resumed if it is for the same URL and length and at least one
+     * validator is known on both sides and unchanged. Without a validator we cannot tell
+     * whether the bytes on disk still belong to the same file.
+     */
+    private boolean canResumeAs(DownloadCheckpoint current) {
+        if (!url.equals(current.url) || contentLength != current.contentLength) {
+            return false;
+        }
+        if (etag != null && current.etag != null) {
+            return etag.equals(current.etag);
+        }
+        if (lastModified != null && current.lastModified != null) {
+            return lastModified.equals(current.lastModified);
+        }
+        return false;
+    }
+
+    /**
+     * @return The value to send in an {@code If-Range} header, or null if no validator is known.
+     */
+    public String ifRangeValidator() {
+        // Weak ETags are not allowed in If-Range, fall back to the date in that case
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return lastModified;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Records that the bytes in [start, end) have been written to the {@code .part} file.
+     * @param start The first byte of the range (inclusive).
+     * @param end The end of the range (exclusive).
+     */
+    public synchronized void markCompleted(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        // Merge with any overlapping or adjacent ranges
+        Map.Entry<Long, Long> before = completed.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> after = completed.ceilingEntry(start);
+        while (after != null && after.getKey() <= end) {
+            end = Math.max(end, after.getValue());
+            completed.remove(after.getKey());
+            after = completed.ceilingEntry(start);
+        }
+        completed.put(start, end);
+        notifyAll();
+    }
+
+    /**
+     * Waits until the bytes completed from the start of the file reach past a position, so that
+     * they can be hashed in order while later segments are still downloading.
+     * @param position The position the caller has already processed.
+     * @param timeoutMillis How long to wait at most.
+     * @return The end of the completed bytes at the start of the file; not past {@code position} on timeout.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized long awaitCompletedPrefix(long position, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long prefix;
+        while ((prefix = completedPrefix()) <= position) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        return prefix;
+    }
+
+    private long completedPrefix() {
+        Map.Entry<Long, Long> first = completed.firstEntry();
+        return first != null && first.getKey() == 0 ? first.getValue() : 0;
+    }
+
+    /**
+     * @return The total number of bytes already downloaded.
+     */
+    public synchronized long completedBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            total += range.getValue() - range.getKey();
+        }
+        return total;
+    }
+
+    /**
+     * @return The byte ranges still missing, each as {start (inclusive), end (exclusive)}.
+     */
+    public synchronized List<long[]> missingRanges() {
+        List<long[]> missing = new ArrayList<>();
+        long position = 0;
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            if (range.getKey() > position) {
+                missing.add(new long[] { position, range.getKey() });
+            }
+            position = Math.max(position, range.getValue());
+        }
+        if (position < contentLength) {
+            missing.add(new long[] { position, contentLength });
+        }
+        return missing;
+    }
+
+    /**
+     * Writes the checkpoint to disk. The file is replaced atomically where the file system
+     * allows it, so a crash never leaves a half-written checkpoint behind.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (etag != null) {
+            properties.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty("lastModified", lastModified);
+        }
+        properties.setProperty("contentLength", Long.toString(contentLength));
+        StringBuilder ranges = new StringBuilder();
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            if (ranges.length() > 0) {
+                ranges.append(',');
+            }
+            ranges.append(range.getKey()).append('-').append(range.getValue());
+        }
+        properties.setProperty("completed", ranges.toString());
+
+        Path tempPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            properties.store(out, "Partial download checkpoint");
+        }
+        try {
+            Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static DownloadCheckpoint read(Path checkpointPath) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointPath)) {
+            properties.load(in);
+        }
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(
+                checkpointPath,
+                Objects.requireNonNull(properties.getProperty("url"), "url"),
+                properties.getProperty("etag"),
+                properties.getProperty("lastModified"),
+                Long.parseLong(properties.getProperty("contentLength", "-1")));
+        String ranges = properties.getProperty("completed", "");
+        for (String range : ranges.split(",")) {
+            if (range.isEmpty()) {
+                continue;
+            }
+            String[] bounds = range.split("-");
+            checkpoint.markCompleted(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+        }
+        return checkpoint;
+    }
+}
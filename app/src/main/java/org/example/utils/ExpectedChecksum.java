@@ -0,0 +1,111 @@
+package org.example.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The SHA-256 digest a downloaded archive must have, either given directly or looked up in a
+ * checksum file such as the {@code SHASUMS256.txt} that Node.js publishes next to every release.
+ * A checksum file is fetched (gzip-compressed where the server supports it) the first time it is
+ * needed and then kept, so one instance can serve several archives of the same release.
+ */
+public final class ExpectedChecksum {
+
+    private final String sha256;
+    private final String checksumsUrl;
+    // Parsed checksum file: file name -> digest; null until fetched
+    private Map<String, String> checksums;
+
+    private ExpectedChecksum(String sha256, String checksumsUrl) {
+        this.sha256 = sha256;
+        this.checksumsUrl = checksumsUrl;
+    }
+
+    /**
+     * @param sha256 The expected digest as 64 hex digits.
+     * @return A checksum that expects exactly this digest, whatever the archive's name.
+     * @throws IllegalArgumentException If the digest is not 64 hex digits.
+     */
+    public static ExpectedChecksum sha256(String sha256) {
+        return new ExpectedChecksum(normalize(sha256), null);
+    }
+
+    /**
+     * @param checksumsUrl The URL of a checksum file with lines of the form {@code <sha256>  <file name>},
+     *                     as written by {@code sha256sum}.
+     * @return A checksum that looks up the archive by its file name in that file.
+     */
+    public static ExpectedChecksum fromChecksumFile(String checksumsUrl) {
+        if (checksumsUrl == null || checksumsUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Checksum file URL cannot be null or empty.");
+        }
+        return new ExpectedChecksum(null, checksumsUrl);
+    }
+
+    /**
+     * Returns the digest the archive must have.
+     * @param archiveFileName The file name of the archive, as it appears in a checksum file.
+     * @return The expected digest as lowercase hex.
+     * @throws IOException If the checksum file cannot be fetched or does not list the archive.
+     */
+    public synchronized String resolve(String archiveFileName) throws IOException {
+        if (sha256 != null) {
+            return sha256;
+        }
+        if (checksums == null) {
+            checksums = fetch(checksumsUrl);
+        }
+        String digest = checksums.get(archiveFileName);
+        if (digest == null) {
+            throw new IOException("Checksum file " + checksumsUrl + " does not list " + archiveFileName);
+        }
+        return digest;
+    }
+
+    private static Map<String, String> fetch(String checksumsUrl) throws IOException {
+        Map<String, String> checksums = new HashMap<>();
+        try (HttpTransport.Response response = HttpTransport.shared()
+                .send(HttpTransport.get(HttpTransport.toUri(checksumsUrl), true).build())) {
+            if (response.status() != 200) {
+                throw new IOException("GET " + checksumsUrl + " returned HTTP " + response.status());
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+", 2);
+                if (parts.length != 2 || parts[0].length() != 64) {
+                    continue;
+                }
+                // sha256sum marks binary mode with a '*' in front of the name
+                String fileName = parts[1].startsWith("*") ? parts[1].substring(1) : parts[1];
+                try {
+                    checksums.put(fileName, normalize(parts[0]));
+                } catch (IllegalArgumentException e) {
+                    // Not a checksum line
+                }
+            }
+        }
+        System.out.println("Fetched " + checksums.size() + " checksums from " + checksumsUrl);
+        return checksums;
+    }
+
+    private static String normalize(String sha256) {
+        if (sha256 == null || sha256.length() != 64) {
+            throw new IllegalArgumentException("A SHA-256 digest has 64 hex digits: " + sha256);
+        }
+        // Throws IllegalArgumentException on anything but hex digits
+        HexFormat.of().parseHex(sha256);
+        return sha256.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return sha256 != null ? "sha256:" + sha256 : "checksums from " + checksumsUrl;
+    }
+}
@@ -0,0 +1,492 @@
+package org.example.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Offline install bundle, the payload of a "FAT installer": a copy of the shadow jar that also carries
+ * the installed packages, including the {@code node_modules} resolved by {@code npm i}, so it can
+ * install on machines without network access.
+ * <p>
+ * The payload is a single jar entry, {@value #PAYLOAD_ENTRY}, laid out for one sequential read:
+ * <ol>
+ *     <li>a header with the packages (roots) and the index of all directories, symbolic links and files
+ *     with their sizes,</li>
+ *     <li>the contents of all files, back to back, in index order,</li>
+ *     <li>a trailer with the CRC-32 of every file, computed while its content was copied.</li>
+ * </ol>
+ * Creating a bundle reads every file once; a file that changes size while it is bundled fails the creation.
+ * Installing creates the whole directory skeleton from the index first. Then a single reader streams
+ * the contents and hands each file to a pool of writer threads, so decompressing the jar entry and
+ * writing thousands of small files overlap. How far the reader may run ahead of the writers is bounded.
+ * Large files are written by the reader itself, in chunks, instead of being held in memory. The CRCs
+ * of the written files are checked against the trailer, and the links are created last.
+ * <p>
+ * Symbolic links, such as the links npm creates for {@code file:} and workspace dependencies, are bundled
+ * as links, so the installed tree has the same shape as the one it was made from. A link that points
+ * outside its package, and anything that is neither a directory, a file nor a symbolic link (e.g. a
+ * Windows junction), cannot be bundled and fails the creation.
+ */
+public final class FatBundle implements Closeable {
+
+    /** Where the payload is stored inside the jar. */
+    public static final String PAYLOAD_ENTRY = "fat/payload.bin";
+
+    // "SWFB"
+    private static final int MAGIC = 0x53574642;
+    private static final int VERSION = 2;
+    // Files up to this size are read into memory and written by a worker; larger ones by the reader
+    private static final int MAX_BUFFERED_FILE_SIZE = 4 * 1024 * 1024;
+    // How many bytes of read but not yet written files may be held in memory
+    private static final int MAX_BYTES_IN_FLIGHT = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One package in the bundle, installed like {@link SoftwareInstaller#installSoftware} would.
+     * @param appName The name of the installation directory under the user's home.
+     * @param relativeBinPath The path to add to the PATH, relative to the root directory of the package.
+     * @param skipPath Whether to skip the PATH modification.
+     */
+    public record Root(String appName, String relativeBinPath, boolean skipPath) {
+    }
+
+    private record DirectoryEntry(int root, String path) {
+    }
+
+    private record LinkEntry(int root, String path, String target) {
+    }
+
+    private record FileEntry(int root, String path, long size, boolean executable) {
+    }
+
+    private final DataInputStream in;
+    private final List<Root> roots;
+    private final List<DirectoryEntry> directories;
+    private final List<LinkEntry> links;
+    private final List<FileEntry> files;
+    private final long totalBytes;
+
+    private FatBundle(DataInputStream in, List<Root> roots, List<DirectoryEntry> directories, List<LinkEntry> links,
+                      List<FileEntry> files, long totalBytes) {
+        this.in = in;
+        this.roots = roots;
+        this.directories = directories;
+        this.links = links;
+        this.files = files;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @return Whether the running jar carries a payload, i.e. is a FAT installer.
+     */
+    public static boolean isEmbedded() {
+        return FatBundle.class.getResource("/" + PAYLOAD_ENTRY) != null;
+    }
+
+    /**
+     * Opens the payload of the running jar.
+     * @return The bundle, positioned at the file contents.
+     * @throws IOException If the jar carries no payload or its index cannot be read.
+     */
+    public static FatBundle openEmbedded() throws IOException {
+        InputStream payload = FatBundle.class.getResourceAsStream("/" + PAYLOAD_ENTRY);
+        if (payload == null) {
+            throw new IOException("This installer does not contain an offline bundle.");
+        }
+        return open(payload);
+    }
+
+    /**
+     * Reads the header and the index of a payload.
+     * @param payload The payload; it is closed with the bundle.
+     * @return The bundle, positioned at the file contents.
+     * @throws IOException If the payload is not a bundle or its index cannot be read.
+     */
+    public static FatBundle open(InputStream payload) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(payload, BUFFER_SIZE));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an offline bundle.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported offline bundle version " + version + ", expected " + VERSION + ".");
+            }
+            int rootCount = in.readInt();
+            List<Root> roots = new ArrayList<>(rootCount);
+            for (int i = 0; i < rootCount; i++) {
+                roots.add(new Root(in.readUTF(), in.readUTF(), in.readBoolean()));
+            }
+            int directoryCount = in.readInt();
+            List<DirectoryEntry> directories = new ArrayList<>(directoryCount);
+            for (int i = 0; i < directoryCount; i++) {
+                directories.add(new DirectoryEntry(in.readInt(), in.readUTF()));
+            }
+            int linkCount = in.readInt();
+            List<LinkEntry> links = new ArrayList<>(linkCount);
+            for (int i = 0; i < linkCount; i++) {
+                links.add(new LinkEntry(in.readInt(), in.readUTF(), in.readUTF()));
+            }
+            int fileCount = in.readInt();
+            long totalBytes = in.readLong();
+            List<FileEntry> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(new FileEntry(in.readInt(), in.readUTF(), in.readLong(), in.readBoolean()));
+            }
+            return new FatBundle(in, Collections.unmodifiableList(roots), directories, links, files, totalBytes);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The packages in the bundle.
+     */
+    public List<Root> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @return The number of files in the bundle.
+     */
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return The size of all files in the bundle in bytes.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Writes all directories, files and links of the bundle. Can only be called once, since it consumes the payload.
+     * Where links cannot be created (e.g. on Windows without the privilege), their target is copied instead.
+     * @param targetDirs The directory each root is written to, in the order of {@link #getRoots()}.
+     * @param threads The number of writer threads, at least 1.
+     * @param progress Tracks the written files and bytes.
+     * @throws IOException If an entry or link target would be outside its target directory, a file is damaged
+     *                     or an I/O error occurs.
+     */
+    public void extract(List<Path> targetDirs, int threads, ProgressTracker progress) throws IOException {
+        if (targetDirs.size() != roots.size()) {
+            throw new IllegalArgumentException("Expected " + roots.size() + " target directories, got " + targetDirs.size());
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        // 1. Directory skeleton, so writers never race on creating parents
+        for (DirectoryEntry directory : directories) {
+            Files.createDirectories(SoftwareInstaller.resolveEntryPath(targetDirs.get(directory.root()), directory.path()));
+        }
+
+        // 2. File contents: one sequential read, parallel writes
+        progress.setTotals(totalBytes, files.size());
+        // Written by the writers, one slot each, and read once they have terminated
+        int[] crcs = new int[files.size()];
+        Semaphore bytesInFlight = new Semaphore(MAX_BYTES_IN_FLIGHT);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        ExecutorService writers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bundle-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                if (failure.get() != null) {
+                    break;
+                }
+                FileEntry file = files.get(i);
+                Path target = SoftwareInstaller.resolveEntryPath(targetDirs.get(file.root()), file.path());
+                if (file.size() > MAX_BUFFERED_FILE_SIZE) {
+                    crcs[i] = writeStreamed(file, target, buffer, progress);
+                    continue;
+                }
+                int size = (int) file.size();
+                bytesInFlight.acquire(size);
+                byte[] content = new byte[size];
+                in.readFully(content);
+                int index = i;
+                writers.execute(() -> {
+                    try {
+                        crcs[index] = writeBuffered(file, target, content);
+                        progress.addBytes(size);
+                        progress.addEntries(1);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        bytesInFlight.release(size);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting the offline bundle", e);
+        } finally {
+            writers.shutdown();
+            awaitTermination(writers);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        // 3. The trailer, to check what was written
+        for (int i = 0; i < files.size(); i++) {
+            if (in.readInt() != crcs[i]) {
+                throw new IOException("Bundled file " + files.get(i).path() + " is damaged (CRC-32 mismatch).");
+            }
+        }
+
+        // 4. Links, now that everything they may point to exists
+        for (LinkEntry link : links) {
+            Path targetDir = targetDirs.get(link.root());
+            createLink(targetDir, SoftwareInstaller.resolveEntryPath(targetDir, link.path()), link.target());
+        }
+    }
+
+    private static void createLink(Path targetDir, Path linkPath, String linkTarget) throws IOException {
+        Files.createDirectories(linkPath.getParent());
+        Path resolved = SoftwareInstaller.resolveLinkTarget(targetDir, linkPath, linkTarget);
+        try {
+            Files.createSymbolicLink(linkPath, Path.of(linkTarget));
+        } catch (IOException | UnsupportedOperationException e) {
+            if (!Files.exists(resolved)) {
+                throw new IOException("Cannot create link " + linkPath + " -> " + linkTarget + ": " + e.getMessage(), e);
+            }
+            // A copy behaves the same for everything that only reads through the link
+            try (Stream<Path> walk = Files.walk(resolved)) {
+                for (Path source : walk.toList()) {
+                    Path copy = linkPath.resolve(resolved.relativize(source).toString());
+                    if (Files.isDirectory(source)) {
+                        Files.createDirectories(copy);
+                    } else {
+                        Files.copy(source, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int writeBuffered(FileEntry file, Path target, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        Files.write(target, content);
+        if (file.executable()) {
+            target.toFile().setExecutable(true);
+        }
+        return (int) crc.getValue();
+    }
+
+    private int writeStreamed(FileEntry file, Path target, byte[] buffer, ProgressTracker progress) throws IOException {
+        CRC32 crc = new CRC32();
+        try (OutputStream out = Files.newOutputStream(target)) {
+            long remaining = file.size();
+            while (remaining > 0) {
+                int length = (int) Math.min(buffer.length, remaining);
+                in.readFully(buffer, 0, length);
+                crc.update(buffer, 0, length);
+                out.write(buffer, 0, length);
+                remaining -= length;
+                progress.addBytes(length);
+            }
+        }
+        if (file.executable()) {
+            target.toFile().setExecutable(true);
+        }
+        progress.addEntries(1);
+        return (int) crc.getValue();
+    }
+
+    private static void awaitTermination(ExecutorService writers) throws IOException {
+        try {
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for bundle writers", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return The jar the installer is running from.
+     * @throws IOException If the installer is not running from a jar, e.g. from an IDE.
+     */
+    public static Path runningJar() throws IOException {
+        try {
+            Path location = Path.of(FatBundle.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (!Files.isRegularFile(location)) {
+                throw new IOException("A FAT installer can only be created when running from the shadow jar, not from "
+                        + location + ".");
+            }
+            return location;
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate the running jar: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a FAT installer: a copy of a jar with the installed packages added as the payload.
+     * The packages are read from their installation directories under {@code userHome}, so they
+     * must have been installed (and {@code npm i} run) first.
+     * @param sourceJar The jar to copy, normally {@link #runningJar()}. An existing payload in it is replaced.
+     * @param outputJar The FAT installer to write. It is replaced atomically once complete.
+     * @param userHome The directory the packages are installed in.
+     * @param roots The packages to bundle.
+     * @param progress Tracks the bundled files and bytes.
+     * @throws IOException If a package is not installed, contains a link that points outside of it or anything
+     *                     else that cannot be bundled, a file changes while it is bundled or an I/O error occurs.
+     */
+    public static void create(Path sourceJar, Path outputJar, Path userHome, List<Root> roots, ProgressTracker progress)
+            throws IOException {
+        // 1. The index, so the installer knows every directory and file before the first byte of content
+        List<DirectoryEntry> directories = new ArrayList<>();
+        List<LinkEntry> links = new ArrayList<>();
+        List<FileEntry> files = new ArrayList<>();
+        List<Path> sources = new ArrayList<>();
+        long totalBytes = 0;
+        for (int i = 0; i < roots.size(); i++) {
+            Path rootDir = userHome.resolve(roots.get(i).appName());
+            if (!Files.isDirectory(rootDir)) {
+                throw new IOException(rootDir + " is not installed, so it cannot be bundled.");
+            }
+            List<Path> paths;
+            try (Stream<Path> walk = Files.walk(rootDir)) {
+                paths = walk.filter(path -> !path.equals(rootDir)).sorted().toList();
+            }
+            for (Path path : paths) {
+                String relativePath = rootDir.relativize(path).toString().replace('\\', '/');
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    directories.add(new DirectoryEntry(i, relativePath));
+                } else if (attributes.isSymbolicLink()) {
+                    // The walk does not follow links, so nothing below a linked directory is bundled twice
+                    String target = Files.readSymbolicLink(path).toString().replace('\\', '/');
+                    try {
+                        SoftwareInstaller.resolveLinkTarget(rootDir, path, target);
+                    } catch (IOException e) {
+                        throw new IOException("Cannot bundle " + path + " -> " + target + ": it points outside of " + rootDir + ".", e);
+                    }
+                    links.add(new LinkEntry(i, relativePath, target));
+                } else if (attributes.isRegularFile()) {
+                    files.add(new FileEntry(i, relativePath, attributes.size(), Files.isExecutable(path)));
+                    sources.add(path);
+                    totalBytes += attributes.size();
+                } else {
+                    throw new IOException("Cannot bundle " + path + ": it is neither a directory, a file nor a symbolic link.");
+                }
+            }
+        }
+        progress.setTotals(totalBytes, files.size());
+
+        // 2. The jar: everything of the source jar, then the payload
+        Files.createDirectories(outputJar.toAbsolutePath().getParent());
+        Path tempJar = outputJar.resolveSibling(outputJar.getFileName() + ".tmp");
+        try (ZipFile source = new ZipFile(sourceJar.toFile());
+             ZipOutputStream jarOut = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempJar), BUFFER_SIZE))) {
+            Enumeration<? extends ZipEntry> entries = source.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().equals(PAYLOAD_ENTRY)) {
+                    continue;
+                }
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                jarOut.putNextEntry(copy);
+                try (InputStream entryIn = source.getInputStream(entry)) {
+                    entryIn.transferTo(jarOut);
+                }
+                jarOut.closeEntry();
+            }
+
+            jarOut.putNextEntry(new ZipEntry(PAYLOAD_ENTRY));
+            // Not closed, that would close the jar
+            DataOutputStream out = new DataOutputStream(jarOut);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(roots.size());
+            for (Root root : roots) {
+                out.writeUTF(root.appName());
+                out.writeUTF(root.relativeBinPath());
+                out.writeBoolean(root.skipPath());
+            }
+            out.writeInt(directories.size());
+            for (DirectoryEntry directory : directories) {
+                out.writeInt(directory.root());
+                out.writeUTF(directory.path());
+            }
+            out.writeInt(links.size());
+            for (LinkEntry link : links) {
+                out.writeInt(link.root());
+                out.writeUTF(link.path());
+                out.writeUTF(link.target());
+            }
+            out.writeInt(files.size());
+            out.writeLong(totalBytes);
+            for (FileEntry file : files) {
+                out.writeInt(file.root());
+                out.writeUTF(file.path());
+                out.writeLong(file.size());
+                out.writeBoolean(file.executable());
+            }
+            // One read per file: the CRC is computed from exactly the bytes that go into the bundle
+            int[] crcs = new int[files.size()];
+            for (int i = 0; i < files.size(); i++) {
+                long copied;
+                CRC32 crc = new CRC32();
+                try (InputStream fileIn = new CheckedInputStream(Files.newInputStream(sources.get(i)), crc)) {
+                    copied = fileIn.transferTo(out);
+                }
+                if (copied != files.get(i).size()) {
+                    throw new IOException(sources.get(i) + " changed while the bundle was created.");
+                }
+                crcs[i] = (int) crc.getValue();
+                progress.addBytes(copied);
+                progress.addEntries(1);
+            }
+            for (int crc : crcs) {
+                out.writeInt(crc);
+            }
+            out.flush();
+            jarOut.closeEntry();
+        } catch (IOException e) {
+            Files.deleteIfExists(tempJar);
+            throw e;
+        }
+        Files.move(tempJar, outputJar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
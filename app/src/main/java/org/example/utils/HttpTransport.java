@@ -0,0 +1,225 @@
+package org.example.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HTTP clients of the installer, each shared so that requests to the same host reuse open
+ * connections instead of paying for DNS, TCP and TLS again. Redirects are followed, except from HTTPS
+ * to HTTP.
+ * <p>
+ * There are two of them. {@link #shared()} negotiates HTTP/2 and serves the small requests: range
+ * probes, cache revalidations and checksum files. {@link #bulk()} is pinned to HTTP/1.1 and carries
+ * the archive bytes: on HTTP/2 all parallel segments of a download would be multiplexed over a single
+ * TCP connection and share its congestion window, which is exactly what splitting the download into
+ * segments is meant to avoid. Over HTTP/1.1 every segment in flight gets a connection of its own, and
+ * idle connections are still reused by the next segment.
+ * <p>
+ * Compressed transfer is opt-in per request (see {@link #get(URI, boolean)}) and decoded transparently.
+ * Archive downloads do not ask for it: zip files do not compress any further, and byte ranges and
+ * {@code Content-Length} must refer to the file itself, not to an encoded form of it.
+ */
+public final class HttpTransport {
+
+    private static final HttpTransport SHARED = new HttpTransport(newClient(HttpClient.Version.HTTP_2));
+    private static final HttpTransport BULK = new HttpTransport(newClient(HttpClient.Version.HTTP_1_1));
+
+    /**
+     * A response with its body as a stream.
+     * @param status The HTTP status code.
+     * @param uri The URI that answered, after redirects.
+     * @param headers The response headers.
+     * @param contentLength The length of the body as delivered by {@link #body()}, or -1 if unknown,
+     *                      e.g. because it is decoded from gzip.
+     * @param body The body; close the response to release the connection.
+     */
+    public record Response(int status, URI uri, HttpHeaders headers, long contentLength, InputStream body)
+            implements Closeable {
+
+        /**
+         * @param name The header name, case-insensitive.
+         * @return The first value of the header, or null.
+         */
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    private final HttpClient client;
+
+    private HttpTransport(HttpClient client) {
+        this.client = client;
+    }
+
+    private static HttpClient newClient(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * @return The HTTP/2 transport for probes, revalidations and other small requests.
+     */
+    public static HttpTransport shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return The HTTP/1.1 transport for downloading archive bytes, one connection per request in flight.
+     */
+    public static HttpTransport bulk() {
+        return BULK;
+    }
+
+    /**
+     * @param uri The URI to request.
+     * @return A GET request builder, for adding headers such as {@code Range}.
+     */
+    public static HttpRequest.Builder get(URI uri) {
+        return HttpRequest.newBuilder(uri).GET();
+    }
+
+    /**
+     * @param uri The URI to request.
+     * @param compressed Whether to accept a gzip-compressed body, for resources that compress well.
+     * @return A GET request builder.
+     */
+    public static HttpRequest.Builder get(URI uri, boolean compressed) {
+        HttpRequest.Builder builder = get(uri);
+        return compressed ? builder.header("Accept-Encoding", "gzip") : builder;
+    }
+
+    /**
+     * @param uri The URI to request.
+     * @return A HEAD request builder.
+     */
+    public static HttpRequest.Builder head(URI uri) {
+        return HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody());
+    }
+
+    /**
+     * Parses a URL string into a URI.
+     * @param url The URL.
+     * @return The URI.
+     * @throws IOException If the URL is malformed.
+     */
+    public static URI toUri(String url) throws IOException {
+        try {
+            return URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+    }
+
+    /**
+     * Sends a request and waits for the response headers. The body is streamed as it is read.
+     * @param request The request.
+     * @return The response; close it when done, also when the status is not the expected one.
+     * @throws IOException If the request fails or the thread is interrupted.
+     */
+    public Response send(HttpRequest request) throws IOException {
+        try {
+            return toResponse(client.send(request, HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting " + request.uri(), e);
+        }
+    }
+
+    /**
+     * Sends a request without blocking. Any number of requests may be in flight at once; they share the
+     * connection pool of this transport.
+     * @param request The request.
+     * @return The response, once its headers have arrived; it completes exceptionally with an
+     *         {@link IOException} if the request fails.
+     */
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).thenApply(HttpTransport::toResponse);
+    }
+
+    /**
+     * Waits for a response of {@link #sendAsync(HttpRequest)}.
+     * @param response The pending response.
+     * @return The response.
+     * @throws IOException If the request failed or the thread is interrupted.
+     */
+    public static Response await(CompletableFuture<Response> response) throws IOException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("HTTP request failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an HTTP response", e);
+        }
+    }
+
+    private static Response toResponse(HttpResponse<InputStream> response) {
+        HttpHeaders headers = response.headers();
+        InputStream body = response.body();
+        long contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+        if (headers.firstValue("Content-Encoding").map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false)) {
+            body = new GzipBody(body);
+            // The header counts the compressed bytes
+            contentLength = -1;
+        }
+        return new Response(response.statusCode(), response.uri(), headers, contentLength, body);
+    }
+
+    /**
+     * Decodes a gzip body. The gzip header is only read on the first read, so that creating the response,
+     * possibly on one of the client's own threads, never blocks on the network.
+     */
+    private static class GzipBody extends InputStream {
+        private final InputStream raw;
+        private InputStream decoded;
+
+        GzipBody(InputStream raw) {
+            this.raw = raw;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) {
+                decoded = new GZIPInputStream(raw, 64 * 1024);
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raw.close();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Extracts a zip archive through a {@link ZipIndex}, for very large archives.
+ * <p>
+ * Entries are read from the memory-mapped archive instead of through {@link java.util.zip.ZipFile} streams.
+ * Each worker maps the archive once, then writes stored entries to disk straight from its mapping and
+ * inflates deflated entries from its mapping into a direct buffer that it allocates once, together
+ * with its {@link Inflater}. Every file is checked against the CRC-32 and size in the central directory.
+ * As with {@link ParallelZipExtractor}, the directory skeleton is created first and the files are
+ * then written by a fixed number of workers, largest first.
+ * <p>
+ * Because the index covers all entries up front, the root directory is the one shared by all
+ * entries (see {@link ZipIndex#getRootDirectory()}) rather than a guess from the first entry, and a
+ * subset of the archive can be extracted without looking at the data of the other entries.
+ */
+public class IndexedZipExtractor {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // Largest slice of the mapping handed to a single write or inflate call
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+    // zlib may need one byte past the end of raw deflate data to finish
+    private static final byte[] TRAILING_INPUT = new byte[1];
+
+    private final int threads;
+    private final int bufferSize;
+
+    /**
+     * @param threads The number of worker threads, at least 1.
+     */
+    public IndexedZipExtractor(int threads) {
+        this(threads, BUFFER_SIZE);
+    }
+
+    /**
+     * @param threads The number of worker threads, at least 1.
+     * @param bufferSize The size of each worker's output buffer in bytes, at least 1.
+     */
+    public IndexedZipExtractor(int threads, int bufferSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1, got " + bufferSize);
+        }
+        this.threads = threads;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Extracts a zip file to a destination directory.
+     * @param zipFilePath The path to the zip file.
+     * @param destDir The directory where contents should be extracted.
+     * @param shouldWrite Decides, for each file entry and its destination, whether it is written.
+     *                    Directories are always created.
+     * @param progress Tracks the written entries and bytes; totals cover the entries that are written.
+     * @return The root directory shared by all entries, or null if there is none.
+     * @throws IOException If an entry would be written outside {@code destDir}, an entry is damaged
+     *                     or an I/O error occurs.
+     */
+    public String extract(Path zipFilePath, Path destDir, BiPredicate<ZipEntry, Path> shouldWrite,
+                          ProgressTracker progress) throws IOException {
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            int[] all = new int[index.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            extractEntries(index, all, destDir, shouldWrite, progress);
+            return index.getRootDirectory();
+        }
+    }
+
+    /**
+     * Extracts only the entries at or below the given paths, e.g. a single tool out of a large bundle.
+     * The entries keep their full path below {@code destDir}.
+     * @param zipFilePath The path to the zip file.
+     * @param destDir The directory where the selected entries should be extracted.
+     * @param paths Entry names relative to the archive root; see {@link ZipIndex#select(Collection)}.
+     * @param progress Tracks the written entries and bytes.
+     * @return The number of entries that matched.
+     * @throws IOException If an entry would be written outside {@code destDir}, an entry is damaged
+     *                     or an I/O error occurs.
+     */
+    public int extract(Path zipFilePath, Path destDir, Collection<String> paths, ProgressTracker progress)
+            throws IOException {
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            int[] selected = index.select(paths);
+            extractEntries(index, selected, destDir, (entry, entryDestPath) -> true, progress);
+            return selected.length;
+        }
+    }
+
+    private void extractEntries(ZipIndex index, int[] entries, Path destDir, BiPredicate<ZipEntry, Path> shouldWrite,
+                                ProgressTracker progress) throws IOException {
+        // Keyed by destination so that, as with sequential extraction, the last duplicate entry wins
+        Map<Path, Integer> files = new LinkedHashMap<>();
+        TreeSet<Path> directories = new TreeSet<>();
+        for (int entry : entries) {
+            String name = index.getName(entry);
+            Path entryDestPath = SoftwareInstaller.resolveEntryPath(destDir, name);
+            if (index.isDirectory(entry)) {
+                directories.add(entryDestPath);
+            } else {
+                files.remove(entryDestPath);
+                directories.add(entryDestPath.getParent());
+                if (shouldWrite.test(index.toZipEntry(entry), entryDestPath)) {
+                    files.put(entryDestPath, entry);
+                }
+            }
+        }
+
+        // 1. Directory skeleton, so workers never race on creating parents
+        for (Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+
+        // 2. File contents, largest first so one big file does not end up last on a single worker
+        List<Map.Entry<Path, Integer>> work = new ArrayList<>(files.entrySet());
+        work.sort((a, b) -> Long.compare(index.getSize(b.getValue()), index.getSize(a.getValue())));
+        long totalBytes = 0;
+        for (Map.Entry<Path, Integer> item : work) {
+            totalBytes += index.getSize(item.getValue());
+        }
+        progress.setTotals(totalBytes, work.size());
+        int workerCount = Math.max(1, Math.min(threads, work.size()));
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        if (workerCount == 1) {
+            new Worker().extractFiles(index, work, nextIndex, progress);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "zip-extract-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                futures.add(executor.submit(() -> {
+                    new Worker().extractFiles(index, work, nextIndex, progress);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            // The index is closed by the caller, so no worker may still be reading the mapping
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Buffers, inflater and checksum of one worker, reused for all of its entries.
+     */
+    private class Worker {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        // A mapping of its own, see ZipIndex#map
+        private MemorySegment archive;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Takes entries from the shared list until none are left.
+         */
+        void extractFiles(ZipIndex index, List<Map.Entry<Path, Integer>> work, AtomicInteger nextIndex,
+                          ProgressTracker progress) throws IOException {
+            try (Arena arena = Arena.ofConfined()) {
+                archive = index.map(arena);
+                int next;
+                while ((next = nextIndex.getAndIncrement()) < work.size()) {
+                    Map.Entry<Path, Integer> item = work.get(next);
+                    extractFile(index, item.getValue(), item.getKey(), progress);
+                    progress.addEntries(1);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private void extractFile(ZipIndex index, int entry, Path target, ProgressTracker progress) throws IOException {
+            MemorySegment data = index.getData(entry, archive);
+            long size = index.getSize(entry);
+            crc.reset();
+            // Files that fit into one buffer are written with a single call anyway; only preallocate larger ones
+            boolean preallocate = size > buffer.capacity();
+            try (FileChannel channel = preallocate ? NioIoEngine.openPreallocated(target, size)
+                    : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long written = switch (index.getMethod(entry)) {
+                    case ZipIndex.STORED -> writeStored(data, channel, progress);
+                    case ZipIndex.DEFLATED -> inflate(data, channel, progress, index.getName(entry));
+                    default -> throw new ZipException("Unsupported compression method " + index.getMethod(entry)
+                            + " of entry " + index.getName(entry));
+                };
+                if (written != size || crc.getValue() != index.getCrc(entry)) {
+                    throw new ZipException("Entry " + index.getName(entry) + " is damaged: expected " + size
+                            + " bytes with CRC-32 " + Long.toHexString(index.getCrc(entry)) + ", got " + written
+                            + " bytes with CRC-32 " + Long.toHexString(crc.getValue()));
+                }
+            }
+        }
+
+        /**
+         * Writes a stored entry from the mapping, without copying it into a buffer first.
+         */
+        private long writeStored(MemorySegment data, FileChannel channel, ProgressTracker progress) throws IOException {
+            long position = 0;
+            while (position < data.byteSize()) {
+                long length = Math.min(CHUNK_SIZE, data.byteSize() - position);
+                ByteBuffer chunk = data.asSlice(position, length).asByteBuffer();
+                crc.update(chunk.duplicate());
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                progress.addBytes(length);
+            }
+            return position;
+        }
+
+        /**
+         * Inflates a deflated entry from the mapping into the direct buffer and writes each full buffer.
+         */
+        private long inflate(MemorySegment data, FileChannel channel, ProgressTracker progress, String name)
+                throws IOException {
+            inflater.reset();
+            buffer.clear();
+            long inputPosition = 0;
+            boolean trailingInputGiven = false;
+            long position = 0;
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        if (inputPosition < data.byteSize()) {
+                            long length = Math.min(CHUNK_SIZE, data.byteSize() - inputPosition);
+                            inflater.setInput(data.asSlice(inputPosition, length).asByteBuffer());
+                            inputPosition += length;
+                        } else if (!trailingInputGiven) {
+                            inflater.setInput(TRAILING_INPUT);
+                            trailingInputGiven = true;
+                        } else {
+                            throw new ZipException("Unexpected end of deflated data in entry " + name);
+                        }
+                    } else if (inflater.needsDictionary()) {
+                        throw new ZipException("Entry " + name + " needs a preset dictionary");
+                    }
+                    inflater.inflate(buffer);
+                    if (!buffer.hasRemaining()) {
+                        position = flush(channel, position, progress);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflated data in entry " + name + ": " + e.getMessage());
+            }
+            return flush(channel, position, progress);
+        }
+
+        private long flush(FileChannel channel, long position, ProgressTracker progress) throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            progress.addBytes(length);
+            return position;
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Extraction worker failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting", e);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws IOException {
+        try {
+            // Interrupted workers stop at their next write
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for extraction workers", e);
+        }
+    }
+}
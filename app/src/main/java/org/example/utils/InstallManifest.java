@@ -0,0 +1,251 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Records which archive entries were written into an extraction directory, so a later install
+ * of a newer archive only has to rewrite the entries that changed and delete the ones that are gone.
+ * <p>
+ * For every file entry the manifest stores the entry's CRC-32 and size from the archive, plus the
+ * size and modification time of the file as written. An entry counts as unchanged only if its
+ * CRC and size are the same in the new archive and the file on disk was not touched since.
+ * Files in the extraction directory that never came from the archive (e.g. {@code node_modules})
+ * are not listed and are therefore left alone.
+ * <p>
+ * While an existing installation is updated in place, the manifest of the previous archive is kept
+ * with an in-progress flag ({@link #writeInProgress(Path)}) until the new one replaces it. Files that
+ * were rewritten before an interruption no longer match their recorded time, so the next update
+ * rewrites them again and the flag tells that the tree matches neither archive.
+ */
+public class InstallManifest {
+
+    /** Name of the manifest file inside the extraction directory. */
+    public static final String FILE_NAME = ".install-manifest";
+
+    // Cannot clash with an entry, entry names that start with a slash are never extracted
+    private static final String IN_PROGRESS_KEY = "/in-progress";
+
+    // entry name -> {crc, size, lastModifiedMillis}
+    private final Map<String, long[]> entries;
+    private final boolean inProgress;
+
+    private InstallManifest(Map<String, long[]> entries) {
+        this(entries, false);
+    }
+
+    private InstallManifest(Map<String, long[]> entries, boolean inProgress) {
+        this.entries = entries;
+        this.inProgress = inProgress;
+    }
+
+    /**
+     * Reads the manifest left in an extraction directory by the previous install.
+     * @param extractionDir The extraction directory.
+     * @return The manifest, or null if there is none or it cannot be read.
+     */
+    public static InstallManifest read(Path extractionDir) {
+        Path manifestPath = extractionDir.resolve(FILE_NAME);
+        if (!Files.exists(manifestPath)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifestPath)) {
+            properties.load(in);
+            boolean inProgress = properties.remove(IN_PROGRESS_KEY) != null;
+            Map<String, long[]> entries = new LinkedHashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                String[] fields = properties.getProperty(name).split(":");
+                entries.put(name, new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]) });
+            }
+            return new InstallManifest(entries, inProgress);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable install manifest " + manifestPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds the manifest for an archive that has just been extracted into {@code extractionDir}.
+     * Only the central directory is read; the extracted files are stat'ed for their size and time.
+     * @param zipFilePath The extracted archive.
+     * @param extractionDir Where it was extracted.
+     * @return The new manifest.
+     * @throws IOException If the archive cannot be read.
+     */
+    public static InstallManifest fromExtractedArchive(Path zipFilePath, Path extractionDir) throws IOException {
+        List<ZipEntry> fileEntries = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (!entry.isDirectory()) {
+                    fileEntries.add(entry);
+                }
+            }
+        }
+        return fromExtractedEntries(fileEntries, extractionDir);
+    }
+
+    /**
+     * Builds the manifest for a zip archive that was extracted while it streamed past, from the file
+     * entries as {@link java.util.zip.ZipInputStream} read them. Once an entry's data has been read, its
+     * CRC-32 and size are known even if they only followed the data, so the manifest is the same as
+     * {@link #fromExtractedArchive} would build from the central directory.
+     * @param fileEntries The file entries written, see {@link StreamingZipExtractor.Result#fileEntries()}.
+     * @param extractionDir Where they were extracted.
+     * @return The new manifest.
+     * @throws IOException If an entry name points outside the extraction directory.
+     */
+    public static InstallManifest fromExtractedEntries(List<ZipEntry> fileEntries, Path extractionDir) throws IOException {
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        for (ZipEntry entry : fileEntries) {
+            Path entryDestPath = SoftwareInstaller.resolveEntryPath(extractionDir, entry.getName());
+            long lastModified = Files.exists(entryDestPath) ? Files.getLastModifiedTime(entryDestPath).toMillis() : -1;
+            entries.put(entry.getName(), new long[] { entry.getCrc(), entry.getSize(), lastModified });
+        }
+        return new InstallManifest(entries);
+    }
+
+    /**
+     * Builds the manifest for an archive without a central directory, such as a tar, from the files
+     * its extraction wrote. Those archives record no CRC-32, so none of their entries ever counts as
+     * unchanged for a later incremental install; removed entries are still found by name.
+     * @param fileNames The names of the files written, as returned by {@link ArchiveFormat#extract}.
+     * @param extractionDir Where the archive was extracted.
+     * @return The new manifest.
+     * @throws IOException If a name points outside the extraction directory.
+     */
+    public static InstallManifest fromExtractedFiles(List<String> fileNames, Path extractionDir) throws IOException {
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        for (String name : fileNames) {
+            Path entryDestPath = SoftwareInstaller.resolveEntryPath(extractionDir, name);
+            long size = -1;
+            long lastModified = -1;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entryDestPath, BasicFileAttributes.class);
+                size = attributes.size();
+                lastModified = attributes.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                // e.g. a link whose target is missing; recorded as absent
+            }
+            entries.put(name, new long[] { -1, size, lastModified });
+        }
+        return new InstallManifest(entries);
+    }
+
+    /**
+     * Checks whether an entry of the new archive is already on disk exactly as it would be extracted.
+     * @param entry The entry in the new archive.
+     * @param entryDestPath Where the entry would be written.
+     * @return {@code true} if the entry can be skipped.
+     */
+    public boolean isUnchanged(ZipEntry entry, Path entryDestPath) {
+        long[] recorded = entries.get(entry.getName());
+        if (recorded == null || entry.getCrc() != recorded[0] || entry.getSize() != recorded[1]) {
+            return false;
+        }
+        try {
+            // Catch files that were modified or replaced after the last install
+            return Files.isRegularFile(entryDestPath)
+                    && Files.size(entryDestPath) == recorded[1]
+                    && Files.getLastModifiedTime(entryDestPath).toMillis() == recorded[2];
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param newer The manifest of the newly installed archive.
+     * @return The entry names listed here but missing from {@code newer}.
+     */
+    public List<String> removedEntries(InstallManifest newer) {
+        List<String> removed = new ArrayList<>();
+        for (String name : entries.keySet()) {
+            if (!newer.entries.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Fingerprints the files the archive wrote as they are on disk now: their names, sizes and
+     * modification times. Only metadata is read, so this is cheap even for large installs. Files that
+     * did not come from the archive are not included, so {@code node_modules} or logs do not change it.
+     * @param extractionDir The extraction directory.
+     * @return The fingerprint as lowercase hex.
+     * @throws IOException If an entry name points outside the extraction directory.
+     */
+    public String fingerprint(Path extractionDir) throws IOException {
+        MessageDigest digest = Digests.newSha256();
+        for (String name : new TreeSet<>(entries.keySet())) {
+            Path entryPath = SoftwareInstaller.resolveEntryPath(extractionDir, name);
+            long size = -1;
+            long lastModified = -1;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entryPath, BasicFileAttributes.class);
+                size = attributes.size();
+                lastModified = attributes.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                // A missing file changes the fingerprint like a modified one
+            }
+            digest.update((name + '\0' + size + '\0' + lastModified + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        return Digests.toHex(digest.digest());
+    }
+
+    /**
+     * @return Whether an in-place update based on this manifest was started and did not finish.
+     */
+    public boolean isInProgress() {
+        return inProgress;
+    }
+
+    /**
+     * Writes the manifest into the extraction directory.
+     * @param extractionDir The extraction directory.
+     * @throws IOException If the manifest cannot be written.
+     */
+    public void write(Path extractionDir) throws IOException {
+        write(extractionDir, false);
+    }
+
+    /**
+     * Writes the manifest flagged as in progress, before an in-place update starts rewriting the files it lists.
+     * @param extractionDir The extraction directory.
+     * @throws IOException If the manifest cannot be written.
+     */
+    public void writeInProgress(Path extractionDir) throws IOException {
+        write(extractionDir, true);
+    }
+
+    private void write(Path extractionDir, boolean inProgress) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+            long[] fields = entry.getValue();
+            properties.setProperty(entry.getKey(), fields[0] + ":" + fields[1] + ":" + fields[2]);
+        }
+        if (inProgress) {
+            properties.setProperty(IN_PROGRESS_KEY, "true");
+        }
+        try (OutputStream out = Files.newOutputStream(extractionDir.resolve(FILE_NAME))) {
+            properties.store(out, "Archive entries written by the last install: crc:size:lastModified");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes an installation as a dependency graph of steps: package downloads, commands
+ * such as {@code npm i}, or anything else that can run on its own.
+ * <p>
+ * A step may only depend on steps that were added before it, so the plan is always acyclic
+ * and the insertion order is a valid topological order. {@link InstallScheduler} runs
+ * independent steps at the same time.
+ */
+public class InstallPlan {
+
+    /**
+     * The work done by one step.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * One node of the plan.
+     * @param id The unique id of the step.
+     * @param action The work to do.
+     * @param dependsOn The ids of the steps that must succeed before this one starts.
+     */
+    public record Step(String id, Action action, List<String> dependsOn) {
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    /**
+     * Adds a step to the plan.
+     * @param id The unique id of the step.
+     * @param action The work to do.
+     * @param dependsOn The ids of steps that must succeed first; they must already be in the plan.
+     * @return This plan, for chaining.
+     * @throws IllegalArgumentException If the id is taken or a dependency is unknown.
+     */
+    public InstallPlan addStep(String id, Action action, String... dependsOn) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new IllegalArgumentException("Step id cannot be null or empty.");
+        }
+        if (steps.containsKey(id)) {
+            throw new IllegalArgumentException("Duplicate step id: " + id);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("Step '" + id + "' depends on unknown step '" + dependency
+                        + "'. Dependencies must be added first.");
+            }
+        }
+        steps.put(id, new Step(id, action, List.of(dependsOn)));
+        return this;
+    }
+
+    /**
+     * Adds a step that installs a package with {@link SoftwareInstaller#installSoftware}.
+     * @param id The unique id of the step.
+     * @param installer The installer to use.
+     * @param zipFileUrl The URL of the zip file to download.
+     * @param appName The name of the extraction directory under the user's home.
+     * @param relativeBinPath The path to add to the PATH, relative to the extracted root.
+     * @param skipPath Whether to skip the PATH modification.
+     * @param dependsOn The ids of steps that must succeed first.
+     * @return This plan, for chaining.
+     */
+    public InstallPlan addPackage(String id, SoftwareInstaller installer, String zipFileUrl, String appName,
+                                  String relativeBinPath, boolean skipPath, String... dependsOn) {
+        return addStep(id, () -> installer.installSoftware(zipFileUrl, appName, relativeBinPath, skipPath), dependsOn);
+    }
+
+    /**
+     * Adds a step that installs a package served by several equivalent mirrors, verified against an
+     * expected digest, see {@link SoftwareInstaller#installSoftware(List, ExpectedChecksum, String, String, boolean)}.
+     * @param id The unique id of the step.
+     * @param installer The installer to use.
+     * @param zipFileUrls The URLs of identical copies of the zip file, the canonical one first.
+     * @param checksum The digest the archive must have; may only be null for a single URL.
+     * @param appName The name of the extraction directory under the user's home.
+     * @param relativeBinPath The path to add to the PATH, relative to the extracted root.
+     * @param skipPath Whether to skip the PATH modification.
+     * @param dependsOn The ids of steps that must succeed first.
+     * @return This plan, for chaining.
+     * @throws IllegalArgumentException If there are several URLs but no checksum.
+     */
+    public InstallPlan addPackage(String id, SoftwareInstaller installer, List<String> zipFileUrls, ExpectedChecksum checksum,
+                                  String appName, String relativeBinPath, boolean skipPath, String... dependsOn) {
+        if (zipFileUrls.size() > 1 && checksum == null) {
+            // Rejected when the plan is built, not once the step runs
+            throw new IllegalArgumentException("Package " + id + " has mirrors but no expected checksum.");
+        }
+        return addStep(id, () -> installer.installSoftware(zipFileUrls, checksum, appName, relativeBinPath, skipPath), dependsOn);
+    }
+
+    /**
+     * @return The steps in insertion order, which is a topological order.
+     */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(new ArrayList<>(steps.values()));
+    }
+}
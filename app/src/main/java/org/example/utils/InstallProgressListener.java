@@ -0,0 +1,30 @@
+package org.example.utils;
+
+/**
+ * Receives progress updates from {@link SoftwareInstaller}.
+ * <p>
+ * Updates are throttled (see {@link ProgressTracker}) and passed as primitives, so reporting costs
+ * no allocation per chunk. Implementations are called from installer worker threads, possibly from
+ * several at once when packages are installed concurrently, and must return quickly; UI listeners
+ * should hand the values over to the event dispatch thread rather than update components directly.
+ */
+@FunctionalInterface
+public interface InstallProgressListener {
+
+    /** The stage of an installation an update belongs to. {@code BUNDLE} is the packing of a FAT installer. */
+    enum Phase { DOWNLOAD, EXTRACT, BUNDLE, PATH, DONE }
+
+    /**
+     * Called with the current state of one phase of one package.
+     * @param appName The package being installed, as passed to {@code installSoftware}.
+     * @param phase The current phase.
+     * @param bytesDone Bytes downloaded, extracted or bundled so far.
+     * @param bytesTotal Total bytes of the phase, or -1 if unknown.
+     * @param entriesDone Archive entries extracted (or files bundled) so far.
+     * @param entriesTotal Total entries to extract or bundle, or -1 if unknown.
+     * @param bytesPerSecond Average throughput of the phase so far.
+     * @param etaMillis Estimated milliseconds until the phase completes, or -1 if unknown.
+     */
+    void onProgress(String appName, Phase phase, long bytesDone, long bytesTotal,
+                    int entriesDone, int entriesTotal, long bytesPerSecond, long etaMillis);
+}
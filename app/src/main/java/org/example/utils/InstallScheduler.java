@@ -0,0 +1,162 @@
+package org.example.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs an {@link InstallPlan}, starting every step as soon as all of its dependencies have
+ * succeeded, with at most {@code maxConcurrency} steps running at the same time.
+ * <p>
+ * If a step fails, every step that depends on it (directly or indirectly) is skipped; independent
+ * steps still run. After the run the scheduler reports, for each step, when it ran and its
+ * critical path time: the longest chain of step durations through its dependencies that ends
+ * with the step itself. The largest critical path time is the lower bound for the whole run,
+ * however much concurrency is available.
+ */
+public class InstallScheduler {
+
+    /** Outcome of a single step. */
+    public enum Status { SUCCEEDED, FAILED, SKIPPED }
+
+    /**
+     * Timing and outcome of one step. Times are in milliseconds since the start of the run.
+     * @param id The step id.
+     * @param status Whether the step succeeded, failed or was skipped.
+     * @param startMs When the step started, or -1 if it was skipped.
+     * @param endMs When the step finished, or -1 if it was skipped.
+     * @param criticalPathMs The critical path time ending with this step.
+     * @param error The failure, or null.
+     */
+    public record StepResult(String id, Status status, long startMs, long endMs, long criticalPathMs, Throwable error) {
+
+        /**
+         * @return How long the step ran, 0 if it was skipped.
+         */
+        public long durationMs() {
+            return status == Status.SKIPPED ? 0 : endMs - startMs;
+        }
+    }
+
+    /**
+     * Result of running a whole plan.
+     * @param steps The result of each step, in plan order.
+     * @param totalMs The wall time of the whole run.
+     */
+    public record Report(List<StepResult> steps, long totalMs) {
+
+        /**
+         * @return Whether every step succeeded.
+         */
+        public boolean succeeded() {
+            return steps.stream().allMatch(step -> step.status() == Status.SUCCEEDED);
+        }
+
+        /**
+         * Prints a summary table of the run.
+         */
+        public void print() {
+            System.out.println("--- Install Plan Report ---");
+            for (StepResult step : steps) {
+                System.out.println(String.format("%-12s %-9s start %6d ms  duration %6d ms  critical path %6d ms",
+                        step.id(), step.status(), step.startMs(), step.durationMs(), step.criticalPathMs()));
+                if (step.error() != null) {
+                    System.out.println("             error: " + step.error().getMessage());
+                }
+            }
+            System.out.println("Total: " + totalMs + " ms");
+        }
+    }
+
+    private final int maxConcurrency;
+
+    /**
+     * @param maxConcurrency The maximum number of steps running at once, at least 1.
+     */
+    public InstallScheduler(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1, got " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Runs the plan and waits for all steps to finish or be skipped.
+     * Step failures do not throw; check {@link Report#succeeded()}.
+     * @param plan The plan to run.
+     * @return The report of the run.
+     */
+    public Report run(InstallPlan plan) {
+        long runStart = System.nanoTime();
+        Map<String, long[]> times = new ConcurrentHashMap<>();
+        Map<String, Throwable> errors = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "install-step");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (InstallPlan.Step step : plan.getSteps()) {
+                CompletableFuture<?>[] dependencies = step.dependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture<?>[]::new);
+                // If any dependency failed, allOf fails and the step never runs
+                CompletableFuture<Void> future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                    long start = elapsedMs(runStart);
+                    try {
+                        step.action().run();
+                    } catch (Exception e) {
+                        errors.put(step.id(), e);
+                        throw new CompletionException(e);
+                    } finally {
+                        times.put(step.id(), new long[] { start, elapsedMs(runStart) });
+                    }
+                }, executor);
+                futures.put(step.id(), future);
+            }
+            // Wait for everything; failures are collected above
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                    .exceptionally(e -> null)
+                    .join();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Steps are in topological order, so dependencies are always computed first
+        Map<String, Long> criticalPaths = new HashMap<>();
+        List<StepResult> results = new ArrayList<>();
+        for (InstallPlan.Step step : plan.getSteps()) {
+            long[] time = times.get(step.id());
+            long longestDependency = 0;
+            for (String dependency : step.dependsOn()) {
+                longestDependency = Math.max(longestDependency, criticalPaths.get(dependency));
+            }
+            Status status;
+            long duration = 0;
+            if (time == null) {
+                status = Status.SKIPPED;
+            } else {
+                status = errors.containsKey(step.id()) ? Status.FAILED : Status.SUCCEEDED;
+                duration = time[1] - time[0];
+            }
+            long criticalPath = longestDependency + duration;
+            criticalPaths.put(step.id(), criticalPath);
+            results.add(new StepResult(step.id(), status,
+                    time != null ? time[0] : -1, time != null ? time[1] : -1,
+                    criticalPath, errors.get(step.id())));
+        }
+        return new Report(results, elapsedMs(runStart));
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
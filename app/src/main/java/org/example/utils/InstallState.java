@@ -0,0 +1,231 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Lockfile of a fully provisioned machine: which archive each package was installed from, a
+ * fingerprint of the files it installed, and the hashes of the project's {@code package-lock.json}
+ * and of the {@code node_modules/.package-lock.json} npm writes once the dependencies are installed.
+ * <p>
+ * It is written once an installation has completed. A later run captures the same information
+ * again and, if nothing differs, can skip the downloads, extraction and {@code npm i} entirely.
+ * Capturing only reads file metadata and two small files, so the check takes well under a second.
+ * Packages installed from a moving URL are additionally revalidated against their server, see
+ * {@link #remoteDifference}.
+ * The lockfile is a plain {@link Properties} file, by default {@code ~/.swing-installer/install-state.properties}.
+ */
+public final class InstallState {
+
+    /**
+     * The recorded state of one package.
+     * @param appName The package's extraction directory under the user's home.
+     * @param url The URL the package is installed from.
+     * @param sha256 The SHA-256 of the installed archive, or null if it is not recorded.
+     * @param treeFingerprint The {@link InstallManifest#fingerprint(Path) fingerprint} of the installed files,
+     *                        or null if the installation has no manifest.
+     */
+    public record PackageState(String appName, String url, String sha256, String treeFingerprint) {
+    }
+
+    private final List<PackageState> packages;
+    private final String packageLockSha256;
+    private final String installedLockSha256;
+
+    private InstallState(List<PackageState> packages, String packageLockSha256, String installedLockSha256) {
+        this.packages = packages;
+        this.packageLockSha256 = packageLockSha256;
+        this.installedLockSha256 = installedLockSha256;
+    }
+
+    /**
+     * Captures the current state of the installation.
+     * @param packageUrls The URL of each package by its app name, in install order.
+     * @param projectDir The npm project whose dependencies are installed.
+     * @return The current state.
+     * @throws IOException If an install manifest lists a path outside its extraction directory.
+     */
+    public static InstallState capture(Map<String, String> packageUrls, Path projectDir) throws IOException {
+        List<PackageState> packages = new ArrayList<>();
+        for (Map.Entry<String, String> entry : packageUrls.entrySet()) {
+            Path extractionDir = InstallerPaths.userHome().resolve(entry.getKey());
+            InstallManifest manifest = InstallManifest.read(extractionDir);
+            packages.add(new PackageState(entry.getKey(), entry.getValue(),
+                    SoftwareInstaller.installedArchiveDigest(extractionDir),
+                    manifest != null ? manifest.fingerprint(extractionDir) : null));
+        }
+        return new InstallState(packages,
+                sha256IfExists(projectDir.resolve("package-lock.json")),
+                sha256IfExists(projectDir.resolve("node_modules").resolve(".package-lock.json")));
+    }
+
+    /**
+     * Loads the lockfile from the default location, {@code ~/.swing-installer/install-state.properties}.
+     * @return The recorded state, or null if there is none or it cannot be read.
+     */
+    public static InstallState load() {
+        return load(defaultPath());
+    }
+
+    /**
+     * @param statePath The lockfile.
+     * @return The recorded state, or null if there is none or it cannot be read.
+     */
+    public static InstallState load(Path statePath) {
+        if (!Files.exists(statePath)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(statePath)) {
+            properties.load(in);
+            List<PackageState> packages = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("packages", "0"));
+            for (int i = 0; i < count; i++) {
+                String prefix = "package." + i + ".";
+                packages.add(new PackageState(properties.getProperty(prefix + "appName"), properties.getProperty(prefix + "url"),
+                        properties.getProperty(prefix + "sha256"), properties.getProperty(prefix + "tree")));
+            }
+            return new InstallState(packages, properties.getProperty("packageLock.sha256"),
+                    properties.getProperty("installedLock.sha256"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable install state " + statePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the lockfile to the default location.
+     * @throws IOException If it cannot be written.
+     */
+    public void save() throws IOException {
+        save(defaultPath());
+    }
+
+    /**
+     * @param statePath The lockfile to write.
+     * @throws IOException If it cannot be written.
+     */
+    public void save(Path statePath) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("packages", Integer.toString(packages.size()));
+        for (int i = 0; i < packages.size(); i++) {
+            PackageState state = packages.get(i);
+            String prefix = "package." + i + ".";
+            properties.setProperty(prefix + "appName", state.appName());
+            properties.setProperty(prefix + "url", state.url());
+            setIfNotNull(properties, prefix + "sha256", state.sha256());
+            setIfNotNull(properties, prefix + "tree", state.treeFingerprint());
+        }
+        setIfNotNull(properties, "packageLock.sha256", packageLockSha256);
+        setIfNotNull(properties, "installedLock.sha256", installedLockSha256);
+
+        Files.createDirectories(statePath.getParent());
+        Path tempPath = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            properties.store(out, "Install state of the last completed installation");
+        }
+        Files.move(tempPath, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the lockfile at the default location, e.g. when an installation starts over.
+     * @throws IOException If it cannot be deleted.
+     */
+    public static void clear() throws IOException {
+        Files.deleteIfExists(defaultPath());
+    }
+
+    /**
+     * Compares this recorded state with the current one. Anything that is not known on both sides counts
+     * as a difference, so a partial installation never looks complete.
+     * @param current The state captured now.
+     * @return Why the installation differs, or null if it is exactly as recorded.
+     */
+    public String differenceFrom(InstallState current) {
+        if (packages.size() != current.packages.size()) {
+            return "the set of packages changed";
+        }
+        for (int i = 0; i < packages.size(); i++) {
+            PackageState recorded = packages.get(i);
+            PackageState now = current.packages.get(i);
+            if (!recorded.appName().equals(now.appName()) || !recorded.url().equals(now.url())) {
+                return now.appName() + " is installed from a different URL";
+            }
+            if (!knownAndEqual(recorded.sha256(), now.sha256())) {
+                return now.appName() + " was installed from a different archive";
+            }
+            if (!knownAndEqual(recorded.treeFingerprint(), now.treeFingerprint())) {
+                return "files of " + now.appName() + " were changed or removed";
+            }
+        }
+        if (!knownAndEqual(packageLockSha256, current.packageLockSha256)) {
+            return "package-lock.json changed";
+        }
+        if (!knownAndEqual(installedLockSha256, current.installedLockSha256)) {
+            return "node_modules does not match package-lock.json";
+        }
+        return null;
+    }
+
+    /**
+     * Asks the servers whether the archives of packages without a pinned checksum changed since they were
+     * installed. Comparing local state cannot notice that: such a package is installed from a moving URL,
+     * e.g. a branch archive, that serves new content under the same name. Each of them is revalidated with a
+     * conditional HEAD request carrying the ETag / Last-Modified the download cache stored with the archive.
+     * Anything but a confirmation that the archive is unchanged, a network error included, counts as a difference.
+     * @param cache The download cache the packages were downloaded through.
+     * @param pinnedAppNames The packages whose archive is pinned by an expected checksum; their content cannot
+     *                       change without the recorded digest no longer matching, so they are not asked about.
+     * @return Why an archive may have changed, or null if every unpinned archive is still current.
+     */
+    public String remoteDifference(DownloadCache cache, Set<String> pinnedAppNames) {
+        for (PackageState recorded : packages) {
+            if (pinnedAppNames.contains(recorded.appName())) {
+                continue;
+            }
+            DownloadCache.Entry entry = cache.lookup(recorded.url());
+            if (entry == null || !entry.sha256().equals(recorded.sha256())) {
+                return "no validators are cached for the archive of " + recorded.appName();
+            }
+            if (!cache.revalidate(entry)) {
+                return "the archive of " + recorded.appName() + " may have changed on the server";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The recorded packages, in install order.
+     */
+    public List<PackageState> getPackages() {
+        return packages;
+    }
+
+    private static boolean knownAndEqual(String recorded, String current) {
+        return recorded != null && Objects.equals(recorded, current);
+    }
+
+    private static String sha256IfExists(Path file) throws IOException {
+        return Files.isRegularFile(file) ? Digests.sha256(file) : null;
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static Path defaultPath() {
+        return InstallerPaths.stateDir().resolve("install-state.properties");
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects per-phase timings and counters of one installation run and writes them as a JSON report
+ * to {@code ~/.swing-installer/reports}, so runs on different machines can be compared.
+ * <p>
+ * Phases are recorded by {@link SoftwareInstaller} (download, extract and PATH of each package) and
+ * by whoever runs the commands. Times come from {@link System#nanoTime()} and are reported in
+ * milliseconds since the telemetry was created. Recording is thread-safe, since packages install
+ * concurrently.
+ */
+public class InstallTelemetry {
+
+    private static final DateTimeFormatter FILE_NAME_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    /**
+     * One timed phase.
+     * @param step The step the phase belongs to, e.g. the package name or a command step id.
+     * @param phase The phase, e.g. {@code download} or {@code command}.
+     * @param startMs When the phase started, in milliseconds since the run started.
+     * @param durationMs How long the phase took.
+     * @param peakBytesPerSecond The highest throughput measured during the phase, 0 if not applicable.
+     * @param counters Named counters, e.g. {@code bytes} and {@code files}, sorted by name.
+     */
+    public record PhaseRecord(String step, String phase, long startMs, long durationMs,
+                              long peakBytesPerSecond, Map<String, Long> counters) {
+    }
+
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final Path reportDir;
+    // Guarded by "this"
+    private final List<PhaseRecord> phases = new ArrayList<>();
+
+    /**
+     * Creates telemetry that writes its report to {@code ~/.swing-installer/reports}.
+     */
+    public InstallTelemetry() {
+        this(InstallerPaths.stateDir().resolve("reports"));
+    }
+
+    /**
+     * @param reportDir The directory reports are written to.
+     */
+    public InstallTelemetry(Path reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    /**
+     * Records a phase tracked by a {@link ProgressTracker}, with its byte and entry counts.
+     * @param step The step the phase belongs to.
+     * @param tracker The tracker of the phase; if it was not finished, the phase is timed until now.
+     */
+    public void recordPhase(String step, ProgressTracker tracker) {
+        Map<String, Long> counters = new TreeMap<>();
+        counters.put("bytes", tracker.getBytesDone());
+        counters.put("files", (long) tracker.getEntriesDone());
+        recordPhase(step, tracker.getPhase().name().toLowerCase(), tracker.getStartNanos(), tracker.getEndNanos(),
+                tracker.getPeakBytesPerSecond(), counters);
+    }
+
+    /**
+     * Records a phase.
+     * @param step The step the phase belongs to.
+     * @param phase The name of the phase.
+     * @param phaseStartNanos The {@link System#nanoTime()} at which the phase started.
+     * @param phaseEndNanos The {@link System#nanoTime()} at which the phase ended.
+     * @param peakBytesPerSecond The highest throughput during the phase, 0 if not applicable.
+     * @param counters Named counters of the phase.
+     */
+    public synchronized void recordPhase(String step, String phase, long phaseStartNanos, long phaseEndNanos,
+                                         long peakBytesPerSecond, Map<String, Long> counters) {
+        phases.add(new PhaseRecord(step, phase, (phaseStartNanos - startNanos) / 1_000_000,
+                (phaseEndNanos - phaseStartNanos) / 1_000_000, peakBytesPerSecond,
+                Collections.unmodifiableMap(new TreeMap<>(counters))));
+    }
+
+    /**
+     * @return The phases recorded so far, in recording order.
+     */
+    public synchronized List<PhaseRecord> getPhases() {
+        return List.copyOf(phases);
+    }
+
+    /**
+     * Writes the report of the run: environment, the scheduler's step results and all recorded phases.
+     * @param report The result of running the install plan.
+     * @return The written report file.
+     * @throws IOException If the report cannot be written.
+     */
+    public Path writeReport(InstallScheduler.Report report) throws IOException {
+        Files.createDirectories(reportDir);
+        Path reportFile = reportDir.resolve("install-" + FILE_NAME_TIME.format(startedAt) + ".json");
+        Path tempFile = reportDir.resolve(reportFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, toJson(report));
+        // Report collectors never see a half-written file
+        Files.move(tempFile, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return reportFile;
+    }
+
+    /**
+     * @param report The result of running the install plan.
+     * @return The report as a JSON document.
+     */
+    public String toJson(InstallScheduler.Report report) {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"startedAt\": ").append(quote(startedAt.toString())).append(",\n");
+        json.append("  \"totalMs\": ").append(report.totalMs()).append(",\n");
+        json.append("  \"succeeded\": ").append(report.succeeded()).append(",\n");
+        json.append("  \"environment\": {");
+        json.append("\"os\": ").append(quote(System.getProperty("os.name") + " " + System.getProperty("os.version")));
+        json.append(", \"arch\": ").append(quote(System.getProperty("os.arch")));
+        json.append(", \"java\": ").append(quote(System.getProperty("java.version")));
+        json.append(", \"processors\": ").append(Runtime.getRuntime().availableProcessors());
+        json.append("},\n");
+
+        json.append("  \"steps\": [");
+        List<InstallScheduler.StepResult> steps = report.steps();
+        for (int i = 0; i < steps.size(); i++) {
+            InstallScheduler.StepResult step = steps.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"id\": ").append(quote(step.id()));
+            json.append(", \"status\": ").append(quote(step.status().name()));
+            json.append(", \"startMs\": ").append(step.startMs());
+            json.append(", \"durationMs\": ").append(step.durationMs());
+            json.append(", \"criticalPathMs\": ").append(step.criticalPathMs());
+            json.append(", \"error\": ").append(step.error() != null ? quote(String.valueOf(step.error().getMessage())) : "null");
+            json.append('}');
+        }
+        json.append(steps.isEmpty() ? "],\n" : "\n  ],\n");
+
+        json.append("  \"phases\": [");
+        List<PhaseRecord> recorded = getPhases();
+        for (int i = 0; i < recorded.size(); i++) {
+            PhaseRecord phase = recorded.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"step\": ").append(quote(phase.step()));
+            json.append(", \"phase\": ").append(quote(phase.phase()));
+            json.append(", \"startMs\": ").append(phase.startMs());
+            json.append(", \"durationMs\": ").append(phase.durationMs());
+            json.append(", \"peakBytesPerSecond\": ").append(phase.peakBytesPerSecond());
+            json.append(", \"counters\": {");
+            boolean first = true;
+            for (Map.Entry<String, Long> counter : phase.counters().entrySet()) {
+                json.append(first ? "" : ", ").append(quote(counter.getKey())).append(": ").append(counter.getValue());
+                first = false;
+            }
+            json.append("}}");
+        }
+        json.append(recorded.isEmpty() ? "]\n" : "\n  ]\n");
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Quotes a string as a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Well-known locations used by the installer.
+ * Everything the installer keeps between runs (caches, checkpoints of its own state)
+ * lives under a single hidden directory in the user's home.
+ */
+public final class InstallerPaths {
+
+    private InstallerPaths() {
+    }
+
+    /**
+     * @return The user's home directory.
+     */
+    public static Path userHome() {
+        return Paths.get(System.getProperty("user.home"));
+    }
+
+    /**
+     * @return The directory holding the installer's persistent state, {@code ~/.swing-installer}.
+     */
+    public static Path stateDir() {
+        return userHome().resolve(".swing-installer");
+    }
+}
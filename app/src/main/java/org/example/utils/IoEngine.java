@@ -0,0 +1,56 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Strategy for writing a stream, such as a download or an inflated zip entry, to a file.
+ * <p>
+ * {@link StreamIoEngine} is the classic {@code InputStream}/{@code OutputStream} loop through a heap
+ * buffer. {@link NioIoEngine} writes through a {@link java.nio.channels.FileChannel} from a reused direct
+ * buffer into a file preallocated to its expected size. Both produce identical files, so the engine used by
+ * {@link SoftwareInstaller} can be switched with {@link SoftwareInstaller#setIoEngine(IoEngine)} and the
+ * two can be compared on the same archive.
+ */
+public interface IoEngine {
+
+    /**
+     * Copies streams to files. A copier may keep its buffers between copies and is not thread-safe;
+     * every thread needs its own.
+     */
+    interface Copier {
+
+        /**
+         * Writes everything {@code in} returns to {@code target}, replacing any existing file.
+         * The input stream is not closed.
+         * @param in The stream to read.
+         * @param target The file to write.
+         * @param expectedSize The expected number of bytes, or -1 if unknown. It is only a hint.
+         * @param progress Receives the number of bytes written.
+         * @return The number of bytes written.
+         * @throws IOException If reading or writing fails.
+         */
+        long copy(InputStream in, Path target, long expectedSize, ProgressTracker progress) throws IOException;
+    }
+
+    /**
+     * @param bufferSize The size of the copy buffer in bytes, at least 1.
+     * @return A new copier for the calling thread.
+     */
+    Copier newCopier(int bufferSize);
+
+    /**
+     * Looks up an engine by name, for configuration files and benchmarks.
+     * @param name {@code stream} or {@code nio}.
+     * @return A new engine of that kind.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    static IoEngine forName(String name) {
+        return switch (name) {
+            case "stream" -> new StreamIoEngine();
+            case "nio" -> new NioIoEngine();
+            default -> throw new IllegalArgumentException("Unknown I/O engine: " + name + " (expected stream or nio)");
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers how fast each download mirror was, across runs, so that one lucky or unlucky probe
+ * does not decide alone which mirror serves the next install.
+ * <p>
+ * Mirrors are identified by their origin ({@code scheme://host:port}). For each one the file keeps
+ * an exponentially weighted moving average of the probe latency and of the download throughput,
+ * plus a count of consecutive failures. It is a plain {@link Properties} file, by default
+ * {@code ~/.swing-installer/mirrors.properties}. All methods are synchronized because segment threads
+ * record their throughput concurrently.
+ */
+public class MirrorStats {
+
+    // Weight of a new measurement in the moving averages
+    private static final double SMOOTHING = 0.3;
+    // Added to the expected time of a mirror per consecutive failure
+    private static final long FAILURE_PENALTY_MILLIS = 5_000;
+
+    private final Path statsPath;
+    private final Properties properties = new Properties();
+
+    /**
+     * Creates statistics that are kept in memory only.
+     */
+    public MirrorStats() {
+        this.statsPath = null;
+    }
+
+    private MirrorStats(Path statsPath) {
+        this.statsPath = statsPath;
+    }
+
+    /**
+     * Loads the statistics from the default location, {@code ~/.swing-installer/mirrors.properties}.
+     * @return The statistics; empty if the file does not exist or cannot be read.
+     */
+    public static MirrorStats load() {
+        return load(InstallerPaths.stateDir().resolve("mirrors.properties"));
+    }
+
+    /**
+     * @param statsPath The statistics file. It is created by {@link #save()} if it does not exist.
+     * @return The statistics; empty if the file does not exist or cannot be read.
+     */
+    public static MirrorStats load(Path statsPath) {
+        MirrorStats stats = new MirrorStats(statsPath);
+        if (Files.exists(statsPath)) {
+            try (InputStream in = Files.newInputStream(statsPath)) {
+                stats.properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Ignoring unreadable mirror statistics " + statsPath + ": " + e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Records how long a mirror took to answer a probe, and that it answered.
+     * @param uri Any URI of the mirror.
+     * @param millis The time to the response headers.
+     */
+    public synchronized void recordLatency(URI uri, long millis) {
+        String origin = origin(uri);
+        average(origin + ".latencyMillis", millis);
+        properties.remove(origin + ".failures");
+    }
+
+    /**
+     * Records the throughput a mirror delivered for one transfer.
+     * @param uri Any URI of the mirror.
+     * @param bytes The bytes transferred.
+     * @param nanos The time the transfer took.
+     */
+    public synchronized void recordThroughput(URI uri, long bytes, long nanos) {
+        if (bytes <= 0 || nanos <= 0) {
+            return;
+        }
+        average(origin(uri) + ".bytesPerSecond", bytes * 1_000_000_000L / nanos);
+    }
+
+    /**
+     * Records that a mirror failed or timed out.
+     * @param uri Any URI of the mirror.
+     */
+    public synchronized void recordFailure(URI uri) {
+        String key = origin(uri) + ".failures";
+        properties.setProperty(key, Long.toString(get(key, 0) + 1));
+    }
+
+    /**
+     * Estimates how long a mirror needs to deliver a file, from its latency, throughput and failures.
+     * @param uri Any URI of the mirror.
+     * @param latencyMillis The latency measured just now, or -1 to use the recorded one only.
+     * @param contentLength The size of the file, or -1 if unknown.
+     * @return The expected time in milliseconds; mirrors without any history rank by the given latency alone.
+     */
+    public synchronized long expectedMillis(URI uri, long latencyMillis, long contentLength) {
+        String origin = origin(uri);
+        long recordedLatency = get(origin + ".latencyMillis", -1);
+        long latency;
+        if (recordedLatency < 0) {
+            latency = Math.max(latencyMillis, 0);
+        } else if (latencyMillis < 0) {
+            latency = recordedLatency;
+        } else {
+            latency = Math.round(SMOOTHING * latencyMillis + (1 - SMOOTHING) * recordedLatency);
+        }
+        long bytesPerSecond = get(origin + ".bytesPerSecond", -1);
+        long transfer = bytesPerSecond > 0 && contentLength > 0 ? contentLength * 1000 / bytesPerSecond : 0;
+        return latency + transfer + get(origin + ".failures", 0) * FAILURE_PENALTY_MILLIS;
+    }
+
+    /**
+     * Writes the statistics back to their file, if they have one.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (statsPath == null) {
+            return;
+        }
+        Files.createDirectories(statsPath.getParent());
+        Path tempPath = statsPath.resolveSibling(statsPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            properties.store(out, "Download mirror statistics");
+        }
+        Files.move(tempPath, statsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void average(String key, long value) {
+        long previous = get(key, -1);
+        long averaged = previous < 0 ? value : Math.round(SMOOTHING * value + (1 - SMOOTHING) * previous);
+        properties.setProperty(key, Long.toString(averaged));
+    }
+
+    private long get(String key, long defaultValue) {
+        try {
+            return Long.parseLong(properties.getProperty(key, Long.toString(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String origin(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+}
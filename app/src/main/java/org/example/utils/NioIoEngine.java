@@ -0,0 +1,99 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies into a {@link FileChannel} from a direct buffer that every copier allocates once and reuses
+ * for all of its copies.
+ * <p>
+ * Reads from the stream accumulate in the direct buffer and are written with one positional write
+ * per full buffer, instead of one write per read, and writing from a direct buffer saves the copy
+ * into a temporary native buffer that heap buffers need. When the expected size is known and larger
+ * than the buffer, the file is first extended to that size, so the file system can allocate it in
+ * one go rather than growing it write by write. If the stream turns out shorter, the file is cut to
+ * what was written.
+ * <p>
+ * {@link FileChannel#transferFrom} is not used for streams: from a channel that is not a file it copies
+ * through a new 8 KiB heap buffer per call, which is slower than this loop. Zero-copy transfers need
+ * a file as the source.
+ */
+public class NioIoEngine implements IoEngine {
+
+    @Override
+    public Copier newCopier(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1, got " + bufferSize);
+        }
+        return new NioCopier(bufferSize);
+    }
+
+    /**
+     * Opens a file for writing with its final length already set. Unlike writing a byte at the end, setting the
+     * length does not make Windows zero-fill the file first.
+     */
+    static FileChannel openPreallocated(Path target, long size) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw");
+        try {
+            // Also truncates whatever was there before
+            file.setLength(0);
+            file.setLength(size);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        // Closing the channel closes the file
+        return file.getChannel();
+    }
+
+    private static class NioCopier implements Copier {
+        private final ByteBuffer buffer;
+        // InputStream can only read into arrays; this is the landing area for each read
+        private final byte[] readArea;
+
+        NioCopier(int bufferSize) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            readArea = new byte[Math.min(bufferSize, 64 * 1024)];
+        }
+
+        @Override
+        public long copy(InputStream in, Path target, long expectedSize, ProgressTracker progress) throws IOException {
+            // Files that fit into one buffer are written with a single call anyway; only preallocate larger ones
+            boolean preallocate = expectedSize > buffer.capacity();
+            try (FileChannel channel = preallocate ? openPreallocated(target, expectedSize)
+                    : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                buffer.clear();
+                int bytesRead;
+                while ((bytesRead = in.read(readArea, 0, Math.min(readArea.length, buffer.remaining()))) != -1) {
+                    buffer.put(readArea, 0, bytesRead);
+                    if (!buffer.hasRemaining()) {
+                        position = flush(channel, position);
+                    }
+                    progress.addBytes(bytesRead);
+                }
+                position = flush(channel, position);
+                if (preallocate && position != expectedSize) {
+                    // The stream was shorter than announced
+                    channel.truncate(position);
+                }
+                return position;
+            }
+        }
+
+        private long flush(FileChannel channel, long position) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            return position;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of resolved {@code node_modules} trees, so {@code npm i} only runs when the dependencies changed.
+ * <p>
+ * A snapshot is keyed by the SHA-256 of the project's {@code package-lock.json} together with the Node.js
+ * version, since native modules are built for one Node ABI. Snapshots live under {@code snapshots/<key>}
+ * with a small {@code <key>.properties} file recording their size and when they were last used.
+ * <p>
+ * Storing and restoring walk the tree with a fork/join pool, one task per directory like
+ * {@link ParallelDeleter}. Both always copy the files, never hard-link them: install scripts and tools
+ * like {@code patch-package} write into files in place, and through a hard link such a write, in the project
+ * the snapshot was taken from or in one it was restored into, would change the snapshot for every later restore.
+ * <p>
+ * The total size of the snapshots is bounded; the least recently used ones are evicted first, and a tree
+ * larger than the whole bound is not stored at all. Installers running at the same time share the cache,
+ * so eviction and restoring hold a lock on {@value #LOCK_FILE} in the cache directory; a snapshot is never
+ * evicted while it is being restored.
+ */
+public class NodeModulesCache {
+
+    /** Default size bound for all snapshots, 2 GiB. */
+    public static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+    // Locked by every process that evicts or restores
+    private static final String LOCK_FILE = ".lock";
+    // A file lock is held per JVM, so threads of this one take turns before asking for it
+    private static final Object JVM_LOCK = new Object();
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final int parallelism;
+
+    /**
+     * Result of copying a tree into or out of the cache.
+     * @param files The number of files and links written.
+     * @param bytes The total size of the files.
+     * @param failed The number of paths that could not be written.
+     */
+    public record TreeCopy(long files, long bytes, long failed) {
+    }
+
+    /**
+     * Creates a cache in the default location, {@code ~/.swing-installer/node_modules-cache}.
+     */
+    public NodeModulesCache() {
+        this(InstallerPaths.stateDir().resolve("node_modules-cache"), DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param cacheDir The directory holding the snapshots.
+     * @param maxBytes The maximum total size of the snapshots.
+     */
+    public NodeModulesCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Computes the key of a project's dependencies.
+     * @param projectDir The npm project.
+     * @param nodeVersion The Node.js version the dependencies are installed with, e.g. {@code v22.16.0}.
+     * @return The key, or null if the project has no {@code package-lock.json} and so cannot be cached.
+     * @throws IOException If the lockfile cannot be read.
+     */
+    public static String key(Path projectDir, String nodeVersion) throws IOException {
+        Path packageLock = projectDir.resolve("package-lock.json");
+        if (!Files.isRegularFile(packageLock)) {
+            return null;
+        }
+        return Digests.sha256(Digests.sha256(packageLock) + '\0' + nodeVersion);
+    }
+
+    /**
+     * Replaces the project's {@code node_modules} with the snapshot for a key, if there is one.
+     * The snapshot is copied next to it first and then moved into place, so a failed restore
+     * never leaves a half-filled {@code node_modules} behind, and nothing done to the restored
+     * files can change the snapshot.
+     * @param key The key from {@link #key(Path, String)}.
+     * @param projectDir The npm project.
+     * @return What was restored, or null if there is no snapshot for the key.
+     * @throws IOException If the snapshot exists but cannot be restored.
+     */
+    public TreeCopy restore(String key, Path projectDir) throws IOException {
+        Path nodeModules = projectDir.resolve("node_modules");
+        Path restoringDir = projectDir.resolve("node_modules.restoring");
+        TreeCopy copy;
+        synchronized (JVM_LOCK) {
+            try (FileChannel lockChannel = openLockFile()) {
+                // Released when the channel closes
+                lockChannel.lock();
+                Path snapshotDir = snapshotDirFor(key);
+                Properties info = readInfo(key);
+                if (info == null || !Files.isDirectory(snapshotDir)) {
+                    return null;
+                }
+                SoftwareInstaller.deleteDirectory(restoringDir);
+                copy = copyTree(snapshotDir, restoringDir);
+                if (copy.failed() > 0) {
+                    SoftwareInstaller.deleteDirectory(restoringDir);
+                    throw new IOException("Could not restore " + copy.failed() + " paths of node_modules snapshot " + key);
+                }
+                info.setProperty("lastUsed", Long.toString(System.currentTimeMillis()));
+                writeInfo(key, info);
+            }
+        }
+        SoftwareInstaller.deleteDirectory(nodeModules);
+        Files.move(restoringDir, nodeModules, StandardCopyOption.ATOMIC_MOVE);
+        return copy;
+    }
+
+    /**
+     * Stores the project's {@code node_modules} as the snapshot for a key and evicts old snapshots
+     * if the cache grew too large. Does nothing if the key already has a snapshot, and discards the
+     * snapshot again if it alone is larger than the size bound.
+     * @param key The key from {@link #key(Path, String)}.
+     * @param projectDir The npm project whose dependencies were just installed.
+     * @return What was stored, or null if nothing was.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public TreeCopy store(String key, Path projectDir) throws IOException {
+        Path nodeModules = projectDir.resolve("node_modules");
+        Path snapshotDir = snapshotDirFor(key);
+        if (!Files.isDirectory(nodeModules) || Files.isDirectory(snapshotDir)) {
+            return null;
+        }
+        Path tempDir = snapshotDir.resolveSibling(key + ".tmp");
+        SoftwareInstaller.deleteDirectory(tempDir);
+        Files.createDirectories(tempDir.getParent());
+        TreeCopy copy = copyTree(nodeModules, tempDir);
+        if (copy.failed() > 0) {
+            SoftwareInstaller.deleteDirectory(tempDir);
+            throw new IOException("Could not snapshot " + copy.failed() + " paths of " + nodeModules);
+        }
+        if (copy.bytes() > maxBytes) {
+            // Eviction would delete it right away, after pushing out every other snapshot
+            SoftwareInstaller.deleteDirectory(tempDir);
+            System.out.println("Not caching " + nodeModules + ": " + copy.bytes() + " bytes exceed the cache size of "
+                    + maxBytes + " bytes.");
+            return null;
+        }
+        try {
+            Files.move(tempDir, snapshotDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another install stored the same dependencies concurrently
+            SoftwareInstaller.deleteDirectory(tempDir);
+            return null;
+        }
+        Properties info = new Properties();
+        info.setProperty("size", Long.toString(copy.bytes()));
+        info.setProperty("files", Long.toString(copy.files()));
+        info.setProperty("lastUsed", Long.toString(System.currentTimeMillis()));
+        writeInfo(key, info);
+        evict();
+        return copy;
+    }
+
+    /**
+     * Removes least recently used snapshots until they fit within the size bound.
+     * Snapshot directories without an info file are left-overs of an interrupted store and are removed too.
+     * Holds the cache lock, so it waits for restores and evictions of other installers.
+     * @throws IOException If the cache directory cannot be listed or locked.
+     */
+    public void evict() throws IOException {
+        synchronized (JVM_LOCK) {
+            try (FileChannel lockChannel = openLockFile()) {
+                // Released when the channel closes
+                lockChannel.lock();
+                evictLocked();
+            }
+        }
+    }
+
+    private FileChannel openLockFile() throws IOException {
+        Files.createDirectories(cacheDir);
+        return FileChannel.open(cacheDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private void evictLocked() throws IOException {
+        Path snapshotsDir = cacheDir.resolve("snapshots");
+        if (!Files.isDirectory(snapshotsDir)) {
+            return;
+        }
+        record Snapshot(String key, long size, long lastUsed) {
+        }
+        List<Snapshot> snapshots = new ArrayList<>();
+        List<Path> orphans = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(snapshotsDir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (!Files.isDirectory(path) || name.endsWith(".tmp")) {
+                    continue;
+                }
+                Properties info = readInfo(name);
+                if (info == null) {
+                    orphans.add(path);
+                    continue;
+                }
+                try {
+                    snapshots.add(new Snapshot(name, Long.parseLong(info.getProperty("size", "")),
+                            Long.parseLong(info.getProperty("lastUsed", "0"))));
+                } catch (NumberFormatException e) {
+                    orphans.add(path);
+                }
+            }
+        }
+        for (Path orphan : orphans) {
+            SoftwareInstaller.deleteDirectory(orphan);
+            Files.deleteIfExists(infoPathFor(orphan.getFileName().toString()));
+        }
+
+        long totalBytes = snapshots.stream().mapToLong(Snapshot::size).sum();
+        snapshots.sort(Comparator.comparingLong(Snapshot::lastUsed));
+        for (Snapshot snapshot : snapshots) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            // The info file goes first, so a half-deleted snapshot is never restored
+            Files.deleteIfExists(infoPathFor(snapshot.key()));
+            SoftwareInstaller.deleteDirectory(snapshotDirFor(snapshot.key()));
+            totalBytes -= snapshot.size();
+            System.out.println("Evicted node_modules snapshot " + snapshot.key() + " (" + snapshot.size() + " bytes)");
+        }
+    }
+
+    private TreeCopy copyTree(Path source, Path target) {
+        LongAdder files = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CopyTask(source, target, files, bytes, failed));
+        } finally {
+            pool.shutdown();
+        }
+        return new TreeCopy(files.sum(), bytes.sum(), failed.sum());
+    }
+
+    /**
+     * Copies one directory: its files directly, its subdirectories as forked subtasks.
+     */
+    private static class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // ForkJoinTask is Serializable, but these tasks never leave the pool
+        private final transient Path source;
+        private final transient Path target;
+        private final LongAdder files;
+        private final LongAdder bytes;
+        private final LongAdder failed;
+
+        CopyTask(Path source, Path target, LongAdder files, LongAdder bytes, LongAdder failed) {
+            this.source = source;
+            this.target = target;
+            this.files = files;
+            this.bytes = bytes;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Files.createDirectories(target);
+            } catch (IOException e) {
+                System.err.println("Failed to create " + target + ": " + e.getMessage());
+                failed.increment();
+                return;
+            }
+            List<CopyTask> subtasks = new ArrayList<>();
+            try {
+                Files.walkFileTree(source, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        Path dest = target.resolve(file.getFileName().toString());
+                        // At depth 1 subdirectories are reported here too; links are not followed
+                        if (attrs.isDirectory()) {
+                            CopyTask subtask = new CopyTask(file, dest, files, bytes, failed);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        } else {
+                            copyFile(file, dest, attrs);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        System.err.println("Failed to access " + file + ": " + e.getMessage());
+                        failed.increment();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Error walking directory for copying: " + source + ": " + e.getMessage());
+                failed.increment();
+            }
+            for (CopyTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+
+        private void copyFile(Path file, Path dest, BasicFileAttributes attrs) {
+            try {
+                if (attrs.isSymbolicLink()) {
+                    // npm links package binaries into .bin; keep them as links
+                    Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+                } else {
+                    Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                }
+                files.increment();
+                bytes.add(attrs.size());
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("Failed to copy " + file + ": " + e.getMessage());
+                failed.increment();
+            }
+        }
+    }
+
+    private Path snapshotDirFor(String key) {
+        return cacheDir.resolve("snapshots").resolve(key);
+    }
+
+    private Path infoPathFor(String key) {
+        return cacheDir.resolve("snapshots").resolve(key + ".properties");
+    }
+
+    private Properties readInfo(String key) {
+        Path infoPath = infoPathFor(key);
+        if (!Files.exists(infoPath)) {
+            return null;
+        }
+        Properties info = new Properties();
+        try (InputStream in = Files.newInputStream(infoPath)) {
+            info.load(in);
+            return info;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable node_modules snapshot info " + infoPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeInfo(String key, Properties info) throws IOException {
+        Path infoPath = infoPathFor(key);
+        Files.createDirectories(infoPath.getParent());
+        Path tempPath = infoPath.resolveSibling(infoPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            info.store(out, "node_modules snapshot");
+        }
+        Files.move(tempPath, infoPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
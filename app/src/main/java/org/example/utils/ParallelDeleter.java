@@ -0,0 +1,146 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes a directory tree using a fork/join pool.
+ * <p>
+ * Each directory is one task: it lists its own entries with {@link Files#walkFileTree} limited to
+ * depth 1, deletes the files directly, forks a subtask per subdirectory and deletes itself once
+ * all subtasks have joined. Only the directories currently being processed are held in memory,
+ * never the full list of paths, so trees like a large {@code node_modules} can be deleted
+ * without sorting hundreds of thousands of paths first.
+ * <p>
+ * Symbolic links are deleted as links; their targets are never followed.
+ */
+public class ParallelDeleter {
+
+    private final int parallelism;
+
+    /**
+     * Result of a deletion.
+     * @param deleted The number of files, links and directories that were deleted.
+     * @param failed The number of paths that could not be deleted or listed.
+     */
+    public record DeleteResult(long deleted, long failed) {
+    }
+
+    /**
+     * Creates a deleter using one worker per available processor.
+     */
+    public ParallelDeleter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism The number of worker threads, at least 1.
+     */
+    public ParallelDeleter(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Deletes a directory and everything below it. Failures are counted rather than thrown, so
+     * as much as possible is deleted.
+     * @param directory The directory to delete.
+     * @return How many paths were deleted and how many failed.
+     */
+    public DeleteResult delete(Path directory) {
+        LongAdder deleted = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DeleteTask(directory, deleted, failed));
+        } finally {
+            pool.shutdown();
+        }
+        return new DeleteResult(deleted.sum(), failed.sum());
+    }
+
+    /**
+     * Deletes one directory: its files directly, its subdirectories as forked subtasks.
+     */
+    private static class DeleteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // ForkJoinTask is Serializable, but these tasks never leave the pool
+        private final transient Path directory;
+        private final LongAdder deleted;
+        private final LongAdder failed;
+
+        DeleteTask(Path directory, LongAdder deleted, LongAdder failed) {
+            this.directory = directory;
+            this.deleted = deleted;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTask> subtasks = new ArrayList<>();
+            // A directory that cannot be listed cannot be emptied either, so it counts as one failure
+            boolean[] unreadable = new boolean[1];
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        // At depth 1 subdirectories are reported here too; links are not followed
+                        if (attrs.isDirectory()) {
+                            DeleteTask subtask = new DeleteTask(file, deleted, failed);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        } else {
+                            deletePath(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        System.err.println("Failed to access " + file + ": " + e.getMessage());
+                        failed.increment();
+                        if (file.equals(directory)) {
+                            unreadable[0] = true;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Error walking directory for deletion: " + directory + ": " + e.getMessage());
+                failed.increment();
+                unreadable[0] = true;
+            }
+            for (DeleteTask subtask : subtasks) {
+                subtask.join();
+            }
+            if (!unreadable[0]) {
+                deletePath(directory);
+            }
+        }
+
+        private void deletePath(Path path) {
+            try {
+                Files.delete(path);
+                deleted.increment();
+            } catch (IOException e) {
+                // Log error but continue deleting other files if possible
+                System.err.println("Failed to delete " + path + ": " + e.getMessage());
+                failed.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a zip archive using several threads.
+ * <p>
+ * Archives like the Node distribution contain thousands of small files, so extraction is dominated
+ * by per-file system calls rather than by inflating. This extractor first creates the complete
+ * directory skeleton, then lets a fixed number of workers pull file entries from a shared list.
+ * Each worker opens its own {@link ZipFile} handle (a single handle serializes reads) and reuses
+ * one {@link IoEngine.Copier}, and with it its buffers, for all of its entries.
+ * <p>
+ * The extracted files and the detected root directory are the same as with the sequential extraction
+ * in {@link SoftwareInstaller}.
+ */
+public class ParallelZipExtractor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int threads;
+    private final int bufferSize;
+    private final IoEngine ioEngine;
+
+    /**
+     * @param threads The number of worker threads, at least 1.
+     */
+    public ParallelZipExtractor(int threads) {
+        this(threads, BUFFER_SIZE, new StreamIoEngine());
+    }
+
+    /**
+     * @param threads The number of worker threads, at least 1.
+     * @param ioEngine How the workers write entries to disk.
+     */
+    public ParallelZipExtractor(int threads, IoEngine ioEngine) {
+        this(threads, BUFFER_SIZE, ioEngine);
+    }
+
+    /**
+     * @param threads The number of worker threads, at least 1.
+     * @param bufferSize The size of each worker's copy buffer in bytes, at least 1.
+     * @param ioEngine How the workers write entries to disk.
+     */
+    public ParallelZipExtractor(int threads, int bufferSize, IoEngine ioEngine) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1, got " + bufferSize);
+        }
+        this.threads = threads;
+        this.bufferSize = bufferSize;
+        this.ioEngine = ioEngine;
+    }
+
+    /**
+     * Extracts a zip file to a destination directory.
+     * @param zipFilePath The path to the zip file.
+     * @param destDir The directory where contents should be extracted.
+     * @param shouldWrite Decides, for each file entry and its destination, whether it is written.
+     *                    Directories are always created.
+     * @param progress Tracks the written entries and bytes; totals cover the entries that are written.
+     * @return The root directory name detected from the first entry, or null if none found.
+     * @throws IOException If an entry would be written outside {@code destDir} or an I/O error occurs.
+     */
+    public String extract(Path zipFilePath, Path destDir, BiPredicate<ZipEntry, Path> shouldWrite,
+                          ProgressTracker progress) throws IOException {
+        String zipRootDirectoryName = null;
+        // Keyed by destination so that, as with sequential extraction, the last duplicate entry wins
+        Map<Path, ZipEntry> files = new LinkedHashMap<>();
+        TreeSet<Path> directories = new TreeSet<>();
+
+        try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path entryDestPath = SoftwareInstaller.resolveEntryPath(destDir, entry.getName());
+                if (zipRootDirectoryName == null) {
+                    zipRootDirectoryName = SoftwareInstaller.detectRootDirectory(entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    directories.add(entryDestPath);
+                } else {
+                    files.remove(entryDestPath);
+                    directories.add(entryDestPath.getParent());
+                    if (shouldWrite.test(entry, entryDestPath)) {
+                        files.put(entryDestPath, entry);
+                    }
+                }
+            }
+        }
+
+        // 1. Directory skeleton, so workers never race on creating parents
+        for (Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+
+        // 2. File contents, largest first so one big file does not end up last on a single worker
+        List<Map.Entry<Path, ZipEntry>> work = new ArrayList<>(files.entrySet());
+        work.sort((a, b) -> Long.compare(b.getValue().getSize(), a.getValue().getSize()));
+        long totalBytes = 0;
+        for (Map.Entry<Path, ZipEntry> item : work) {
+            // Unknown sizes (-1) make the byte total unusable
+            totalBytes = item.getValue().getSize() < 0 || totalBytes < 0 ? -1 : totalBytes + item.getValue().getSize();
+        }
+        progress.setTotals(totalBytes, work.size());
+        int workerCount = Math.max(1, Math.min(threads, work.size()));
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "zip-extract-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                futures.add(executor.submit(() -> {
+                    extractFiles(zipFilePath, work, nextIndex, progress);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return zipRootDirectoryName;
+    }
+
+    /**
+     * Worker loop: takes entries from the shared list until none are left.
+     */
+    private void extractFiles(Path zipFilePath, List<Map.Entry<Path, ZipEntry>> work, AtomicInteger nextIndex,
+                              ProgressTracker progress) throws IOException {
+        IoEngine.Copier copier = ioEngine.newCopier(bufferSize);
+        try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < work.size()) {
+                Map.Entry<Path, ZipEntry> item = work.get(index);
+                try (InputStream entryIn = zipFile.getInputStream(item.getValue())) {
+                    copier.copy(entryIn, item.getKey(), item.getValue().getSize(), progress);
+                }
+                progress.addEntries(1);
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Extraction worker failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting", e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs a child process and drains its standard output and standard error at the same time,
+ * each on its own virtual thread. Reading one stream to the end before the other can deadlock:
+ * a process that fills the stderr pipe blocks until someone reads it, while we would still be
+ * waiting for stdout to close.
+ * <p>
+ * Lines from both streams are delivered, one at a time, to a single listener as
+ * {@link OutputEvent}s stamped with the time since the process started. The result reports the
+ * exit code, whether the timeout hit, the latency until the first line of output and the total
+ * wall time.
+ */
+public class ProcessRunner {
+
+    // How long a process may take to exit after being asked to stop before it is killed
+    private static final long DESTROY_GRACE_MS = 5_000;
+
+    /** Which stream a line came from. */
+    public enum Source { STDOUT, STDERR }
+
+    /**
+     * One line of output.
+     * @param elapsedMs Milliseconds since the process was started.
+     * @param source The stream the line came from.
+     * @param line The line, without line terminator.
+     */
+    public record OutputEvent(long elapsedMs, Source source, String line) {
+    }
+
+    /**
+     * Outcome of a process run.
+     * @param exitCode The exit code of the process.
+     * @param timedOut Whether the process was stopped because it exceeded the timeout.
+     * @param firstOutputMs Milliseconds until the first line of output, or -1 if there was none.
+     * @param wallTimeMs Milliseconds from start until the process exited and its output was drained.
+     */
+    public record Result(int exitCode, boolean timedOut, long firstOutputMs, long wallTimeMs) {
+    }
+
+    private final Duration timeout;
+
+    /**
+     * Creates a runner without a timeout.
+     */
+    public ProcessRunner() {
+        this(null);
+    }
+
+    /**
+     * @param timeout How long a process may run before it is stopped, or null for no limit.
+     */
+    public ProcessRunner(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Starts the command and blocks until it has exited and all of its output was delivered.
+     * @param command The command and its arguments.
+     * @param workingDir The working directory, or null for the current one.
+     * @param listener Receives every output line; calls are never concurrent.
+     * @return The result of the run.
+     * @throws IOException If the process cannot be started.
+     * @throws InterruptedException If the calling thread is interrupted; the process is then destroyed.
+     */
+    public Result run(List<String> command, Path workingDir, Consumer<OutputEvent> listener)
+            throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        if (workingDir != null) {
+            processBuilder.directory(workingDir.toFile());
+        }
+
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        AtomicLong firstOutputMs = new AtomicLong(-1);
+        Object listenerLock = new Object();
+
+        Thread stdoutDrainer = Thread.ofVirtual().name("process-stdout").start(
+                () -> drain(process.getInputStream(), Source.STDOUT, start, firstOutputMs, listener, listenerLock));
+        Thread stderrDrainer = Thread.ofVirtual().name("process-stderr").start(
+                () -> drain(process.getErrorStream(), Source.STDERR, start, firstOutputMs, listener, listenerLock));
+
+        boolean timedOut = false;
+        try {
+            if (timeout == null) {
+                process.waitFor();
+            } else if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                System.err.println("Process exceeded its timeout of " + timeout.toMillis() + " ms, stopping it: " + command);
+                destroy(process);
+            }
+            // The streams close when the process (and any children holding them) exits
+            stdoutDrainer.join();
+            stderrDrainer.join();
+        } catch (InterruptedException e) {
+            destroy(process);
+            throw e;
+        }
+        return new Result(process.exitValue(), timedOut, firstOutputMs.get(), elapsedMs(start));
+    }
+
+    private static void drain(InputStream stream, Source source, long start, AtomicLong firstOutputMs,
+                              Consumer<OutputEvent> listener, Object listenerLock) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long elapsed = elapsedMs(start);
+                firstOutputMs.compareAndSet(-1, elapsed);
+                synchronized (listenerLock) {
+                    listener.accept(new OutputEvent(elapsed, source, line));
+                }
+            }
+        } catch (IOException e) {
+            // The stream is closed underneath us when the process is destroyed
+            System.err.println("Stopped reading " + source + ": " + e.getMessage());
+        }
+    }
+
+    private static void destroy(Process process) throws InterruptedException {
+        // Children such as the node process started by npm would otherwise keep the output pipes open
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        if (!process.waitFor(DESTROY_GRACE_MS, TimeUnit.MILLISECONDS)) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            process.waitFor();
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the progress of one phase of an installation and forwards it to an
+ * {@link InstallProgressListener} at most every {@code THROTTLE_MILLIS}.
+ * <p>
+ * Counting is lock-free and may be done from several threads, e.g. download segments or
+ * extraction workers. Only the thread that wins the throttle slot computes throughput and ETA
+ * and calls the listener; all other calls just add to the counters.
+ * <p>
+ * The tracker also times its phase with {@link System#nanoTime()}, from construction until
+ * {@link #finish()}, and keeps the peak throughput seen between two reports, so it can be
+ * recorded in {@link InstallTelemetry} afterwards.
+ */
+public class ProgressTracker {
+
+    private static final long THROTTLE_MILLIS = 100;
+    private static final long THROTTLE_NANOS = THROTTLE_MILLIS * 1_000_000;
+
+    private final InstallProgressListener listener;
+    private final String appName;
+    private final InstallProgressListener.Phase phase;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicInteger entriesDone = new AtomicInteger();
+    private final AtomicLong lastEmitNanos = new AtomicLong(System.nanoTime() - THROTTLE_NANOS);
+    private volatile long startNanos = System.nanoTime();
+    private volatile long endNanos = -1;
+    // Bytes that were already present when the phase started (resumed downloads); not part of the throughput
+    private volatile long baselineBytes;
+    private volatile long bytesTotal = -1;
+    private volatile int entriesTotal = -1;
+    // Throughput sampling between reports, guarded by "this"
+    private long sampleNanos = startNanos;
+    private long sampleBytes;
+    private long peakBytesPerSecond;
+
+    /**
+     * @param listener The listener to report to.
+     * @param appName The package being installed.
+     * @param phase The phase being tracked.
+     */
+    public ProgressTracker(InstallProgressListener listener, String appName, InstallProgressListener.Phase phase) {
+        this.listener = listener;
+        this.appName = appName;
+        this.phase = phase;
+    }
+
+    /**
+     * Sets the totals once they are known.
+     * @param bytesTotal Total bytes, or -1 if unknown.
+     * @param entriesTotal Total entries, or -1 if unknown.
+     */
+    public void setTotals(long bytesTotal, int entriesTotal) {
+        this.bytesTotal = bytesTotal;
+        this.entriesTotal = entriesTotal;
+    }
+
+    /**
+     * Starts counting from zero again, e.g. when a failed segmented download is retried as a single stream.
+     * The phase timer keeps running, so the time of the failed attempt is still part of the phase.
+     * @param bytesTotal Total bytes, or -1 if unknown.
+     * @param entriesTotal Total entries, or -1 if unknown.
+     */
+    public void restart(long bytesTotal, int entriesTotal) {
+        synchronized (this) {
+            sampleNanos = System.nanoTime();
+            sampleBytes = 0;
+        }
+        baselineBytes = 0;
+        bytesDone.set(0);
+        entriesDone.set(0);
+        setTotals(bytesTotal, entriesTotal);
+    }
+
+    /**
+     * Counts bytes that were already done before this phase started, e.g. the part of a resumed download
+     * that is on disk. They count towards the progress but not towards the throughput.
+     * @param bytes The number of bytes.
+     */
+    public void skipBytes(long bytes) {
+        synchronized (this) {
+            sampleBytes += bytes;
+        }
+        baselineBytes += bytes;
+        bytesDone.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes Bytes processed since the last call.
+     */
+    public void addBytes(long bytes) {
+        bytesDone.addAndGet(bytes);
+        maybeEmit();
+    }
+
+    /**
+     * @param entries Entries completed since the last call.
+     */
+    public void addEntries(int entries) {
+        entriesDone.addAndGet(entries);
+        maybeEmit();
+    }
+
+    /**
+     * Reports the current state right away, regardless of the throttle, e.g. to announce that a phase started.
+     */
+    public void publish() {
+        emit(System.nanoTime());
+    }
+
+    /**
+     * Stops the phase timer and reports the final state of the phase, regardless of the throttle.
+     */
+    public void finish() {
+        long now = System.nanoTime();
+        endNanos = now;
+        emit(now);
+    }
+
+    /**
+     * @return The phase being tracked.
+     */
+    public InstallProgressListener.Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which the phase started.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which the phase finished, or the current time if it is still running.
+     */
+    public long getEndNanos() {
+        long end = endNanos;
+        return end >= 0 ? end : System.nanoTime();
+    }
+
+    /**
+     * @return The bytes counted so far, including skipped ones.
+     */
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    /**
+     * @return The entries counted so far.
+     */
+    public int getEntriesDone() {
+        return entriesDone.get();
+    }
+
+    /**
+     * @return The highest throughput measured between two reports, in bytes per second.
+     */
+    public synchronized long getPeakBytesPerSecond() {
+        return peakBytesPerSecond;
+    }
+
+    private void maybeEmit() {
+        long now = System.nanoTime();
+        long last = lastEmitNanos.get();
+        // Only one thread per interval gets to report
+        if (now - last >= THROTTLE_NANOS && lastEmitNanos.compareAndSet(last, now)) {
+            emit(now);
+        }
+    }
+
+    private void emit(long now) {
+        long bytes = bytesDone.get();
+        int entries = entriesDone.get();
+        long total = bytesTotal;
+        int totalEntries = entriesTotal;
+        long elapsedNanos = Math.max(1, now - startNanos);
+        long bytesPerSecond = (long) ((bytes - baselineBytes) * 1_000_000_000.0 / elapsedNanos);
+        samplePeak(now, bytes);
+
+        long etaMillis = -1;
+        if (total > 0 && bytesPerSecond > 0) {
+            etaMillis = Math.max(0, (total - bytes) * 1000 / bytesPerSecond);
+        } else if (totalEntries > 0 && entries > 0) {
+            // No byte total (e.g. streamed archives), extrapolate from the entry count instead
+            etaMillis = Math.max(0, (totalEntries - entries) * (elapsedNanos / 1_000_000) / entries);
+        }
+        listener.onProgress(appName, phase, bytes, total, entries, totalEntries, bytesPerSecond, etaMillis);
+    }
+
+    /**
+     * Measures the throughput since the previous sample. Samples are at least one report interval apart,
+     * except the last one of the phase, which is only used if the phase never had a full interval.
+     */
+    private synchronized void samplePeak(long now, long bytes) {
+        long intervalNanos = now - sampleNanos;
+        if (intervalNanos <= 0 || (intervalNanos < THROTTLE_NANOS && peakBytesPerSecond > 0)) {
+            return;
+        }
+        long rate = (long) ((bytes - sampleBytes) * 1_000_000_000.0 / intervalNanos);
+        peakBytesPerSecond = Math.max(peakBytesPerSecond, rate);
+        sampleNanos = now;
+        sampleBytes = bytes;
+    }
+}
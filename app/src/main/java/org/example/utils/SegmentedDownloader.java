@@ -0,0 +1,607 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a file over several HTTP connections at once by splitting it into byte ranges.
+ * Each range is fetched with its own {@code Range} request and written straight into a
+ * preallocated file using positional {@link FileChannel} writes, so segments never have to
+ * be stitched together afterwards.
+ * <p>
+ * Progress is recorded in a {@link DownloadCheckpoint} as segments advance, so only the
+ * ranges that are still missing are requested when an interrupted download is resumed.
+ * Servers that do not advertise {@code Accept-Ranges: bytes} or do not report a
+ * {@code Content-Length} cannot be split; check {@link RangeProbe#supportsRanges()} first.
+ * <p>
+ * A file can also be served by several equivalent mirrors. {@link #probeMirrors} races a probe to
+ * each of them and ranks them by their expected download time; segments are then spread over the
+ * mirrors that are about as fast as the best one, and a segment whose mirror stays below the
+ * {@linkplain #setHedgeThreshold(long) hedge threshold} or fails moves its remaining bytes to
+ * the next mirror.
+ */
+public class SegmentedDownloader {
+
+    // Ranges smaller than this are not worth an extra connection
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    // How many bytes a segment writes between checkpoint updates
+    private static final long CHECKPOINT_INTERVAL = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Longest wait for any mirror to answer its probe
+    private static final long PROBE_TIMEOUT_MILLIS = 10_000;
+    // After the first mirror answered, how long the others still get, at least
+    private static final long PROBE_GRACE_MILLIS = 250;
+    // Mirrors expected to take longer than this factor times the best one only serve as fallbacks
+    private static final int MIRROR_SPREAD = 2;
+    // Throughput is judged over windows of this length, the first one after connecting is not judged
+    private static final long HEDGE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // Watches the throughput of segments that could move to another mirror
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "download-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Default {@link #setHedgeThreshold(long) hedge threshold}, 256 KiB/s. */
+    public static final long DEFAULT_HEDGE_THRESHOLD = 256 * 1024;
+
+    private final int connections;
+    private final int bufferSize;
+    private MirrorStats mirrorStats = new MirrorStats();
+    private long hedgeThreshold = DEFAULT_HEDGE_THRESHOLD;
+
+    /**
+     * @param connections The maximum number of parallel range requests to use. Must be at least 1.
+     */
+    public SegmentedDownloader(int connections) {
+        this(connections, BUFFER_SIZE);
+    }
+
+    /**
+     * @param connections The maximum number of parallel range requests to use. Must be at least 1.
+     * @param bufferSize The size of each segment's read buffer in bytes, at least 1.
+     */
+    public SegmentedDownloader(int connections, int bufferSize) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Connection count must be at least 1, got " + connections);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1, got " + bufferSize);
+        }
+        this.connections = connections;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets where mirror latency and throughput are recorded and looked up. By default they are kept
+     * in memory only.
+     * @param mirrorStats The statistics; they are not saved by the downloader.
+     */
+    public void setMirrorStats(MirrorStats mirrorStats) {
+        this.mirrorStats = mirrorStats != null ? mirrorStats : new MirrorStats();
+    }
+
+    /**
+     * Sets the throughput below which a segment leaves its mirror for the next one.
+     * Only has an effect when more than one mirror serves the file.
+     * @param bytesPerSecond The threshold in bytes per second, or 0 to never switch for slowness.
+     */
+    public void setHedgeThreshold(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Hedge threshold must not be negative, got " + bytesPerSecond);
+        }
+        this.hedgeThreshold = bytesPerSecond;
+    }
+
+    /**
+     * Result of probing a URL with a HEAD request.
+     * @param url The URL that was probed.
+     * @param finalUri The URI after following redirects; range requests go here directly.
+     * @param contentLength The reported length in bytes, or -1 if unknown.
+     * @param acceptsRanges Whether the server advertised byte-range support.
+     * @param etag The ETag validator, or null.
+     * @param lastModified The Last-Modified validator, or null.
+     * @param latencyMillis How long the server took to answer the probe.
+     */
+    public record RangeProbe(String url, URI finalUri, long contentLength, boolean acceptsRanges, String etag,
+                             String lastModified, long latencyMillis) {
+
+        /**
+         * @return Whether the file can be fetched in byte ranges.
+         */
+        public boolean supportsRanges() {
+            return acceptsRanges && contentLength > 0;
+        }
+
+        /**
+         * @return The value to send in an {@code If-Range} header to this server, or null if no validator is known.
+         */
+        public String ifRangeValidator() {
+            // Weak ETags are not allowed in If-Range, fall back to the date in that case
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+    }
+
+    /**
+     * Thrown when the server answers a range request with the whole file, either because it
+     * does not really support ranges or because the file changed and {@code If-Range} failed.
+     */
+    public static class RangeNotHonoredException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RangeNotHonoredException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Sends a HEAD request to find out whether the resource can be downloaded in segments.
+     * @param fileURL The URL to probe.
+     * @return The probe result.
+     * @throws IOException If the request fails.
+     */
+    public RangeProbe probe(String fileURL) throws IOException {
+        long startNanos = System.nanoTime();
+        try (HttpTransport.Response response = HttpTransport.shared()
+                .send(HttpTransport.head(HttpTransport.toUri(fileURL)).build())) {
+            return toProbe(fileURL, response, startNanos);
+        }
+    }
+
+    /**
+     * Probes all mirrors of a file at the same time and ranks the ones that answered.
+     * Once the first mirror has answered, the others get only a short grace period; mirrors that
+     * fail, time out or report a different length than the best one are left out.
+     * Every answer and failure is recorded in the {@linkplain #setMirrorStats(MirrorStats) mirror statistics}.
+     * @param fileURLs The URLs of equivalent copies of the file.
+     * @return The probes of the usable mirrors, expected fastest first; never empty.
+     * @throws IOException If no mirror answered.
+     */
+    public List<RangeProbe> probeMirrors(List<String> fileURLs) throws IOException {
+        if (fileURLs.size() == 1) {
+            RangeProbe probe = probe(fileURLs.get(0));
+            mirrorStats.recordLatency(probe.finalUri(), probe.latencyMillis());
+            return List.of(probe);
+        }
+
+        long startNanos = System.nanoTime();
+        List<URI> uris = new ArrayList<>();
+        List<CompletableFuture<HttpTransport.Response>> responses = new ArrayList<>();
+        BlockingQueue<Integer> answered = new LinkedBlockingQueue<>();
+        for (String fileURL : fileURLs) {
+            URI uri = HttpTransport.toUri(fileURL);
+            int index = uris.size();
+            uris.add(uri);
+            CompletableFuture<HttpTransport.Response> response = HttpTransport.shared()
+                    .sendAsync(HttpTransport.head(uri).build());
+            response.whenComplete((result, error) -> answered.add(index));
+            responses.add(response);
+        }
+
+        RangeProbe[] probes = new RangeProbe[uris.size()];
+        IOException lastError = null;
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(PROBE_TIMEOUT_MILLIS);
+        boolean anyAnswered = false;
+        for (int pending = uris.size(); pending > 0; pending--) {
+            Integer index;
+            try {
+                index = answered.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                responses.forEach(response -> response.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while probing mirrors", e);
+            }
+            if (index == null) {
+                break;
+            }
+            try (HttpTransport.Response response = HttpTransport.await(responses.get(index))) {
+                probes[index] = toProbe(fileURLs.get(index), response, startNanos);
+                mirrorStats.recordLatency(uris.get(index), probes[index].latencyMillis());
+                if (!anyAnswered) {
+                    anyAnswered = true;
+                    long grace = Math.max(PROBE_GRACE_MILLIS, probes[index].latencyMillis());
+                    deadline = Math.min(deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(grace));
+                }
+            } catch (IOException e) {
+                // Connection failures often carry no message, the type says enough then
+                System.err.println("Mirror " + fileURLs.get(index) + " failed its probe: "
+                        + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+                mirrorStats.recordFailure(uris.get(index));
+                lastError = e;
+            }
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        List<RangeProbe> ranked = new ArrayList<>();
+        for (int i = 0; i < probes.length; i++) {
+            if (probes[i] != null) {
+                ranked.add(probes[i]);
+            } else if (!responses.get(i).isDone()) {
+                // Too slow to matter this time; remember at least how long it kept us waiting
+                responses.get(i).cancel(true);
+                mirrorStats.recordLatency(uris.get(i), elapsedMillis);
+            }
+        }
+        if (ranked.isEmpty()) {
+            throw lastError != null ? lastError : new IOException("No mirror of " + fileURLs.get(0) + " answered within "
+                    + PROBE_TIMEOUT_MILLIS + " ms");
+        }
+        ranked.sort(Comparator.comparingLong(this::expectedMillis));
+        long contentLength = ranked.get(0).contentLength();
+        ranked.removeIf(probe -> {
+            if (probe.contentLength() != contentLength) {
+                System.err.println("Ignoring mirror " + probe.finalUri() + ": it reports " + probe.contentLength()
+                        + " bytes instead of " + contentLength);
+                return true;
+            }
+            return false;
+        });
+        return ranked;
+    }
+
+    private long expectedMillis(RangeProbe probe) {
+        return mirrorStats.expectedMillis(probe.finalUri(), probe.latencyMillis(), probe.contentLength());
+    }
+
+    private static RangeProbe toProbe(String fileURL, HttpTransport.Response response, long startNanos) throws IOException {
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (response.status() != 200) {
+            throw new IOException("HEAD " + fileURL + " returned HTTP " + response.status());
+        }
+        String acceptRanges = response.header("Accept-Ranges");
+        boolean acceptsRanges = acceptRanges != null && acceptRanges.toLowerCase().contains("bytes");
+        // uri() reflects any redirects that were followed (e.g. GitHub -> codeload)
+        return new RangeProbe(fileURL, response.uri(), response.contentLength(), acceptsRanges,
+                response.header("ETag"), response.header("Last-Modified"), latencyMillis);
+    }
+
+    /**
+     * Downloads every range the checkpoint still lists as missing, in parallel.
+     * @param probe The probe result for the file; it must support ranges.
+     * @param partPath The partial file to write into. It is created or extended to the full length.
+     * @param checkpoint The checkpoint to resume from and to record progress in.
+     * @param progress Tracks the downloaded bytes; bytes already in the checkpoint count as done.
+     * @throws RangeNotHonoredException If the server sends the whole file instead of a range.
+     * @throws IOException If a segment fails to download or the file cannot be written.
+     *                     The checkpoint keeps the progress made so far.
+     */
+    public void download(RangeProbe probe, Path partPath, DownloadCheckpoint checkpoint, ProgressTracker progress) throws IOException {
+        download(List.of(probe), partPath, checkpoint, progress, null);
+    }
+
+    /**
+     * Downloads every range the checkpoint still lists as missing, in parallel, from one or more mirrors.
+     * The checkpoint must belong to the first mirror. The others are only used if they support ranges
+     * and report the same length; their content is assumed to be identical.
+     * @param mirrors The probe results of the mirrors, as ranked by {@link #probeMirrors}; the first must support ranges.
+     * @param partPath The partial file to write into. It is created or extended to the full length.
+     * @param checkpoint The checkpoint to resume from and to record progress in.
+     * @param progress Tracks the downloaded bytes; bytes already in the checkpoint count as done.
+     * @param digest Receives the whole file in order, or null. The bytes are hashed by a separate thread as soon
+     *               as everything before them has been written, while they are still in the page cache, so no
+     *               second pass over the file is needed; bytes resumed from an earlier run are read back once.
+     * @throws RangeNotHonoredException If the first mirror sends the whole file instead of a range
+     *                                  and no other mirror could serve it.
+     * @throws IOException If a segment fails to download from every mirror or the file cannot be written.
+     *                     The checkpoint keeps the progress made so far; the digest is then incomplete.
+     */
+    public void download(List<RangeProbe> mirrors, Path partPath, DownloadCheckpoint checkpoint, ProgressTracker progress,
+                         MessageDigest digest) throws IOException {
+        long contentLength = checkpoint.getContentLength();
+        List<RangeProbe> usable = new ArrayList<>();
+        for (RangeProbe mirror : mirrors) {
+            if (usable.isEmpty() || (mirror.supportsRanges() && mirror.contentLength() == contentLength)) {
+                usable.add(mirror);
+            }
+        }
+        // Segments start on the mirrors that are about as fast as the best one, the rest are fallbacks
+        int leading = 1;
+        long bestMillis = Math.max(1, expectedMillis(usable.get(0)));
+        while (leading < usable.size() && expectedMillis(usable.get(leading)) <= bestMillis * MIRROR_SPREAD) {
+            leading++;
+        }
+
+        List<long[]> segments = splitSegments(checkpoint.missingRanges());
+        long completedBytes = checkpoint.completedBytes();
+        progress.setTotals(contentLength, -1);
+        progress.skipBytes(completedBytes);
+        if (segments.isEmpty() && digest == null) {
+            return;
+        }
+        if (!segments.isEmpty()) {
+            System.out.println("Downloading " + (contentLength - completedBytes) + " bytes in " + segments.size() + " segments"
+                    + (leading > 1 ? " from " + leading + " mirrors..." : "..."));
+        }
+
+        // Preallocate the whole file up front so every segment can write at its own offset
+        try (RandomAccessFile raf = new RandomAccessFile(partPath.toFile(), "rw")) {
+            raf.setLength(contentLength);
+            FileChannel channel = raf.getChannel();
+            checkpoint.save();
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(connections, segments.size())), runnable -> {
+                Thread thread = new Thread(runnable, "download-segment");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ExecutorService hasher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "download-digest");
+                thread.setDaemon(true);
+                return thread;
+            });
+            AtomicBoolean stopHashing = new AtomicBoolean();
+            try {
+                Future<?> hashing = digest != null
+                        ? hasher.submit(() -> {
+                            hashInOrder(channel, contentLength, checkpoint, digest, stopHashing);
+                            return null;
+                        })
+                        : null;
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < segments.size(); i++) {
+                    long[] segment = segments.get(i);
+                    int firstMirror = i % leading;
+                    futures.add(executor.submit(() -> {
+                        downloadSegment(usable, firstMirror, channel, segment[0], segment[1], checkpoint, progress);
+                        return null;
+                    }));
+                }
+                if (hashing != null) {
+                    futures.add(hashing);
+                }
+                awaitSegments(futures);
+            } finally {
+                executor.shutdownNow();
+                // Not interrupted: an interrupt during a channel read would close the channel for everyone
+                stopHashing.set(true);
+                hasher.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Feeds the file to the digest from the start, following the completed bytes recorded in the checkpoint.
+     */
+    private static void hashInOrder(FileChannel channel, long contentLength, DownloadCheckpoint checkpoint,
+                                    MessageDigest digest, AtomicBoolean stop) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE * 4);
+        long hashed = 0;
+        while (hashed < contentLength && !stop.get()) {
+            long available = checkpoint.awaitCompletedPrefix(hashed, 100);
+            while (hashed < available) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), available - hashed));
+                int bytesRead = channel.read(buffer, hashed);
+                if (bytesRead < 0) {
+                    throw new IOException("Partial download ended at byte " + hashed + " while hashing");
+                }
+                buffer.flip();
+                digest.update(buffer);
+                hashed += bytesRead;
+            }
+        }
+    }
+
+    /**
+     * Splits the missing ranges into roughly {@code connections} segments of at least
+     * {@link #MIN_SEGMENT_SIZE} bytes each.
+     */
+    private List<long[]> splitSegments(List<long[]> missingRanges) {
+        long missingBytes = 0;
+        for (long[] range : missingRanges) {
+            missingBytes += range[1] - range[0];
+        }
+        long segmentSize = Math.max(MIN_SEGMENT_SIZE, (missingBytes + connections - 1) / connections);
+        List<long[]> segments = new ArrayList<>();
+        for (long[] range : missingRanges) {
+            for (long start = range[0]; start < range[1]; start += segmentSize) {
+                // Avoid leaving a tiny tail segment behind
+                long end = (range[1] - start < segmentSize + segmentSize / 2) ? range[1] : start + segmentSize;
+                segments.add(new long[] { start, end });
+                if (end == range[1]) {
+                    break;
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Waits for all segments; progress is reported by the segments themselves through the tracker.
+     */
+    private void awaitSegments(List<Future<?>> futures) throws IOException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException("Segment download failed: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Fetches the byte range [start, end), starting on one mirror. When that mirror is too slow or fails,
+     * the bytes that are still missing move to the next mirror; each mirror is tried once.
+     */
+    private void downloadSegment(List<RangeProbe> mirrors, int firstMirror, FileChannel channel, long start, long end,
+                                 DownloadCheckpoint checkpoint, ProgressTracker progress) throws IOException {
+        long position = start;
+        for (int attempt = 0; attempt < mirrors.size(); attempt++) {
+            int index = (firstMirror + attempt) % mirrors.size();
+            RangeProbe mirror = mirrors.get(index);
+            boolean lastMirror = attempt == mirrors.size() - 1;
+            // The checkpoint was validated against the first mirror; the others answer for their own copy
+            String validator = index == 0 ? checkpoint.ifRangeValidator() : mirror.ifRangeValidator();
+            try {
+                position = downloadRange(mirror.finalUri(), validator, channel, position, end, !lastMirror, checkpoint, progress);
+                if (position == end) {
+                    return;
+                }
+                System.err.println("Mirror " + mirror.finalUri() + " is below " + hedgeThreshold / 1024
+                        + " KiB/s. Moving " + (end - position) + " bytes to the next mirror.");
+            } catch (IOException e) {
+                mirrorStats.recordFailure(mirror.finalUri());
+                if (lastMirror) {
+                    throw e;
+                }
+                System.err.println("Mirror " + mirror.finalUri() + " failed: " + e.getMessage() + ". Trying the next mirror.");
+                // Whatever it wrote before failing is in the checkpoint
+                List<long[]> missing = checkpoint.missingRanges();
+                position = firstMissing(missing, position, end);
+                if (position == end) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static long firstMissing(List<long[]> missingRanges, long from, long end) {
+        for (long[] range : missingRanges) {
+            if (range[1] > from && range[0] < end) {
+                return Math.max(range[0], from);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Fetches the byte range [start, end) and writes it at the same offset in the file,
+     * recording progress in the checkpoint every {@link #CHECKPOINT_INTERVAL} bytes.
+     * If {@code mayGiveUp} is set, a watchdog closes the connection once a whole window went by below
+     * the hedge threshold, stalls included.
+     * @return The position reached; less than {@code end} only if the watchdog gave up on the mirror.
+     */
+    private long downloadRange(URI uri, String validator, FileChannel channel, long start, long end, boolean mayGiveUp,
+                               DownloadCheckpoint checkpoint, ProgressTracker progress) throws IOException {
+        HttpRequest.Builder request = HttpTransport.get(uri).header("Range", "bytes=" + start + "-" + (end - 1));
+        if (validator != null) {
+            // If the file changed since the checkpoint was written, the server sends 200 instead of 206
+            request.header("If-Range", validator);
+        }
+        long position = start;
+        long checkpointedUpTo = start;
+        long startNanos = System.nanoTime();
+        try (HttpTransport.Response response = HttpTransport.bulk().send(request.build())) {
+            if (response.status() == 200) {
+                throw new RangeNotHonoredException("Server returned the whole file for range " + start + "-" + (end - 1));
+            }
+            if (response.status() != 206) {
+                throw new IOException("Expected HTTP 206 for range " + start + "-" + (end - 1) + " but got HTTP " + response.status());
+            }
+            AtomicLong reached = new AtomicLong(position);
+            AtomicBoolean tooSlow = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = mayGiveUp && hedgeThreshold > 0
+                    ? WATCHDOG.scheduleAtFixedRate(new ThroughputCheck(response, reached, end, tooSlow),
+                            HEDGE_WINDOW_NANOS, HEDGE_WINDOW_NANOS, TimeUnit.NANOSECONDS)
+                    : null;
+            try (InputStream in = response.body()) {
+                byte[] data = new byte[bufferSize];
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                int bytesRead;
+                while (position < end && (bytesRead = in.read(data, 0, (int) Math.min(bufferSize, end - position))) != -1) {
+                    buffer.clear().limit(bytesRead);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    reached.set(position);
+                    progress.addBytes(bytesRead);
+                    if (position - checkpointedUpTo >= CHECKPOINT_INTERVAL) {
+                        // Written data survives in the page cache even if this process dies,
+                        // so there is no need to force it to disk before checkpointing
+                        checkpoint.markCompleted(checkpointedUpTo, position);
+                        checkpoint.save();
+                        checkpointedUpTo = position;
+                    }
+                }
+                if (position != end) {
+                    throw new IOException("Range " + start + "-" + (end - 1) + " ended early at byte " + position);
+                }
+            } catch (IOException e) {
+                if (!tooSlow.get()) {
+                    throw e;
+                }
+                // The watchdog closed the body, the caller moves the rest to another mirror
+            } finally {
+                if (watchdog != null) {
+                    watchdog.cancel(false);
+                }
+            }
+            return position;
+        } finally {
+            mirrorStats.recordThroughput(uri, position - start, System.nanoTime() - startNanos);
+            // Keep whatever was written, even if the segment failed half way
+            if (position > checkpointedUpTo) {
+                checkpoint.markCompleted(checkpointedUpTo, position);
+                checkpoint.save();
+            }
+        }
+    }
+
+    /**
+     * Closes a range response once the segment made less than the hedge threshold over a whole window.
+     * Closing the body from this thread makes the blocked read fail, which ends the segment on this mirror.
+     */
+    private class ThroughputCheck implements Runnable {
+        private final HttpTransport.Response response;
+        private final AtomicLong reached;
+        private final long end;
+        private final AtomicBoolean tooSlow;
+        // -1 until the first window, which covers connection setup and slow start, has passed
+        private long windowPosition = -1;
+
+        ThroughputCheck(HttpTransport.Response response, AtomicLong reached, long end, AtomicBoolean tooSlow) {
+            this.response = response;
+            this.reached = reached;
+            this.end = end;
+            this.tooSlow = tooSlow;
+        }
+
+        @Override
+        public void run() {
+            long position = reached.get();
+            if (windowPosition >= 0 && !tooSlow.get()) {
+                long bytesPerSecond = (position - windowPosition) * 1_000_000_000L / HEDGE_WINDOW_NANOS;
+                // Only worth it if the rest would take more than another window at this speed
+                if (bytesPerSecond < hedgeThreshold && end - position > hedgeThreshold * 2) {
+                    tooSlow.set(true);
+                    try {
+                        response.close();
+                    } catch (IOException e) {
+                        // Nothing more to do; the read fails either way
+                    }
+                }
+            }
+            windowPosition = position;
+        }
+    }
+}
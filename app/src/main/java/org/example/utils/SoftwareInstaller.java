@@ -3,13 +3,18 @@ package org.example.utils; // Optional: Use a package appropriate for your proje
 import java.io.*;
 import java.net.URL;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 import java.util.stream.Stream;
 import java.io.UnsupportedEncodingException; // Import for encoding
 
@@ -21,11 +26,189 @@ public class SoftwareInstaller {
 
     private static final int BUFFER_SIZE = 4096;
 
+    // Name of the marker file recording which archive an extraction directory came from
+    private static final String INSTALLED_ARCHIVE_MARKER = ".installed-archive";
+
+    // Number of parallel range requests per download
+    private int downloadConnections = 1;
+    // Cache of previously downloaded archives; null disables caching
+    private DownloadCache downloadCache = new DownloadCache();
+    // Whether to extract while downloading instead of writing the archive to disk first
+    private boolean streamingExtraction = false;
+    // Number of threads writing extracted files; 1 extracts sequentially
+    private int extractionThreads = 1;
+    // Whether to update an existing installation in place using its install manifest
+    private boolean incrementalInstall = false;
+    // Whether fresh extractions go to a staging directory that is swapped in when complete
+    private boolean stagedInstall = true;
+    // Whether archives are extracted from a memory-mapped index instead of through ZipFile
+    private boolean indexedExtraction = false;
+    // Copy buffer size for downloads and extraction; 0 keeps the default of each code path
+    private int bufferSize = 0;
+    // Latency and throughput of download mirrors, used to pick the fastest one
+    private MirrorStats mirrorStats = new MirrorStats();
+    // Segments slower than this move to another mirror, in bytes per second
+    private long hedgeThreshold = SegmentedDownloader.DEFAULT_HEDGE_THRESHOLD;
+    // How downloads and extracted entries are written to disk
+    private IoEngine ioEngine = new StreamIoEngine();
+    // Collects per-phase timings of the current run; null disables telemetry
+    private InstallTelemetry telemetry;
+    // Receivers of throttled progress updates; the console listener is always there
+    private final List<InstallProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+
     /**
      * Default constructor.
      */
     public SoftwareInstaller() {
-        // Constructor can be used for potential configuration in the future
+        progressListeners.add(new ConsoleProgressListener());
+    }
+
+    /**
+     * Sets the size of the copy buffers used to download and extract. By default sequential copies use
+     * {@value #BUFFER_SIZE} bytes and the segmented downloader and the parallel extractor use their own larger buffers.
+     * @param bufferSize The buffer size in bytes, at least 1, or 0 for the defaults.
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException("Buffer size cannot be negative.");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets how single-stream downloads and extracted entries are written to disk.
+     * The default is a {@link StreamIoEngine}; a {@link NioIoEngine} writes through reused direct buffers
+     * into preallocated files.
+     * @param ioEngine The engine to use.
+     * @throws IllegalArgumentException If the engine is null.
+     */
+    public void setIoEngine(IoEngine ioEngine) {
+        if (ioEngine == null) {
+            throw new IllegalArgumentException("I/O engine cannot be null.");
+        }
+        this.ioEngine = ioEngine;
+    }
+
+    /**
+     * Sets where the timings, counters and peak throughput of the download, extraction and PATH
+     * phases of each install are recorded. The phases are recorded under the app name.
+     * @param telemetry The telemetry of the current run, or null to record nothing.
+     */
+    public void setTelemetry(InstallTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Registers a listener for progress updates of all installs run by this installer.
+     * Updates are throttled, so listeners see a few updates per second per phase at most.
+     * @param listener The listener to add.
+     */
+    public void addProgressListener(InstallProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    /**
+     * Sets how many connections a download may use at once. With more than one connection,
+     * servers that support byte ranges are downloaded in parallel segments; other servers
+     * always get a single stream.
+     * @param downloadConnections The number of connections, at least 1.
+     * @throws IllegalArgumentException If the count is less than 1.
+     */
+    public void setDownloadConnections(int downloadConnections) {
+        if (downloadConnections < 1) {
+            throw new IllegalArgumentException("Download connections must be at least 1.");
+        }
+        this.downloadConnections = downloadConnections;
+    }
+
+    /**
+     * Sets where the latency and throughput of download mirrors are kept. They decide which mirror
+     * serves a package that has more than one, and are saved after every download.
+     * By default they are kept in memory only; see {@link MirrorStats#load()}.
+     * @param mirrorStats The statistics to use.
+     * @throws IllegalArgumentException If the statistics are null.
+     */
+    public void setMirrorStats(MirrorStats mirrorStats) {
+        if (mirrorStats == null) {
+            throw new IllegalArgumentException("Mirror statistics cannot be null.");
+        }
+        this.mirrorStats = mirrorStats;
+    }
+
+    /**
+     * Sets the throughput below which a download segment leaves its mirror for the next one.
+     * Only used for packages with more than one mirror.
+     * @param hedgeThreshold The threshold in bytes per second, or 0 to switch mirrors only on errors.
+     * @throws IllegalArgumentException If the threshold is negative.
+     */
+    public void setHedgeThreshold(long hedgeThreshold) {
+        if (hedgeThreshold < 0) {
+            throw new IllegalArgumentException("Hedge threshold cannot be negative.");
+        }
+        this.hedgeThreshold = hedgeThreshold;
+    }
+
+    /**
+     * Sets the cache used to avoid downloading unchanged archives again.
+     * @param downloadCache The cache to use, or null to always download.
+     */
+    public void setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    /**
+     * Enables extracting zip archives while they download. The archive is then never written to disk
+     * and therefore not added to the download cache. Archives that cannot be read in a single
+     * forward pass are still downloaded first and extracted afterwards, and so are all tar archives.
+     * @param streamingExtraction Whether to stream downloads straight into the extraction directory.
+     */
+    public void setStreamingExtraction(boolean streamingExtraction) {
+        this.streamingExtraction = streamingExtraction;
+    }
+
+    /**
+     * Sets how many threads extract an archive. With more than one thread the directory
+     * skeleton is created first and file entries are written in parallel.
+     * @param extractionThreads The number of threads, at least 1.
+     * @throws IllegalArgumentException If the count is less than 1.
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        if (extractionThreads < 1) {
+            throw new IllegalArgumentException("Extraction threads must be at least 1.");
+        }
+        this.extractionThreads = extractionThreads;
+    }
+
+    /**
+     * Enables extracting downloaded archives through a memory-mapped {@link ZipIndex} with an
+     * {@link IndexedZipExtractor}, which suits archives of several gigabytes. The configured I/O engine
+     * is not used then, and the root directory is detected from all entries instead of the first one.
+     * Streaming extraction is not affected.
+     * @param indexedExtraction Whether to extract through a memory-mapped index.
+     */
+    public void setIndexedExtraction(boolean indexedExtraction) {
+        this.indexedExtraction = indexedExtraction;
+    }
+
+    /**
+     * Enables incremental reinstalls. When the extraction directory holds the manifest of a previous
+     * install, only entries whose CRC-32 or size changed are rewritten and only entries missing from
+     * the new archive are deleted, instead of deleting the directory and extracting everything again.
+     * @param incrementalInstall Whether to update existing installations in place.
+     */
+    public void setIncrementalInstall(boolean incrementalInstall) {
+        this.incrementalInstall = incrementalInstall;
+    }
+
+    /**
+     * Enables staged installs (the default). A fresh extraction then goes into a sibling staging
+     * directory and replaces the existing installation with an atomic rename only once it is complete,
+     * so the installed application is never half-deleted. The old tree is removed in the background.
+     * @param stagedInstall Whether to extract into a staging directory first.
+     */
+    public void setStagedInstall(boolean stagedInstall) {
+        this.stagedInstall = stagedInstall;
     }
 
     /**
@@ -49,11 +232,70 @@ public class SoftwareInstaller {
      */
     public Path installSoftware(String zipFileUrl, String appName, String relativeBinPath,boolean skipPath)
             throws IOException, InterruptedException, IllegalArgumentException {
+        return installSoftware(Arrays.asList(zipFileUrl), appName, relativeBinPath, skipPath);
+    }
+
+    /**
+     * Performs the full software installation process like {@link #installSoftware(String, String, String, boolean)},
+     * downloading the zip file from whichever of several equivalent mirrors is expected to be fastest.
+     * The mirrors are probed at the same time; the download is split across the ones that are about
+     * as fast as the best, and parts that get too slow or fail move to another mirror.
+     * The first URL names the package: the download cache and the downloaded file name go by it.
+     * Without an expected checksum nothing would stop a mirror from serving different content, so this
+     * overload only accepts a single URL; pass mirrors to
+     * {@link #installSoftware(List, ExpectedChecksum, String, String, boolean)} together with their checksum.
+     *
+     * @param zipFileUrls The URL of the zip file, as a list of one.
+     * @param appName The name to use for the root directory where the software will be extracted.
+     * @param relativeBinPath The path relative to the extracted root directory that should be added to the PATH.
+     * @param skipPath Whether to leave the PATH alone.
+     * @return The absolute {@link Path} that was attempted to be added to the system PATH, or null.
+     * @throws IOException If an I/O error occurs during download, extraction, or PATH modification.
+     * @throws InterruptedException If the process modifying the PATH is interrupted.
+     * @throws IllegalArgumentException If input parameters are invalid (e.g., no, an empty or more than one URL).
+     */
+    public Path installSoftware(List<String> zipFileUrls, String appName, String relativeBinPath, boolean skipPath)
+            throws IOException, InterruptedException, IllegalArgumentException {
+        return installSoftware(zipFileUrls, null, appName, relativeBinPath, skipPath);
+    }
+
+    /**
+     * Performs the full software installation process like {@link #installSoftware(List, String, String, boolean)},
+     * and verifies the archive against an expected SHA-256 digest. The digest is computed while the archive
+     * downloads, without a second pass over it; on a mismatch the archive is deleted and not extracted.
+     * If an archive with the expected digest is already installed or in the download cache, nothing is downloaded.
+     * Besides zip, the archive may be a {@code .tar.gz} or {@code .tar.xz} (see {@link ArchiveFormat}); those are
+     * downloaded, resumed and cached like zips and then extracted in one sequential pass over the file.
+     *
+     * @param zipFileUrls The URLs of identical copies of the zip file, at least one.
+     * @param checksum The digest the archive must have, or null to not verify it; required with more than one URL.
+     * @param appName The name to use for the root directory where the software will be extracted.
+     * @param relativeBinPath The path relative to the extracted root directory that should be added to the PATH.
+     * @param skipPath Whether to leave the PATH alone.
+     * @return The absolute {@link Path} that was attempted to be added to the system PATH, or null.
+     * @throws IOException If an I/O error occurs during download, extraction, or PATH modification, the expected
+     *                     digest cannot be determined or the archive does not match it.
+     * @throws InterruptedException If the process modifying the PATH is interrupted.
+     * @throws IllegalArgumentException If input parameters are invalid (e.g., no or an empty URL, or mirrors
+     *                                  without a checksum).
+     */
+    public Path installSoftware(List<String> zipFileUrls, ExpectedChecksum checksum, String appName, String relativeBinPath,
+                                boolean skipPath) throws IOException, InterruptedException, IllegalArgumentException {
 
         // --- Input Validation ---
-        if (zipFileUrl == null || zipFileUrl.trim().isEmpty()) {
-            throw new IllegalArgumentException("Zip file URL cannot be null or empty.");
+        if (zipFileUrls == null || zipFileUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one zip file URL is required.");
+        }
+        for (String url : zipFileUrls) {
+            if (url == null || url.trim().isEmpty()) {
+                throw new IllegalArgumentException("Zip file URL cannot be null or empty.");
+            }
+        }
+        if (zipFileUrls.size() > 1 && checksum == null) {
+            // Integrity must not depend on which mirror happens to be fastest
+            throw new IllegalArgumentException("Mirrors require an expected checksum: " + zipFileUrls);
         }
+        String zipFileUrl = zipFileUrls.get(0);
         if (appName == null || appName.trim().isEmpty()) {
             throw new IllegalArgumentException("App name cannot be null or empty. This is used for the installation directory name.");
         }
@@ -72,32 +314,170 @@ public class SoftwareInstaller {
         Files.createDirectories(downloadDir); // Ensure download directory exists
 
         String zipFileName = getFileNameFromUrl(zipFileUrl);
-        Path downloadedFilePath = downloadDir.resolve(zipFileName);
+        // Prefixed with the app name, so packages installing at the same time never share a download file
+        Path downloadedFilePath = downloadDir.resolve(appName + "-" + zipFileName);
         Path extractionDir = userHomeDir.resolve(appName); // Extract here
+        ArchiveFormat format = ArchiveFormat.forFileName(zipFileName);
 
         System.out.println("--- Software Installation Process ---");
         System.out.println("Target URL: " + zipFileUrl);
+        if (zipFileUrls.size() > 1) {
+            System.out.println("Mirrors: " + zipFileUrls.subList(1, zipFileUrls.size()));
+        }
         System.out.println("App Name (Extraction Directory): " + extractionDir);
         System.out.println("Relative PATH target: " + relativeBinPath);
         System.out.println("Download Path: " + downloadedFilePath);
+        System.out.println("Archive Format: " + format);
+        // Resolved before anything is downloaded, so an archive that cannot be verified is never extracted
+        String expectedSha256 = checksum != null ? checksum.resolve(zipFileName) : null;
+        if (expectedSha256 != null) {
+            System.out.println("Expected SHA-256: " + expectedSha256);
+        }
 
-        // 1. Download the Zip File
+        // 1. Download the Zip File (or reuse the cached copy if the server says it is unchanged)
         System.out.println("\nStep 1: Downloading...");
-        downloadFile(zipFileUrl, downloadedFilePath);
+        ProgressTracker downloadProgress = newProgressTracker(appName, InstallProgressListener.Phase.DOWNLOAD);
+        Path archivePath = downloadedFilePath;
+        String archiveDigest = null;
+        // Set when the archive was already extracted while it downloaded
+        String streamedRootDirectoryName = null;
+        List<ZipEntry> streamedEntries = null;
+        Path streamedDir = null;
+        boolean streamed = false;
+
+        Properties installedArchive = readInstalledArchive(extractionDir);
+        DownloadCache.Entry cachedEntry = downloadCache != null ? downloadCache.lookup(zipFileUrl) : null;
+        Path knownBlob = expectedSha256 != null && downloadCache != null ? downloadCache.findBlob(expectedSha256) : null;
+        if (expectedSha256 != null && installedArchive != null && expectedSha256.equals(installedArchive.getProperty("sha256"))) {
+            // Step 2 sees the same digest and skips the extraction too
+            archivePath = null;
+            archiveDigest = expectedSha256;
+            System.out.println("Step 1: " + extractionDir + " was installed from an archive with the expected SHA-256. Skipping the download.");
+        } else if (knownBlob != null) {
+            // The digest identifies the content, no need to ask any server
+            if (cachedEntry != null && expectedSha256.equals(cachedEntry.sha256())) {
+                downloadCache.touch(cachedEntry);
+            }
+            archivePath = knownBlob;
+            archiveDigest = expectedSha256;
+            long size = Files.size(knownBlob);
+            downloadProgress.setTotals(size, -1);
+            downloadProgress.skipBytes(size);
+            System.out.println("Step 1: The cache holds an archive with the expected SHA-256. Using " + archivePath);
+        } else if (expectedSha256 == null && cachedEntry != null && downloadCache.revalidate(cachedEntry)) {
+            cachedEntry = downloadCache.touch(cachedEntry);
+            archivePath = cachedEntry.blobPath();
+            archiveDigest = cachedEntry.sha256();
+            downloadProgress.setTotals(cachedEntry.size(), -1);
+            downloadProgress.skipBytes(cachedEntry.size());
+            System.out.println("Step 1: Server reports the cached copy is current. Using " + archivePath);
+        } else {
+            // Unless staged, streaming would write an unverified archive into the installation itself.
+            // Tars are never streamed: downloading them first keeps resume, segments, mirrors and the cache
+            if (format == ArchiveFormat.ZIP && streamingExtraction && (expectedSha256 == null || stagedInstall)) {
+                streamedDir = beginExtraction(extractionDir);
+                System.out.println("Step 1: Extracting while downloading into " + streamedDir);
+                try {
+                    StreamingZipExtractor.Result result = new StreamingZipExtractor()
+                            .extract(fastestMirror(zipFileUrls), streamedDir, downloadProgress);
+                    streamedRootDirectoryName = result.rootDirectoryName();
+                    streamedEntries = result.fileEntries();
+                    archiveDigest = result.sha256();
+                    streamed = true;
+                    if (expectedSha256 != null && !expectedSha256.equals(archiveDigest)) {
+                        deleteDirectory(streamedDir);
+                        throw new IOException("SHA-256 mismatch for " + zipFileUrl + ": expected " + expectedSha256
+                                + " but downloaded " + archiveDigest + ". Discarded the extracted files.");
+                    }
+                } catch (StreamingZipExtractor.StreamingNotSupportedException e) {
+                    System.out.println("Step 1: " + e.getMessage() + ". Falling back to download, then extract.");
+                    if (!streamedDir.equals(extractionDir)) {
+                        deleteDirectory(streamedDir);
+                    }
+                }
+            }
+            if (!streamed) {
+                MessageDigest digest = Digests.newSha256();
+                SegmentedDownloader.RangeProbe probe = downloadFile(zipFileUrls, downloadedFilePath, downloadProgress, digest);
+                archiveDigest = Digests.toHex(digest.digest());
+                if (expectedSha256 != null && !expectedSha256.equals(archiveDigest)) {
+                    Files.deleteIfExists(downloadedFilePath);
+                    throw new IOException("SHA-256 mismatch for " + zipFileUrl + ": expected " + expectedSha256
+                            + " but downloaded " + archiveDigest + ". Deleted the archive without extracting it.");
+                }
+                if (downloadCache != null) {
+                    cachedEntry = downloadCache.store(zipFileUrl, downloadedFilePath, archiveDigest,
+                            probe != null ? probe.etag() : null, probe != null ? probe.lastModified() : null);
+                }
+            }
+        }
+        downloadProgress.finish();
+        recordPhase(appName, downloadProgress);
+        System.out.println(); // New line after progress is done
         System.out.println("Step 1: Download complete.");
+        if (expectedSha256 != null) {
+            System.out.println("Step 1: SHA-256 verified.");
+        }
 
         // 2. Extract the Zip File
         System.out.println("\nStep 2: Extracting...");
-        // Clean up previous installations in the extraction directory if needed
-        if (Files.exists(extractionDir)) {
-            System.out.println("Step 2: Existing extraction directory found. Deleting contents...");
-            deleteDirectory(extractionDir); // Use the robust delete helper
-        }
-        Files.createDirectories(extractionDir); // Ensure extraction directory exists
-
+        ProgressTracker extractProgress = newProgressTracker(appName, InstallProgressListener.Phase.EXTRACT);
         // We need the root directory name from the zip to correctly construct the bin path
         // Assumes a common zip structure like "myapp-1.0/...".
-        String zipRootDirectoryName = extractZipFile(downloadedFilePath, extractionDir);
+        String zipRootDirectoryName;
+        if (streamed) {
+            System.out.println("Step 2: Archive was extracted while downloading.");
+            zipRootDirectoryName = streamedRootDirectoryName;
+            // Recorded like any other full extraction, so the next install can be incremental
+            InstallManifest.fromExtractedEntries(streamedEntries, streamedDir).write(streamedDir);
+            writeInstalledArchive(streamedDir, archiveDigest, zipRootDirectoryName);
+            finishExtraction(extractionDir, streamedDir);
+        } else if (archiveDigest != null && installedArchive != null && archiveDigest.equals(installedArchive.getProperty("sha256"))) {
+            // The exact same archive is already extracted there, nothing to do
+            System.out.println("Step 2: " + extractionDir + " already contains this archive. Skipping extraction.");
+            zipRootDirectoryName = installedArchive.getProperty("root", "");
+        } else if (format != ArchiveFormat.ZIP) {
+            // One pass over the downloaded archive, decompressing as it goes
+            Path targetDir = beginExtraction(extractionDir);
+            ArchiveFormat.Result result;
+            try (InputStream in = Files.newInputStream(archivePath)) {
+                result = format.extract(in, targetDir, extractProgress);
+            }
+            zipRootDirectoryName = result.rootDirectoryName();
+            extractProgress.finish();
+            System.out.println(); // New line after progress is done
+            InstallManifest.fromExtractedFiles(result.fileNames(), targetDir).write(targetDir);
+            if (archiveDigest != null) {
+                writeInstalledArchive(targetDir, archiveDigest, zipRootDirectoryName);
+            }
+            finishExtraction(extractionDir, targetDir);
+        } else {
+            InstallManifest previousManifest = incrementalInstall ? InstallManifest.read(extractionDir) : null;
+            if (previousManifest != null) {
+                if (previousManifest.isInProgress()) {
+                    System.out.println("Step 2: The previous update of " + extractionDir + " did not finish. Rewriting what it touched.");
+                }
+                System.out.println("Step 2: Updating existing installation in " + extractionDir + " incrementally...");
+                zipRootDirectoryName = extractIncrementally(archivePath, extractionDir, previousManifest, extractProgress);
+                extractProgress.finish();
+                System.out.println(); // New line after progress is done
+                if (archiveDigest != null) {
+                    writeInstalledArchive(extractionDir, archiveDigest, zipRootDirectoryName);
+                }
+            } else {
+                Path targetDir = beginExtraction(extractionDir);
+                zipRootDirectoryName = extractZipFile(archivePath, targetDir, extractProgress);
+                extractProgress.finish();
+                System.out.println(); // New line after progress is done
+                InstallManifest.fromExtractedArchive(archivePath, targetDir).write(targetDir);
+                if (archiveDigest != null) {
+                    writeInstalledArchive(targetDir, archiveDigest, zipRootDirectoryName);
+                }
+                finishExtraction(extractionDir, targetDir);
+            }
+        }
+        // Also recorded when nothing had to be extracted, to show what the check itself cost
+        recordPhase(appName, extractProgress);
         Path absoluteBinPath;
 
         if (zipRootDirectoryName == null || zipRootDirectoryName.isEmpty()) {
@@ -115,13 +495,34 @@ public class SoftwareInstaller {
 
         if (skipPath) {
             System.out.println("Skipping PATH modification as per user request.");
+            newProgressTracker(appName, InstallProgressListener.Phase.DONE).finish();
             return null; // Skip PATH modification
         }
 
         // 3. Add the 'bin' directory to the Windows User PATH
+        Path addedPath = addToUserPath(appName, absoluteBinPath);
+
+        System.out.println("\n--- Installation Process Finished ---");
+        newProgressTracker(appName, InstallProgressListener.Phase.DONE).finish();
+
+        // Optional: Clean up the downloaded zip file
+        return addedPath; // Return the path that was added (or null if not applicable/successful)
+    }
+
+    /**
+     * Step 3 of an install: adds a directory to the Windows User PATH, if running on Windows.
+     * @param appName The package the directory belongs to.
+     * @param absoluteBinPath The directory to add.
+     * @return The path that was added, or null if nothing was added.
+     * @throws IOException If an I/O error occurs during PATH modification.
+     * @throws InterruptedException If the process modifying the PATH is interrupted.
+     */
+    private Path addToUserPath(String appName, Path absoluteBinPath) throws IOException, InterruptedException {
         Path addedPath = null; // Will store the path actually added if successful
         if (System.getProperty("os.name").toLowerCase().contains("win")) {
             System.out.println("\nStep 3: Attempting to add to Windows User PATH...");
+            ProgressTracker pathProgress = newProgressTracker(appName, InstallProgressListener.Phase.PATH);
+            pathProgress.publish();
             if (Files.exists(absoluteBinPath)) {
                 System.out.println("Step 3: Target directory exists. Proceeding to add to PATH.");
                 addUserPath(absoluteBinPath.toString());
@@ -131,136 +532,628 @@ public class SoftwareInstaller {
                 System.err.println("Step 3: WARNING: The target directory for PATH was not found after extraction: " + absoluteBinPath);
                 System.err.println("Step 3: Skipping PATH modification.");
             }
+            pathProgress.finish();
+            recordPhase(appName, pathProgress);
         } else {
             System.out.println("\nStep 3: Skipping Windows PATH modification: Not running on Windows.");
             // For other OSes (Linux, macOS), you would typically provide instructions
             // or potentially create symlinks, but modifying the global user PATH
             // involves different mechanisms (e.g., shell profile scripts like .bashrc, .zshrc).
         }
+        return addedPath;
+    }
 
-        System.out.println("\n--- Installation Process Finished ---");
+    /**
+     * Installs all packages of an offline bundle (see {@link FatBundle}) without any network access:
+     * 1. Nothing is downloaded.
+     * 2. All packages are extracted from the bundle in one sequential read, with parallel writes
+     *    ({@link #setExtractionThreads(int)} writers).
+     * 3. The PATH of each package is updated as {@link #installSoftware} would.
+     *
+     * @param bundle The opened bundle; it is consumed but not closed.
+     * @throws IOException If an I/O error occurs during extraction or PATH modification.
+     * @throws InterruptedException If the process modifying the PATH is interrupted.
+     */
+    public void installFromBundle(FatBundle bundle) throws IOException, InterruptedException {
+        Path userHomeDir = InstallerPaths.userHome();
+        List<FatBundle.Root> roots = bundle.getRoots();
+        String bundleName = "offline bundle";
 
-        // Optional: Clean up the downloaded zip file
-        // try {
-        //    if (downloadedFilePath != null && Files.exists(downloadedFilePath)) {
-        //       // Files.delete(downloadedFilePath); // Uncomment to delete the downloaded zip
-        //       // System.out.println("Cleaned up downloaded zip file: " + downloadedFilePath);
-        //    }
-        // } catch (IOException e) {
-        //     System.err.println("Failed to clean up downloaded file: " + e.getMessage());
-        // }
+        System.out.println("--- Offline Installation Process ---");
+        System.out.println("\nStep 1: Nothing to download. The bundle contains " + bundle.getFileCount() + " files ("
+                + bundle.getTotalBytes() / (1024 * 1024) + " MiB) for " + roots.size() + " packages.");
 
-        return addedPath; // Return the path that was added (or null if not applicable/successful)
+        System.out.println("\nStep 2: Extracting...");
+        List<Path> targetDirs = new ArrayList<>();
+        for (FatBundle.Root root : roots) {
+            targetDirs.add(beginExtraction(userHomeDir.resolve(root.appName())));
+        }
+        ProgressTracker extractProgress = newProgressTracker(bundleName, InstallProgressListener.Phase.EXTRACT);
+        bundle.extract(targetDirs, extractionThreads, extractProgress);
+        extractProgress.finish();
+        recordPhase(bundleName, extractProgress);
+        System.out.println(); // New line after progress is done
+        for (int i = 0; i < roots.size(); i++) {
+            finishExtraction(userHomeDir.resolve(roots.get(i).appName()), targetDirs.get(i));
+        }
+        System.out.println("Step 2: Extraction complete.");
+
+        for (FatBundle.Root root : roots) {
+            Path extractionDir = userHomeDir.resolve(root.appName());
+            if (!root.skipPath()) {
+                // The bundle carries the install marker of each package, which knows its root directory
+                Properties installedArchive = readInstalledArchive(extractionDir);
+                String zipRootDirectoryName = installedArchive != null ? installedArchive.getProperty("root", "") : "";
+                addToUserPath(root.appName(), extractionDir.resolve(zipRootDirectoryName).resolve(root.relativeBinPath()));
+            }
+            newProgressTracker(root.appName(), InstallProgressListener.Phase.DONE).finish();
+        }
+        System.out.println("\n--- Offline Installation Process Finished ---");
+    }
+
+    /**
+     * Creates a FAT installer from the packages installed under the user's home: a copy of the running
+     * shadow jar that installs them with {@link #installFromBundle(FatBundle)}, without network access.
+     * The packages must have been installed (and their dependencies resolved) first.
+     * @param outputJar The FAT installer to write.
+     * @param roots The packages to bundle.
+     * @throws IOException If not running from a jar, a package is not installed or an I/O error occurs.
+     */
+    public void createFatInstaller(Path outputJar, List<FatBundle.Root> roots) throws IOException {
+        String bundleName = "offline bundle";
+        System.out.println("--- FAT Installer Creation ---");
+        System.out.println("Bundling " + roots.size() + " packages into " + outputJar);
+        ProgressTracker bundleProgress = newProgressTracker(bundleName, InstallProgressListener.Phase.BUNDLE);
+        FatBundle.create(FatBundle.runningJar(), outputJar, InstallerPaths.userHome(), roots, bundleProgress);
+        bundleProgress.finish();
+        recordPhase(bundleName, bundleProgress);
+        System.out.println(); // New line after progress is done
+        System.out.println("FAT installer written to " + outputJar + " (" + Files.size(outputJar) / (1024 * 1024) + " MiB).");
+        newProgressTracker(bundleName, InstallProgressListener.Phase.DONE).finish();
+    }
+
+    /**
+     * Brings an existing installation up to date with a new archive: rewrites only the entries whose
+     * CRC-32 or size differ from the previous install's manifest, deletes files for entries that
+     * are no longer in the archive and then records the new manifest.
+     * <p>
+     * The install marker is deleted and the previous manifest flagged as in progress before the first
+     * file is touched, so an interrupted update is never mistaken for a complete install of either archive.
+     * The caller writes the new marker once this returns.
+     * @param zipFilePath The new archive.
+     * @param extractionDir The existing extraction directory.
+     * @param previousManifest The manifest written by the previous install.
+     * @param progress Tracks the extracted entries.
+     * @return The root directory name detected in the new archive.
+     * @throws IOException If an I/O error occurs.
+     */
+    private String extractIncrementally(Path zipFilePath, Path extractionDir, InstallManifest previousManifest,
+                                       ProgressTracker progress) throws IOException {
+        Files.deleteIfExists(extractionDir.resolve(INSTALLED_ARCHIVE_MARKER));
+        previousManifest.writeInProgress(extractionDir);
+        AtomicInteger rewritten = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        String zipRootDirectoryName = extractZipFile(zipFilePath, extractionDir, progress, (entry, entryDestPath) -> {
+            if (previousManifest.isUnchanged(entry, entryDestPath)) {
+                unchanged.incrementAndGet();
+                return false;
+            }
+            rewritten.incrementAndGet();
+            return true;
+        });
+
+        InstallManifest newManifest = InstallManifest.fromExtractedArchive(zipFilePath, extractionDir);
+        int removed = 0;
+        for (String entryName : previousManifest.removedEntries(newManifest)) {
+            Path entryDestPath = resolveEntryPath(extractionDir, entryName);
+            if (Files.deleteIfExists(entryDestPath)) {
+                removed++;
+            }
+            // Remove directories left empty by the deletion, but never the extraction directory itself
+            Path parent = entryDestPath.getParent();
+            while (parent != null && !parent.equals(extractionDir) && isEmptyDirectory(parent)) {
+                Files.delete(parent);
+                parent = parent.getParent();
+            }
+        }
+        newManifest.write(extractionDir);
+        System.out.println("Step 2: Incremental update: " + rewritten.get() + " entries written, "
+                + unchanged.get() + " unchanged, " + removed + " removed.");
+        return zipRootDirectoryName;
+    }
+
+    private static boolean isEmptyDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> children = Files.list(directory)) {
+            return children.findAny().isEmpty();
+        }
+    }
+
+    /**
+     * Prepares a directory to extract a fresh copy of an archive into.
+     * With staged installs this is an empty sibling staging directory and the current installation
+     * stays untouched until {@link #finishExtraction(Path, Path)}. Otherwise the extraction
+     * directory itself is emptied.
+     * @param extractionDir The final extraction directory.
+     * @return The directory to extract into.
+     * @throws IOException If the directory cannot be cleared or created.
+     */
+    private Path beginExtraction(Path extractionDir) throws IOException {
+        if (stagedInstall) {
+            Path stagingDir = extractionDir.resolveSibling("." + extractionDir.getFileName() + ".staging");
+            // Leftover from an install that was interrupted
+            if (Files.exists(stagingDir)) {
+                deleteDirectory(stagingDir);
+            }
+            Files.createDirectories(stagingDir);
+            return stagingDir;
+        }
+        // Clean up previous installations in the extraction directory if needed
+        if (Files.exists(extractionDir)) {
+            System.out.println("Existing extraction directory found. Deleting contents...");
+            deleteDirectory(extractionDir); // Use the robust delete helper
+        }
+        Files.createDirectories(extractionDir); // Ensure extraction directory exists
+        return extractionDir;
+    }
+
+    /**
+     * Puts a freshly extracted directory in place. If it was extracted into a staging directory, the
+     * current installation is renamed aside and the staging directory renamed into its place, both with
+     * atomic moves, so the switch takes milliseconds regardless of the install size. The old tree is
+     * then deleted on a low-priority background thread.
+     * @param extractionDir The final extraction directory.
+     * @param extractedDir The directory returned by {@link #beginExtraction(Path)}.
+     * @throws IOException If the directories cannot be swapped.
+     */
+    private void finishExtraction(Path extractionDir, Path extractedDir) throws IOException {
+        if (extractedDir.equals(extractionDir)) {
+            return;
+        }
+        String oldPrefix = "." + extractionDir.getFileName() + ".old-";
+        // Trees whose background deletion did not finish in an earlier run
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(extractionDir.getParent(), oldPrefix + "*")) {
+            for (Path leftover : leftovers) {
+                deleteInBackground(leftover);
+            }
+        }
+
+        long start = System.nanoTime();
+        Path oldDir = null;
+        if (Files.exists(extractionDir)) {
+            oldDir = extractionDir.resolveSibling(oldPrefix + System.currentTimeMillis());
+            try {
+                Files.move(extractionDir, oldDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // e.g. a file in the old tree is locked on Windows; fall back to deleting it in place
+                System.err.println("Could not move " + extractionDir + " aside (" + e.getMessage() + "). Deleting it instead.");
+                deleteDirectory(extractionDir);
+                oldDir = null;
+            }
+        }
+        Files.move(extractedDir, extractionDir, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Switched " + extractionDir + " to the new installation in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms.");
+
+        if (oldDir != null) {
+            deleteInBackground(oldDir);
+        }
+    }
+
+    /**
+     * Creates a tracker that reports one phase of an install to all registered listeners.
+     * @param appName The package being installed.
+     * @param phase The phase to track.
+     * @return The tracker.
+     */
+    private ProgressTracker newProgressTracker(String appName, InstallProgressListener.Phase phase) {
+        return new ProgressTracker(this::fireProgress, appName, phase);
+    }
+
+    private void recordPhase(String appName, ProgressTracker tracker) {
+        if (telemetry != null) {
+            telemetry.recordPhase(appName, tracker);
+        }
+    }
+
+    private void fireProgress(String appName, InstallProgressListener.Phase phase, long bytesDone, long bytesTotal,
+                              int entriesDone, int entriesTotal, long bytesPerSecond, long etaMillis) {
+        for (InstallProgressListener listener : progressListeners) {
+            listener.onProgress(appName, phase, bytesDone, bytesTotal, entriesDone, entriesTotal, bytesPerSecond, etaMillis);
+        }
+    }
+
+    /**
+     * Deletes a directory tree on a low-priority daemon thread. If the JVM exits first, the
+     * leftover is picked up again by the next install.
+     * @param directory The directory to delete.
+     */
+    private static void deleteInBackground(Path directory) {
+        Thread cleaner = new Thread(() -> {
+            try {
+                deleteDirectory(directory);
+            } catch (IOException e) {
+                System.err.println("Background cleanup of " + directory + " failed: " + e.getMessage());
+            }
+        }, "install-cleanup");
+        cleaner.setPriority(Thread.MIN_PRIORITY);
+        cleaner.setDaemon(true);
+        cleaner.start();
     }
 
     /**
      * Downloads a file from a URL to a specific path.
+     * The data is written to a {@code .part} file next to {@code savePath} and only moved into
+     * place once it is complete. When the server supports byte ranges, progress is checkpointed
+     * so that an interrupted download is resumed on the next call instead of starting over,
+     * and more than one configured connection downloads in parallel segments.
+     * Package-private so the benchmarks in {@code src/jmh} can call it.
      * @param fileURL The URL of the file to download.
      * @param savePath The path where the file should be saved.
+     * @param progress Tracks the downloaded bytes.
+     * @return The result of probing the server, carrying its validators, or null if the probe failed.
      * @throws IOException If an I/O error occurs during download.
      */
-    private void downloadFile(String fileURL, Path savePath) throws IOException {
-        URL url = new URL(fileURL);
-        try (InputStream in = url.openStream();
-             BufferedInputStream bis = new BufferedInputStream(in);
-             OutputStream fos = Files.newOutputStream(savePath)) { // Use Files.newOutputStream with Path
+    SegmentedDownloader.RangeProbe downloadFile(String fileURL, Path savePath, ProgressTracker progress) throws IOException {
+        return downloadFile(Arrays.asList(fileURL), savePath, progress, null);
+    }
 
-            byte[] data = new byte[BUFFER_SIZE];
-            int bytesRead;
-            long totalBytesRead = 0;
-            long contentLength = -1;
-            try {
-                 contentLength = url.openConnection().getContentLengthLong(); // Get content length if available
-            } catch (IOException e) {
-                 System.err.println("Could not get content length for download progress: " + e.getMessage());
-            }
+    /**
+     * Downloads a file that several equivalent mirrors serve, like {@link #downloadFile(String, Path, ProgressTracker)}.
+     * All mirrors are probed at once. With byte ranges, the segments are spread over the mirrors that are about
+     * as fast as the best one and move to another mirror when they get too slow or fail; otherwise the whole
+     * file comes from the best mirror, or the next one if that fails. The checkpoint of a partial download
+     * belongs to the best mirror, so a resume only continues it if the same mirror wins again.
+     * @param fileURLs The URLs of identical copies of the file, the canonical one first.
+     * @param savePath The path where the file should be saved.
+     * @param progress Tracks the downloaded bytes.
+     * @param digest Receives the content of the file as it is downloaded, or null.
+     * @return The result of probing the first URL, carrying its validators, or null if that probe failed.
+     * @throws IOException If an I/O error occurs during download.
+     */
+    SegmentedDownloader.RangeProbe downloadFile(List<String> fileURLs, Path savePath, ProgressTracker progress,
+                                                MessageDigest digest) throws IOException {
+        Path partPath = savePath.resolveSibling(savePath.getFileName() + ".part");
+        SegmentedDownloader segmentedDownloader = newSegmentedDownloader();
+
+        List<SegmentedDownloader.RangeProbe> mirrors = List.of();
+        try {
+            mirrors = segmentedDownloader.probeMirrors(fileURLs);
+        } catch (IOException e) {
+            System.err.println("Could not probe " + String.join(", ", fileURLs) + " for range support: " + e.getMessage());
+        }
+        SegmentedDownloader.RangeProbe best = mirrors.isEmpty() ? null : mirrors.get(0);
+        if (best != null && fileURLs.size() > 1) {
+            System.out.println("Fastest mirror: " + best.url() + " (answered in " + best.latencyMillis() + " ms)");
+        }
 
+        boolean downloaded = false;
+        try {
+            if (best != null && best.supportsRanges()) {
+                DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, best.url(), best);
+                try {
+                    segmentedDownloader.download(mirrors, partPath, checkpoint, progress, digest);
+                    downloaded = true;
+                } catch (SegmentedDownloader.RangeNotHonoredException e) {
+                    // Either the server does not really do ranges or the file changed under us
+                    System.err.println(e.getMessage() + ". Restarting with a single connection.");
+                }
+            } else {
+                System.out.println("Server does not support range requests for " + (best != null ? best.url() : fileURLs.get(0))
+                        + ". Using a single connection.");
+            }
 
-            while ((bytesRead = bis.read(data, 0, BUFFER_SIZE)) != -1) {
-                fos.write(data, 0, bytesRead);
-                totalBytesRead += bytesRead;
-                // Optional: Print progress (crude, but works in console)
-                if (contentLength > 0) {
-                    int progress = (int) ((totalBytesRead * 100) / contentLength);
-                    // Use carriage return to overwrite the line
-                    System.out.print("\rDownloading: " + progress + "% (" + totalBytesRead + "/" + contentLength + " bytes)");
+            if (!downloaded) {
+                // Answering mirrors in their ranked order, then the ones whose probe failed
+                List<String> candidates = new ArrayList<>();
+                for (SegmentedDownloader.RangeProbe mirror : mirrors) {
+                    candidates.add(mirror.url());
+                }
+                for (String fileURL : fileURLs) {
+                    if (!candidates.contains(fileURL)) {
+                        candidates.add(fileURL);
+                    }
+                }
+                for (int i = 0; !downloaded; i++) {
+                    DownloadCheckpoint.discard(partPath);
+                    try {
+                        downloadSingleStream(candidates.get(i), partPath, progress, digest);
+                        downloaded = true;
+                    } catch (IOException e) {
+                        if (i == candidates.size() - 1) {
+                            throw e;
+                        }
+                        System.err.println("Download from " + candidates.get(i) + " failed: " + e.getMessage() + ". Trying the next mirror.");
+                    }
                 }
             }
-            if (contentLength > 0) {
-                System.out.println(); // New line after progress is done
+        } finally {
+            saveMirrorStats();
+        }
+
+        Files.move(partPath, savePath, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(DownloadCheckpoint.sidecarFor(partPath));
+        for (SegmentedDownloader.RangeProbe mirror : mirrors) {
+            if (mirror.url().equals(fileURLs.get(0))) {
+                return mirror;
             }
-        } // Streams are closed automatically by try-with-resources
+        }
+        return null;
+    }
+
+    /**
+     * @param fileURLs The URLs of identical copies of a file.
+     * @return The URL of the mirror expected to be fastest, or the first URL if there is only one or none answered.
+     */
+    private String fastestMirror(List<String> fileURLs) {
+        if (fileURLs.size() == 1) {
+            return fileURLs.get(0);
+        }
+        try {
+            String fastest = newSegmentedDownloader().probeMirrors(fileURLs).get(0).url();
+            System.out.println("Fastest mirror: " + fastest);
+            return fastest;
+        } catch (IOException e) {
+            System.err.println("Could not probe the mirrors of " + fileURLs.get(0) + ": " + e.getMessage());
+            return fileURLs.get(0);
+        } finally {
+            saveMirrorStats();
+        }
+    }
+
+    private SegmentedDownloader newSegmentedDownloader() {
+        SegmentedDownloader segmentedDownloader = bufferSize > 0
+                ? new SegmentedDownloader(downloadConnections, bufferSize)
+                : new SegmentedDownloader(downloadConnections);
+        segmentedDownloader.setMirrorStats(mirrorStats);
+        segmentedDownloader.setHedgeThreshold(hedgeThreshold);
+        return segmentedDownloader;
+    }
+
+    private void saveMirrorStats() {
+        try {
+            mirrorStats.save();
+        } catch (IOException e) {
+            // Only affects which mirror is tried first next time
+            System.err.println("Could not save mirror statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Downloads a whole file over one connection. Used when the server cannot serve byte ranges.
+     * @param fileURL The URL of the file to download.
+     * @param savePath The path where the file should be saved.
+     * @param progress Tracks the downloaded bytes. It is restarted from zero.
+     * @param digest Receives the content as it streams through, or null. It is reset first.
+     * @throws IOException If an I/O error occurs during download.
+     */
+    private void downloadSingleStream(String fileURL, Path savePath, ProgressTracker progress, MessageDigest digest) throws IOException {
+        // One request: the length comes from the same response that carries the body
+        try (HttpTransport.Response response = HttpTransport.bulk()
+                .send(HttpTransport.get(HttpTransport.toUri(fileURL)).build())) {
+            if (response.status() != 200) {
+                throw new IOException("GET " + fileURL + " returned HTTP " + response.status());
+            }
+            long contentLength = response.contentLength();
+            progress.restart(contentLength, -1);
+            InputStream in = response.body();
+            if (digest != null) {
+                digest.reset();
+                in = new DigestInputStream(in, digest);
+            }
+            newCopier(BUFFER_SIZE).copy(in, savePath, contentLength, progress);
+        }
+    }
+
+    /**
+     * @param defaultBufferSize The buffer size to use if none was configured.
+     * @return A copier of the configured I/O engine, for the calling thread.
+     */
+    private IoEngine.Copier newCopier(int defaultBufferSize) {
+        return ioEngine.newCopier(bufferSize > 0 ? bufferSize : defaultBufferSize);
     }
 
     /**
      * Extracts a zip file to a destination directory.
      * Attempts to return the name of the presumed root directory within the zip.
+     * Uses {@link IndexedZipExtractor} when indexed extraction is enabled, otherwise
+     * {@link ParallelZipExtractor} when more than one extraction thread is configured.
+     * Package-private so the benchmarks in {@code src/jmh} can call it.
      * @param zipFilePath The path to the zip file.
      * @param destDir The directory where contents should be extracted.
-     * @return The name of the first directory encountered at the root level of the zip, or null if none found.
+     * @param progress Tracks the extracted entries.
+     * @return The name of the first directory encountered at the root level of the zip (with indexed extraction,
+     *         the root directory shared by all entries), or null if none found.
      * @throws IOException If an I/O error occurs during extraction.
      */
-    private String extractZipFile(Path zipFilePath, Path destDir) throws IOException {
+    String extractZipFile(Path zipFilePath, Path destDir, ProgressTracker progress) throws IOException {
+        return extractZipFile(zipFilePath, destDir, progress, (entry, entryDestPath) -> true);
+    }
+
+    /**
+     * Extracts the selected entries of a zip file to a destination directory.
+     * Directories are always created; file entries are only written if {@code shouldWrite} accepts them.
+     * @param zipFilePath The path to the zip file.
+     * @param destDir The directory where contents should be extracted.
+     * @param progress Tracks the extracted entries.
+     * @param shouldWrite Decides, for each file entry and its destination, whether it is written.
+     * @return The name of the first directory encountered at the root level of the zip (with indexed extraction,
+     *         the root directory shared by all entries), or null if none found.
+     * @throws IOException If an I/O error occurs during extraction.
+     */
+    private String extractZipFile(Path zipFilePath, Path destDir, ProgressTracker progress,
+                                  BiPredicate<ZipEntry, Path> shouldWrite) throws IOException {
+        if (indexedExtraction) {
+            IndexedZipExtractor extractor = bufferSize > 0
+                    ? new IndexedZipExtractor(extractionThreads, bufferSize)
+                    : new IndexedZipExtractor(extractionThreads);
+            return extractor.extract(zipFilePath, destDir, shouldWrite, progress);
+        }
+        if (extractionThreads > 1) {
+            ParallelZipExtractor extractor = bufferSize > 0
+                    ? new ParallelZipExtractor(extractionThreads, bufferSize, ioEngine)
+                    : new ParallelZipExtractor(extractionThreads, ioEngine);
+            return extractor.extract(zipFilePath, destDir, shouldWrite, progress);
+        }
         String zipRootDirectoryName = null; // To capture the root directory name
 
         try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            progress.setTotals(-1, zipFile.size());
+            // One copier for all entries, so its buffers are reused
+            IoEngine.Copier copier = newCopier(BUFFER_SIZE);
 
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
-                // Resolve and normalize path relative to the destination directory
-                Path entryDestPath = destDir.resolve(entry.getName()).normalize();
-
-                // Basic security check: prevent Zip Slip vulnerability
-                // Ensure the resolved path is still inside the destination directory
-                if (!entryDestPath.startsWith(destDir)) {
-                    throw new IOException("Zip entry attempts to write outside of target directory: " + entry.getName());
-                }
+                // Resolve the entry and reject anything that would land outside destDir
+                Path entryDestPath = resolveEntryPath(destDir, entry.getName());
 
                 // Try to capture the root directory name from the first entry
                 if (zipRootDirectoryName == null) {
-                     String name = entry.getName();
-                     // Split by both forward and back slashes
-                     String[] pathParts = name.split("[/\\\\]");
-                     // Find the first non-empty path part at the root level
-                     if (pathParts.length > 0) {
-                         String potentialRoot = pathParts[0];
-                         if (!potentialRoot.isEmpty()) {
-                             zipRootDirectoryName = potentialRoot;
-                             // Special case: if the first part is empty (e.g., "/root/..."), use the second part
-                             if (zipRootDirectoryName.isEmpty() && pathParts.length > 1) {
-                                  zipRootDirectoryName = pathParts[1];
-                             }
-                         } else if (pathParts.length > 1 && !pathParts[1].isEmpty()) { // Handle leading slash
-                             zipRootDirectoryName = pathParts[1];
-                         }
-                     }
-                     // Note: This heuristic is not perfect and relies on the common zip structure
-                     // where all contents are under a single root directory.
+                    zipRootDirectoryName = detectRootDirectory(entry.getName());
                 }
 
-
                 if (entry.isDirectory()) {
                     Files.createDirectories(entryDestPath);
-                } else {
+                } else if (shouldWrite.test(entry, entryDestPath)) {
                     // Ensure parent directory exists for file entries
                     Files.createDirectories(entryDestPath.getParent());
-                    try (InputStream entryIn = zipFile.getInputStream(entry);
-                         BufferedInputStream bis = new BufferedInputStream(entryIn);
-                         OutputStream fos = Files.newOutputStream(entryDestPath)) { // Use Files.newOutputStream
-
-                        byte[] buffer = new byte[BUFFER_SIZE];
-                        int bytesRead;
-                        while ((bytesRead = bis.read(buffer)) != -1) {
-                            fos.write(buffer, 0, bytesRead);
-                        }
+                    try (InputStream entryIn = zipFile.getInputStream(entry)) {
+                        copier.copy(entryIn, entryDestPath, entry.getSize(), progress);
                     }
                 }
+                progress.addEntries(1);
             }
         }
         return zipRootDirectoryName;
     }
 
+    /**
+     * Resolves a zip entry name against the destination directory.
+     * Basic security check: prevents the Zip Slip vulnerability by making sure
+     * the resolved path is still inside the destination directory.
+     * @param destDir The directory the archive is extracted into.
+     * @param entryName The name of the zip entry.
+     * @return The normalized path the entry should be written to.
+     * @throws IOException If the entry would be written outside of {@code destDir}.
+     */
+    static Path resolveEntryPath(Path destDir, String entryName) throws IOException {
+        // Resolve and normalize path relative to the destination directory
+        Path entryDestPath = destDir.resolve(entryName).normalize();
+        if (!entryDestPath.startsWith(destDir)) {
+            throw new IOException("Zip entry attempts to write outside of target directory: " + entryName);
+        }
+        return entryDestPath;
+    }
+
+    /**
+     * Finds where a symbolic link would point if it were created now, following the links that already
+     * exist in the destination, and makes sure that place is inside the destination.
+     * Checking the link text alone is not enough: with {@code a -> .} in place, a link created as
+     * {@code a/b -> ../x} really lands in {@code destDir/b} and points outside. So the parent of the link
+     * is resolved on disk, and the target is walked part by part, following every link on the way.
+     * @param destDir The directory the links are extracted into; it must exist.
+     * @param linkPath Where the link is about to be created, as returned by {@link #resolveEntryPath}.
+     *                 Its parent must exist.
+     * @param linkTarget The target of the link as recorded in the archive.
+     * @return The real path the link resolves to; it need not exist.
+     * @throws IOException If the link or its target would be outside of {@code destDir}.
+     */
+    static Path resolveLinkTarget(Path destDir, Path linkPath, String linkTarget) throws IOException {
+        Path realDestDir = destDir.toRealPath();
+        Path realParent = linkPath.getParent().toRealPath();
+        if (!realParent.startsWith(realDestDir)) {
+            throw new IOException("Link would be created outside of target directory: " + linkPath);
+        }
+        Path resolved = followLinks(realDestDir, realParent, linkTarget, 0);
+        if (resolved == null) {
+            throw new IOException("Link points outside of target directory: " + linkPath + " -> " + linkTarget);
+        }
+        return resolved;
+    }
+
+    /**
+     * Finds where a path inside the destination really is, following the links that already exist there,
+     * e.g. for the target of a tar hard link, which is named relative to the archive root.
+     * @param destDir The directory the archive is extracted into; it must exist.
+     * @param entryName The path relative to {@code destDir}.
+     * @return The real path; it need not exist.
+     * @throws IOException If the path is outside of {@code destDir}, through links or otherwise.
+     */
+    static Path resolveRealPath(Path destDir, String entryName) throws IOException {
+        Path realDestDir = destDir.toRealPath();
+        Path resolved = followLinks(realDestDir, realDestDir, entryName, 0);
+        if (resolved == null) {
+            throw new IOException("Path leads outside of target directory: " + entryName);
+        }
+        return resolved;
+    }
+
+    /**
+     * Walks a link target from a directory, part by part, following links as the file system would.
+     * Once the walk reaches a path that does not exist yet, a later link could still be created there,
+     * so a {@code ..} after that point cannot be checked and is rejected.
+     * @return The resolved path, or null if the walk leaves {@code realDestDir} at any point, loops
+     *         or cannot be checked.
+     */
+    private static Path followLinks(Path realDestDir, Path base, String linkTarget, int depth) throws IOException {
+        Path target = Paths.get(linkTarget);
+        // Same limit as Linux, against link loops
+        if (target.isAbsolute() || depth > 40) {
+            return null;
+        }
+        Path current = base;
+        boolean missing = false;
+        for (Path part : target) {
+            String name = part.toString();
+            if (name.isEmpty() || name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (missing) {
+                    return null;
+                }
+                current = current.getParent();
+            } else if (missing) {
+                current = current.resolve(name);
+            } else if (Files.isSymbolicLink(current.resolve(name))) {
+                current = followLinks(realDestDir, current, Files.readSymbolicLink(current.resolve(name)).toString(), depth + 1);
+                missing = current != null && !Files.exists(current);
+            } else {
+                current = current.resolve(name);
+                missing = !Files.exists(current);
+            }
+            if (current == null || !current.startsWith(realDestDir)) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Guesses the root directory of an archive from the name of its first entry.
+     * @param entryName The name of the first entry in the archive.
+     * @return The first non-empty path part, or null if there is none.
+     */
+    static String detectRootDirectory(String entryName) {
+        String zipRootDirectoryName = null;
+        // Split by both forward and back slashes
+        String[] pathParts = entryName.split("[/\\\\]");
+        // Find the first non-empty path part at the root level
+        if (pathParts.length > 0) {
+            String potentialRoot = pathParts[0];
+            if (!potentialRoot.isEmpty()) {
+                zipRootDirectoryName = potentialRoot;
+            } else if (pathParts.length > 1 && !pathParts[1].isEmpty()) { // Handle leading slash
+                zipRootDirectoryName = pathParts[1];
+            }
+        }
+        // Note: This heuristic is not perfect and relies on the common zip structure
+        // where all contents are under a single root directory.
+        return zipRootDirectoryName;
+    }
 
     /**
      * Adds a given path to the Windows User Environment PATH variable using setx.
@@ -375,6 +1268,51 @@ public class SoftwareInstaller {
         }
     }
 
+    /**
+     * @param extractionDir The extraction directory of a package.
+     * @return The SHA-256 of the archive it was installed from, or null if that is not recorded.
+     */
+    static String installedArchiveDigest(Path extractionDir) {
+        Properties installedArchive = readInstalledArchive(extractionDir);
+        return installedArchive != null ? installedArchive.getProperty("sha256") : null;
+    }
+
+    /**
+     * Reads the marker recording which archive was last extracted into a directory.
+     * @param extractionDir The extraction directory.
+     * @return The marker properties ({@code sha256}, {@code root}), or null if there is no readable marker.
+     */
+    private static Properties readInstalledArchive(Path extractionDir) {
+        Path markerPath = extractionDir.resolve(INSTALLED_ARCHIVE_MARKER);
+        if (!Files.exists(markerPath)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(markerPath)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            System.err.println("Could not read install marker " + markerPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records which archive was extracted into a directory, so an unchanged archive is not extracted again.
+     * @param extractionDir The extraction directory.
+     * @param archiveDigest The SHA-256 of the extracted archive.
+     * @param zipRootDirectoryName The detected root directory, or null.
+     * @throws IOException If the marker cannot be written.
+     */
+    private static void writeInstalledArchive(Path extractionDir, String archiveDigest, String zipRootDirectoryName) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("sha256", archiveDigest);
+        properties.setProperty("root", zipRootDirectoryName != null ? zipRootDirectoryName : "");
+        try (OutputStream out = Files.newOutputStream(extractionDir.resolve(INSTALLED_ARCHIVE_MARKER))) {
+            properties.store(out, "Archive extracted into this directory");
+        }
+    }
+
     /**
      * Helper to get file name from URL.
      * @param fileUrl The URL string.
@@ -386,50 +1324,45 @@ public class SoftwareInstaller {
             String path = url.getPath();
             // Find the last slash or backslash
             int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
-            return (lastSlash > 0) ? path.substring(lastSlash + 1) : path;
+            return (lastSlash >= 0) ? path.substring(lastSlash + 1) : path;
         } catch (Exception e) {
             System.err.println("Could not parse URL '" + fileUrl + "' to get file name: " + e.getMessage());
             return "downloaded_file.zip"; // fallback name
         }
     }
 
-     /**
-      * Helper to recursively delete a directory using Java NIO2.
-      * More robust than recursive File.delete().
-      * @param directoryToBeDeleted The path to the directory to delete.
-      * @throws IOException If deletion fails.
-      */
-    private static void deleteDirectory(Path directoryToBeDeleted) throws IOException {
-        if (!Files.exists(directoryToBeDeleted)) {
+    /**
+     * Helper to recursively delete a directory using Java NIO2.
+     * Subtrees are deleted in parallel by {@link ParallelDeleter}, without collecting
+     * all paths of the tree in memory first.
+     * @param directoryToBeDeleted The path to the directory to delete.
+     * @return How many paths were deleted and how many could not be deleted.
+     * @throws IOException If the directory cannot be checked.
+     */
+    static ParallelDeleter.DeleteResult deleteDirectory(Path directoryToBeDeleted) throws IOException {
+        return deleteDirectory(directoryToBeDeleted, new ParallelDeleter());
+    }
+
+    /**
+     * Deletes a directory tree with the given deleter, e.g. one with a specific parallelism.
+     * @param directoryToBeDeleted The path to the directory to delete.
+     * @param deleter The deleter to use.
+     * @return How many paths were deleted and how many could not be deleted.
+     * @throws IOException If the directory cannot be checked.
+     */
+    static ParallelDeleter.DeleteResult deleteDirectory(Path directoryToBeDeleted, ParallelDeleter deleter) throws IOException {
+        if (!Files.exists(directoryToBeDeleted, LinkOption.NOFOLLOW_LINKS)) {
             System.out.println("Directory does not exist, no need to delete: " + directoryToBeDeleted);
-            return;
+            return new ParallelDeleter.DeleteResult(0, 0);
         }
-         System.out.println("Deleting directory contents: " + directoryToBeDeleted);
-        try (Stream<Path> walk = Files.walk(directoryToBeDeleted)) {
-            walk.sorted(Comparator.reverseOrder()) // Delete contents before directory itself
-                .forEach(path -> {
-                    try {
-                        Files.delete(path);
-                        // System.out.println("Deleted: " + path); // Uncomment for verbose deletion log
-                    } catch (IOException e) {
-                         // Log error but continue deleting other files if possible
-                        System.err.println("Failed to delete " + path + ": " + e.getMessage());
-                        // Depending on strictness, you might wrap and re-throw here:
-                        // throw new UncheckedIOException(e);
-                    }
-                });
-        } catch (IOException e) {
-            System.err.println("Error walking directory for deletion: " + directoryToBeDeleted);
-            // Re-throw the initial walking exception or wrap in UncheckedIOException
-             throw new IOException("Failed to delete directory fully: " + directoryToBeDeleted, e);
-        }
-        // Optional: Add a check here to see if the directory *itself* was deleted,
-        // as the walk + delete might fail on the root directory if it wasn't empty
-        // due to permissions or other issues during the stream processing.
-         if (Files.exists(directoryToBeDeleted)) {
-             System.err.println("WARNING: Directory was not fully deleted: " + directoryToBeDeleted);
-         } else {
-              System.out.println("Successfully cleared directory: " + directoryToBeDeleted);
-         }
+        System.out.println("Deleting directory contents: " + directoryToBeDeleted);
+        ParallelDeleter.DeleteResult result = deleter.delete(directoryToBeDeleted);
+        System.out.println("Deleted " + result.deleted() + " paths, " + result.failed() + " failed: " + directoryToBeDeleted);
+        if (Files.exists(directoryToBeDeleted, LinkOption.NOFOLLOW_LINKS)) {
+            System.err.println("WARNING: Directory was not fully deleted: " + directoryToBeDeleted);
+        } else {
+            System.out.println("Successfully cleared directory: " + directoryToBeDeleted);
+        }
+        return result;
     }
 }
\ No newline at end of file
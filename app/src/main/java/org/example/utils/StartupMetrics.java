@@ -0,0 +1,75 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Measures how long the installer takes from process start to its first window, so the effect of
+ * class data sharing and of building windows lazily can be compared between runs.
+ * <p>
+ * Every measurement is printed and appended as one line to {@code ~/.swing-installer/startup.log},
+ * together with whether the JVM was started with the installer's AppCDS archive, as {@code runFast} does.
+ * Whether any class data sharing is on says nothing about that: every stock JDK maps its built-in default
+ * archive. The JVM's arguments are only looked at through {@code java.management} once the time has been
+ * taken, so loading that module does not count towards the measurement.
+ */
+public final class StartupMetrics {
+
+    // Fallback reference point if the OS does not report the process start time
+    private static final long CLASS_INIT_MILLIS = System.currentTimeMillis();
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * @return The milliseconds since the JVM process started, or since this class was loaded if the
+     *         start time of the process is unknown.
+     */
+    public static long millisSinceStart() {
+        long startMillis = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElse(CLASS_INIT_MILLIS);
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    /**
+     * @return Whether the JVM was started with an application class data sharing archive of its own, i.e. with
+     *         {@code -XX:SharedArchiveFile=} and without {@code -Xshare:off}. The JDK's default archive does not count.
+     */
+    public static boolean isAppCdsArchiveInUse() {
+        boolean archive = false;
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                archive = true;
+            } else if (argument.equals("-Xshare:off")) {
+                return false;
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Records that the first window is on screen. Call it once, when the window has opened.
+     * @return The time to first frame in milliseconds.
+     */
+    public static long recordFirstFrame() {
+        long millis = millisSinceStart();
+        String appCds = isAppCdsArchiveInUse() ? "on" : "off";
+        System.out.println("Time to first frame: " + millis + " ms (AppCDS archive " + appCds + ")");
+        Path logPath = InstallerPaths.stateDir().resolve("startup.log");
+        try {
+            Files.createDirectories(logPath.getParent());
+            Files.writeString(logPath, Instant.now() + " timeToFirstFrameMs=" + millis + " appCds=" + appCds + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // Only diagnostics, startup goes on
+            System.err.println("Could not record startup time: " + e.getMessage());
+        }
+        return millis;
+    }
+}
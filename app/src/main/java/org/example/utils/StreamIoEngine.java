@@ -0,0 +1,34 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Copies through a heap buffer with {@link InputStream#read(byte[])} and {@link OutputStream#write(byte[], int, int)},
+ * one write per read. This is how the installer has always copied, and the baseline for {@link NioIoEngine}.
+ */
+public class StreamIoEngine implements IoEngine {
+
+    @Override
+    public Copier newCopier(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1, got " + bufferSize);
+        }
+        byte[] buffer = new byte[bufferSize];
+        return (in, target, expectedSize, progress) -> {
+            long written = 0;
+            try (OutputStream out = Files.newOutputStream(target)) {
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    written += bytesRead;
+                    progress.addBytes(bytesRead);
+                }
+            }
+            return written;
+        };
+    }
+}
@@ -0,0 +1,300 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts a zip archive while it is still being downloaded, without ever writing the archive itself to disk.
+ * <p>
+ * The calling thread reads the network stream into fixed-size chunks and hands them to an extraction
+ * thread through a bounded queue, so network and disk I/O overlap and at most
+ * {@code QUEUE_CHUNKS * CHUNK_SIZE} bytes are buffered in memory. The extraction thread reads the
+ * local file headers in stream order with {@link ZipInputStream}.
+ * <p>
+ * Some archives can only be read correctly through their central directory at the end of the file,
+ * for example stored (uncompressed) entries whose sizes only follow the data in a data descriptor, or
+ * archives that contain the same entry more than once. For those a {@link StreamingNotSupportedException}
+ * is thrown and the caller should fall back to downloading the archive first.
+ */
+public class StreamingZipExtractor {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int QUEUE_CHUNKS = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Marks the end of the stream in the chunk queue
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    /**
+     * Thrown when an archive cannot be extracted in a single forward pass.
+     * Anything already extracted into the destination should be discarded.
+     */
+    public static class StreamingNotSupportedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public StreamingNotSupportedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Result of a streamed extraction.
+     * @param rootDirectoryName The detected root directory of the archive, or null.
+     * @param sha256 The SHA-256 of the archive bytes, computed as they streamed past.
+     * @param archiveBytes The size of the archive in bytes.
+     * @param fileEntries The file entries written, in archive order, with the CRC-32 and size read from the stream;
+     *                    for {@link InstallManifest#fromExtractedEntries}.
+     */
+    public record Result(String rootDirectoryName, String sha256, long archiveBytes, List<ZipEntry> fileEntries) {
+    }
+
+    /**
+     * Downloads the archive at {@code zipFileUrl} and extracts it into {@code destDir} as it arrives.
+     * @param zipFileUrl The URL of the zip file.
+     * @param destDir The directory to extract into. It should be empty.
+     * @param progress Tracks the downloaded bytes and the extracted entries.
+     * @return The extraction result.
+     * @throws StreamingNotSupportedException If the archive needs its central directory to be read.
+     * @throws IOException If the download or the extraction fails.
+     */
+    public Result extract(String zipFileUrl, Path destDir, ProgressTracker progress) throws IOException {
+        BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        ChunkInputStream chunkInput = new ChunkInputStream(chunks);
+        MessageDigest digest = Digests.newSha256();
+        long archiveBytes = 0;
+        List<ZipEntry> fileEntries = new ArrayList<>();
+
+        ExecutorService extractor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "zip-stream-extractor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<String> extraction = extractor.submit(
+                    () -> extractEntries(chunkInput, destDir, progress, new ArrayList<>(), fileEntries).rootDirectoryName());
+
+            try (HttpTransport.Response response = HttpTransport.bulk()
+                    .send(HttpTransport.get(HttpTransport.toUri(zipFileUrl)).build())) {
+                if (response.status() != 200) {
+                    throw new IOException("GET " + zipFileUrl + " returned HTTP " + response.status());
+                }
+                InputStream in = response.body();
+                boolean extractorDone = false;
+                while (true) {
+                    byte[] chunk = in.readNBytes(CHUNK_SIZE);
+                    if (chunk.length == 0) {
+                        break;
+                    }
+                    digest.update(chunk);
+                    archiveBytes += chunk.length;
+                    if (!extractorDone && !offer(chunks, chunk, extraction)) {
+                        extractorDone = true;
+                        if (extraction.state() == Future.State.FAILED) {
+                            // No point in downloading the rest, the caller will fall back or give up
+                            break;
+                        }
+                        // Otherwise the extractor reached the central directory; keep reading so the digest covers it
+                    }
+                    progress.addBytes(chunk.length);
+                }
+            } catch (IOException e) {
+                chunkInput.fail(e);
+                throw e;
+            } finally {
+                offer(chunks, END_OF_STREAM, extraction);
+            }
+
+            // Completing the future publishes the entries the extraction thread collected
+            String rootDirectoryName = awaitExtraction(extraction);
+            return new Result(rootDirectoryName, Digests.toHex(digest.digest()), archiveBytes, fileEntries);
+        } finally {
+            extractor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands a chunk to the extraction thread, waiting while the queue is full.
+     * @return {@code false} if the extraction thread has already finished and will not take more chunks.
+     */
+    private static boolean offer(BlockingQueue<byte[]> chunks, byte[] chunk, Future<String> extraction) throws IOException {
+        try {
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (extraction.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming download", e);
+        }
+    }
+
+    private static String awaitExtraction(Future<String> extraction) throws IOException {
+        try {
+            return extraction.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Streaming extraction failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for extraction", e);
+        }
+    }
+
+    /**
+     * Reads local entries in stream order and writes them out. Runs on the extraction thread, and for
+     * {@link ArchiveFormat#ZIP} on the caller's.
+     * @param archiveStream The zip stream, read up to the central directory.
+     * @param destDir The directory to extract into.
+     * @param progress Tracks the extracted entries.
+     * @param fileNames Collects the names of the files written.
+     * @return The detected root directory name and the names of the files written.
+     * @throws StreamingNotSupportedException If the archive needs its central directory to be read.
+     * @throws IOException If the extraction fails.
+     */
+    static ArchiveFormat.Result extractEntries(InputStream archiveStream, Path destDir, ProgressTracker progress,
+                                               List<String> fileNames) throws IOException {
+        return extractEntries(archiveStream, destDir, progress, fileNames, new ArrayList<>());
+    }
+
+    /**
+     * Like {@link #extractEntries(InputStream, Path, ProgressTracker, List)}, also collecting the file entries.
+     * @param fileEntries Collects the file entries written, once their data has been read and their CRC-32 and
+     *                    size are known.
+     */
+    private static ArchiveFormat.Result extractEntries(InputStream archiveStream, Path destDir, ProgressTracker progress,
+                                                       List<String> fileNames, List<ZipEntry> fileEntries) throws IOException {
+        String zipRootDirectoryName = null;
+        Set<String> seenEntries = new HashSet<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (ZipInputStream zipIn = new ZipInputStream(archiveStream)) {
+            ZipEntry entry;
+            while ((entry = nextEntry(zipIn)) != null) {
+                if (!seenEntries.add(entry.getName())) {
+                    // Only the central directory knows which copy of the entry is the real one
+                    throw new StreamingNotSupportedException("Archive contains entry more than once: " + entry.getName(), null);
+                }
+                Path entryDestPath = SoftwareInstaller.resolveEntryPath(destDir, entry.getName());
+                if (zipRootDirectoryName == null) {
+                    zipRootDirectoryName = SoftwareInstaller.detectRootDirectory(entry.getName());
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(entryDestPath);
+                } else {
+                    Files.createDirectories(entryDestPath.getParent());
+                    try (OutputStream fos = Files.newOutputStream(entryDestPath)) {
+                        int bytesRead;
+                        while ((bytesRead = read(zipIn, buffer)) != -1) {
+                            fos.write(buffer, 0, bytesRead);
+                        }
+                    }
+                    fileNames.add(entry.getName());
+                    fileEntries.add(entry);
+                }
+                progress.addEntries(1);
+            }
+        }
+        if (seenEntries.isEmpty()) {
+            // Not a zip we can read forwards (or not a zip at all); let the central directory path decide
+            throw new StreamingNotSupportedException("No local entries found in the archive stream", null);
+        }
+        return new ArchiveFormat.Result(zipRootDirectoryName, fileNames);
+    }
+
+    private static ZipEntry nextEntry(ZipInputStream zipIn) throws IOException {
+        try {
+            return zipIn.getNextEntry();
+        } catch (ZipException e) {
+            // e.g. "only DEFLATED entries can have EXT descriptor"
+            throw new StreamingNotSupportedException("Archive cannot be read as a stream: " + e.getMessage(), e);
+        }
+    }
+
+    private static int read(ZipInputStream zipIn, byte[] buffer) throws IOException {
+        try {
+            return zipIn.read(buffer);
+        } catch (ZipException e) {
+            throw new StreamingNotSupportedException("Archive cannot be read as a stream: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * An input stream over the chunks handed over by the download thread.
+     */
+    private static class ChunkInputStream extends InputStream {
+        private final BlockingQueue<byte[]> chunks;
+        private volatile IOException failure;
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean finished;
+
+        ChunkInputStream(BlockingQueue<byte[]> chunks) {
+            this.chunks = chunks;
+        }
+
+        /**
+         * Makes the reader fail with the download error instead of seeing a truncated archive.
+         */
+        void fail(IOException e) {
+            failure = e;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                if (finished) {
+                    return -1;
+                }
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for download data", e);
+                }
+                position = 0;
+                if (current == END_OF_STREAM) {
+                    finished = true;
+                    if (failure != null) {
+                        throw new IOException("Download failed: " + failure.getMessage(), failure);
+                    }
+                }
+            }
+            int count = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+}
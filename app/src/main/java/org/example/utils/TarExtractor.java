@@ -0,0 +1,139 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts an uncompressed tar stream with {@link TarReader}, writing each entry as it is read.
+ * <p>
+ * Entry names go through {@link SoftwareInstaller#resolveEntryPath} like zip entries, so nothing is
+ * written outside the destination. Links are created once all files are written, so they may point
+ * to entries later in the archive. They are created in archive order, and each one is checked just
+ * before with {@link SoftwareInstaller#resolveLinkTarget} against the real paths on disk, following the
+ * links created before it: comparing the link text alone would let {@code a -> .} followed by
+ * {@code a/b -> ../x} escape. Hard-link targets are resolved through existing links the same way.
+ * Where links cannot be created (e.g. on Windows without the privilege) the target is copied instead.
+ * Permission bits are applied on file systems that support them, so binaries stay executable.
+ */
+public class TarExtractor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private record PendingLink(Path path, boolean symbolic, String linkName) {
+    }
+
+    /**
+     * Extracts a tar stream into a directory.
+     * @param tarStream The uncompressed tar stream; it is read up to the end-of-archive marker.
+     * @param destDir The directory to extract into.
+     * @param progress Tracks the extracted entries.
+     * @return The detected root directory and the names of the files written.
+     * @throws IOException If the stream is not a valid tar archive, an entry would be written outside
+     *                     {@code destDir}, or a file cannot be written.
+     */
+    public ArchiveFormat.Result extract(InputStream tarStream, Path destDir, ProgressTracker progress) throws IOException {
+        TarReader reader = new TarReader(tarStream);
+        String rootDirectoryName = null;
+        List<String> fileNames = new ArrayList<>();
+        List<PendingLink> links = new ArrayList<>();
+        boolean posix = Files.getFileAttributeView(destDir, PosixFileAttributeView.class) != null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        TarReader.Entry entry;
+        while ((entry = reader.next()) != null) {
+            if (entry.name().isEmpty() || entry.name().equals(".") || entry.type() == TarReader.Type.OTHER) {
+                continue;
+            }
+            // Resolve the entry and reject anything that would land outside destDir
+            Path entryDestPath = SoftwareInstaller.resolveEntryPath(destDir, entry.name());
+            if (rootDirectoryName == null) {
+                rootDirectoryName = SoftwareInstaller.detectRootDirectory(entry.name());
+            }
+
+            switch (entry.type()) {
+                case DIRECTORY -> Files.createDirectories(entryDestPath);
+                case FILE -> {
+                    Files.createDirectories(entryDestPath.getParent());
+                    try (OutputStream out = Files.newOutputStream(entryDestPath)) {
+                        int bytesRead;
+                        while ((bytesRead = reader.read(buffer)) != -1) {
+                            out.write(buffer, 0, bytesRead);
+                        }
+                    }
+                    if (posix) {
+                        Files.setPosixFilePermissions(entryDestPath, permissions(entry.mode()));
+                    }
+                    fileNames.add(entry.name());
+                }
+                case SYMLINK, HARDLINK -> {
+                    // Checked when it is created, against the links that exist by then
+                    links.add(new PendingLink(entryDestPath, entry.type() == TarReader.Type.SYMLINK, entry.linkName()));
+                    fileNames.add(entry.name());
+                }
+                default -> {
+                }
+            }
+            progress.addEntries(1);
+        }
+
+        for (PendingLink link : links) {
+            createLink(destDir, link);
+        }
+        return new ArchiveFormat.Result(rootDirectoryName, fileNames);
+    }
+
+    private static void createLink(Path destDir, PendingLink link) throws IOException {
+        Files.createDirectories(link.path().getParent());
+        Path target;
+        try {
+            if (link.symbolic()) {
+                target = SoftwareInstaller.resolveLinkTarget(destDir, link.path(), link.linkName());
+            } else {
+                // The directory the link goes into must be inside too; its target is named from the archive root
+                SoftwareInstaller.resolveLinkTarget(destDir, link.path(), ".");
+                target = SoftwareInstaller.resolveRealPath(destDir, link.linkName());
+            }
+        } catch (IOException e) {
+            throw new IOException("Tar entry links outside of target directory: " + link.path() + " -> " + link.linkName(), e);
+        }
+        Files.deleteIfExists(link.path());
+        try {
+            if (link.symbolic()) {
+                // Keep the relative target as written, so the tree can be moved
+                Files.createSymbolicLink(link.path(), Path.of(link.linkName()));
+            } else {
+                Files.createLink(link.path(), target);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            if (!Files.isRegularFile(target)) {
+                throw new IOException("Cannot create link " + link.path() + " -> " + link.linkName() + ": " + e.getMessage(), e);
+            }
+            Files.copy(target, link.path(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static Set<PosixFilePermission> permissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        // PosixFilePermission is declared from OWNER_READ (0400) down to OTHERS_EXECUTE (0001)
+        PosixFilePermission[] bits = PosixFilePermission.values();
+        for (int i = 0; i < bits.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(bits[i]);
+            }
+        }
+        // Never lock ourselves out of a file we may have to replace later
+        permissions.add(PosixFilePermission.OWNER_READ);
+        permissions.add(PosixFilePermission.OWNER_WRITE);
+        return permissions;
+    }
+}
@@ -0,0 +1,305 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a tar stream entry by entry in a single forward pass, without seeking or buffering whole entries.
+ * <p>
+ * Understands the formats the common tools write: POSIX ustar (with its name prefix), GNU long names
+ * and long link names ({@code L}/{@code K} entries) and pax extended headers ({@code x}) for
+ * {@code path}, {@code linkpath} and {@code size}. Global pax headers are skipped. Sparse files and
+ * multi-volume archives are rejected. Decompression is the caller's business: wrap the stream first.
+ */
+public class TarReader {
+
+    private static final int BLOCK_SIZE = 512;
+
+    /** What an entry creates. */
+    public enum Type { FILE, DIRECTORY, SYMLINK, HARDLINK, OTHER }
+
+    /**
+     * A tar entry.
+     * @param name The path of the entry inside the archive, without a leading {@code ./}.
+     * @param type What the entry creates.
+     * @param size The size of the entry's data in bytes; 0 for anything but files.
+     * @param mode The Unix permission bits.
+     * @param linkName The target of a symbolic or hard link, otherwise null.
+     */
+    public record Entry(String name, Type type, long size, int mode, String linkName) {
+    }
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    // Bytes of the current entry's data not read yet, and the padding after them
+    private long remaining;
+    private long padding;
+    private boolean finished;
+
+    /**
+     * @param in The uncompressed tar stream. It is not closed by the reader.
+     */
+    public TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Moves to the next entry, skipping whatever is left of the current one.
+     * @return The next entry, or null at the end of the archive.
+     * @throws IOException If the stream cannot be read or is not a valid tar archive.
+     */
+    public Entry next() throws IOException {
+        String longName = null;
+        String longLinkName = null;
+        long paxSize = -1;
+        while (true) {
+            skipRest();
+            if (finished || !readHeader()) {
+                finished = true;
+                return null;
+            }
+            char typeFlag = (char) header[156];
+            long size = parseNumber(124, 12);
+            String linkName = parseString(157, 100);
+            String name = parseString(0, 100);
+            if (isUstar()) {
+                String prefix = parseString(345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            startData(size);
+
+            switch (typeFlag) {
+                case 'L' -> {
+                    longName = readDataAsString();
+                    continue;
+                }
+                case 'K' -> {
+                    longLinkName = readDataAsString();
+                    continue;
+                }
+                case 'x' -> {
+                    PaxHeaders pax = parsePax(readDataAsString());
+                    longName = pax.path() != null ? pax.path() : longName;
+                    longLinkName = pax.linkPath() != null ? pax.linkPath() : longLinkName;
+                    paxSize = pax.size() >= 0 ? pax.size() : paxSize;
+                    continue;
+                }
+                case 'g' -> {
+                    // Global defaults, e.g. the commit id git archive writes; nothing we need
+                    continue;
+                }
+                case 'S', 'M', 'V' -> throw new IOException("Unsupported tar entry type '" + typeFlag + "' for " + name);
+                default -> {
+                }
+            }
+
+            if (longName != null) {
+                name = longName;
+            }
+            if (longLinkName != null) {
+                linkName = longLinkName;
+            }
+            if (paxSize >= 0) {
+                // The header's size field overflowed; the data follows with the pax size
+                startData(paxSize);
+                size = paxSize;
+            }
+            Type type = switch (typeFlag) {
+                case '0', '\0', '7' -> name.endsWith("/") ? Type.DIRECTORY : Type.FILE;
+                case '5' -> Type.DIRECTORY;
+                case '2' -> Type.SYMLINK;
+                case '1' -> Type.HARDLINK;
+                default -> Type.OTHER;
+            };
+            return new Entry(normalizeName(name), type, type == Type.FILE ? size : 0, (int) parseNumber(100, 8),
+                    type == Type.SYMLINK ? linkName : type == Type.HARDLINK ? normalizeName(linkName) : null);
+        }
+    }
+
+    /**
+     * Reads data of the current entry.
+     * @param buffer Where to put the data.
+     * @return The number of bytes read, or -1 at the end of the entry.
+     * @throws IOException If the stream cannot be read or ends inside the entry.
+     */
+    public int read(byte[] buffer) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0) {
+            throw new IOException("Tar archive ends inside an entry");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    private void startData(long size) {
+        remaining = size;
+        padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private void skipRest() throws IOException {
+        long toSkip = remaining + padding;
+        remaining = 0;
+        padding = 0;
+        while (toSkip > 0) {
+            long skipped = in.skip(toSkip);
+            if (skipped <= 0) {
+                // skip() may do nothing on some streams; read() tells end of stream apart
+                if (in.read() < 0) {
+                    throw new IOException("Tar archive ends inside an entry");
+                }
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+    }
+
+    /**
+     * Reads the next header block.
+     * @return {@code false} at the end-of-archive marker or the end of the stream.
+     */
+    private boolean readHeader() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new IOException("Tar archive ends inside a header");
+        }
+        if (isZeroBlock()) {
+            // The archive ends with two zero blocks; some writers only emit one
+            return false;
+        }
+        long expected = parseNumber(148, 8);
+        long actual = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            // The checksum field itself counts as spaces
+            actual += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+        if (actual != expected) {
+            throw new IOException("Not a tar archive, or a corrupted header (checksum mismatch)");
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isUstar() {
+        // POSIX writes "ustar\0"; old GNU tar writes "ustar " and uses the prefix field for other data
+        return header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+                && header[261] == 'r' && header[262] == 0;
+    }
+
+    private String readDataAsString() throws IOException {
+        if (remaining > 1024 * 1024) {
+            throw new IOException("Tar extended header too large: " + remaining + " bytes");
+        }
+        byte[] data = in.readNBytes((int) remaining);
+        if (data.length < remaining) {
+            throw new IOException("Tar archive ends inside an entry");
+        }
+        remaining = 0;
+        int length = data.length;
+        while (length > 0 && data[length - 1] == 0) {
+            length--;
+        }
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private record PaxHeaders(String path, String linkPath, long size) {
+    }
+
+    private static PaxHeaders parsePax(String records) throws IOException {
+        String path = null;
+        String linkPath = null;
+        long size = -1;
+        byte[] bytes = records.getBytes(StandardCharsets.UTF_8);
+        int position = 0;
+        // Each record is "<length> <key>=<value>\n", where the length counts the whole record in bytes
+        while (position < bytes.length) {
+            int space = position;
+            while (space < bytes.length && bytes[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(bytes, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed pax header", e);
+            }
+            if (length <= space - position || position + length > bytes.length) {
+                throw new IOException("Malformed pax header");
+            }
+            String record = new String(bytes, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                String key = record.substring(0, equals);
+                String value = record.substring(equals + 1);
+                switch (key) {
+                    case "path" -> path = value;
+                    case "linkpath" -> linkPath = value;
+                    case "size" -> size = Long.parseLong(value);
+                    default -> {
+                    }
+                }
+            }
+            position += length;
+        }
+        return new PaxHeaders(path, linkPath, size);
+    }
+
+    private String parseString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            // GNU base-256 for values that do not fit in octal
+            long value = header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        boolean digits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || (b == ' ' && digits)) {
+                break;
+            }
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Not a tar archive, or a corrupted header (bad number)");
+            }
+            value = (value << 3) + (b - '0');
+            digits = true;
+        }
+        return value;
+    }
+
+    private static String normalizeName(String name) {
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,425 @@
+package org.example.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only index of a zip archive that is memory-mapped as a whole.
+ * <p>
+ * Opening the index locates the end of central directory record (including the ZIP64 variants for
+ * archives over 4 GiB or with more than 65535 entries) and walks the central directory once, straight
+ * from the mapping. What is kept per entry is a handful of primitive array slots: the offset of its
+ * name inside the mapped central directory, method, CRC-32, sizes and the offset of its local header.
+ * No {@link ZipEntry} or {@link String} is created until asked for, so even archives with hundreds of
+ * thousands of entries index in a few milliseconds and a few megabytes.
+ * <p>
+ * Entry data is served as slices of the mapping: stored entries can be written to disk straight from
+ * the page cache, and deflated ones can be inflated from the mapping without copying the compressed
+ * bytes first (see {@link IndexedZipExtractor}).
+ * <p>
+ * The mapping lives in a shared {@link Arena} and is unmapped by {@link #close()} rather than at some
+ * later garbage collection, so the archive can be deleted or replaced right after extraction, which
+ * matters on Windows. Slices must not be used after the index is closed. All read methods are safe to
+ * call from several threads; threads that inflate entries map the archive into their own arena
+ * (see {@link #map(Arena)}).
+ */
+public final class ZipIndex implements Closeable {
+
+    /** Compression method of entries stored without compression. */
+    public static final int STORED = ZipEntry.STORED;
+    /** Compression method of deflated entries. */
+    public static final int DEFLATED = ZipEntry.DEFLATED;
+
+    private static final ValueLayout.OfShort U16 = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt U32 = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong U64 = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long U32_MAX = 0xFFFFFFFFL;
+    // General purpose flag bit 0
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private final Path zipFilePath;
+    private final Arena arena;
+    private final MemorySegment archive;
+    private final int count;
+    // Per entry; name offsets are relative to the start of the archive mapping
+    private final long[] nameOffsets;
+    private final int[] nameLengths;
+    private final int[] methods;
+    private final int[] flags;
+    private final int[] crcs;
+    private final long[] compressedSizes;
+    private final long[] sizes;
+    private final long[] localHeaderOffsets;
+
+    private ZipIndex(Path zipFilePath, Arena arena, MemorySegment archive, int count) {
+        this.zipFilePath = zipFilePath;
+        this.arena = arena;
+        this.archive = archive;
+        this.count = count;
+        nameOffsets = new long[count];
+        nameLengths = new int[count];
+        methods = new int[count];
+        flags = new int[count];
+        crcs = new int[count];
+        compressedSizes = new long[count];
+        sizes = new long[count];
+        localHeaderOffsets = new long[count];
+    }
+
+    /**
+     * Maps an archive and indexes its central directory.
+     * Data in front of the archive, like the launcher of a self-extracting file, is allowed.
+     * @param zipFilePath The archive.
+     * @return The index; close it to unmap the archive.
+     * @throws ZipException If the file is not a zip archive or its central directory is damaged.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static ZipIndex open(Path zipFilePath) throws IOException {
+        Arena arena = Arena.ofShared();
+        try {
+            MemorySegment archive;
+            try (FileChannel channel = FileChannel.open(zipFilePath, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            }
+            return index(arena, archive, zipFilePath);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private static ZipIndex index(Arena arena, MemorySegment archive, Path zipFilePath) throws IOException {
+        long endOffset = findEnd(archive);
+        if (endOffset < 0) {
+            throw new ZipException("Not a zip archive: " + zipFilePath);
+        }
+        long entryCount = Short.toUnsignedLong(archive.get(U16, endOffset + 10));
+        long directorySize = Integer.toUnsignedLong(archive.get(U32, endOffset + 12));
+        long directoryOffset = Integer.toUnsignedLong(archive.get(U32, endOffset + 16));
+        // Where the central directory is expected to end; the end records follow it directly
+        long directoryEnd = endOffset;
+
+        long locatorOffset = endOffset - ZIP64_LOCATOR_SIZE;
+        if (locatorOffset >= 0 && archive.get(U32, locatorOffset) == ZIP64_LOCATOR_SIGNATURE) {
+            // The recorded offset is wrong when data was prepended, but the record normally sits right before the locator
+            long zip64EndOffset = locatorOffset - ZIP64_END_SIZE;
+            if (zip64EndOffset < 0 || archive.get(U32, zip64EndOffset) != ZIP64_END_SIGNATURE) {
+                zip64EndOffset = archive.get(U64, locatorOffset + 8);
+            }
+            if (zip64EndOffset < 0 || zip64EndOffset > locatorOffset - ZIP64_END_SIZE
+                    || archive.get(U32, zip64EndOffset) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("Damaged ZIP64 end of central directory: " + zipFilePath);
+            }
+            entryCount = archive.get(U64, zip64EndOffset + 32);
+            directorySize = archive.get(U64, zip64EndOffset + 40);
+            directoryOffset = archive.get(U64, zip64EndOffset + 48);
+            directoryEnd = zip64EndOffset;
+        }
+
+        long directoryStart = directoryEnd - directorySize;
+        // Non-zero if something was prepended to the archive; recorded offsets are relative to the archive start
+        long prefixLength = directoryStart - directoryOffset;
+        if (directorySize < 0 || directoryStart < 0 || prefixLength < 0 || entryCount < 0
+                || entryCount > directorySize / CENTRAL_HEADER_SIZE || entryCount > Integer.MAX_VALUE) {
+            throw new ZipException("Damaged end of central directory: " + zipFilePath);
+        }
+
+        ZipIndex index = new ZipIndex(zipFilePath, arena, archive, (int) entryCount);
+        long position = directoryStart;
+        for (int i = 0; i < index.count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directoryEnd || archive.get(U32, position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Damaged central directory header " + i + ": " + zipFilePath);
+            }
+            int nameLength = Short.toUnsignedInt(archive.get(U16, position + 28));
+            int extraLength = Short.toUnsignedInt(archive.get(U16, position + 30));
+            int commentLength = Short.toUnsignedInt(archive.get(U16, position + 32));
+            long next = position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            if (next > directoryEnd) {
+                throw new ZipException("Damaged central directory header " + i + ": " + zipFilePath);
+            }
+            index.flags[i] = Short.toUnsignedInt(archive.get(U16, position + 8));
+            index.methods[i] = Short.toUnsignedInt(archive.get(U16, position + 10));
+            index.crcs[i] = archive.get(U32, position + 16);
+            index.nameOffsets[i] = position + CENTRAL_HEADER_SIZE;
+            index.nameLengths[i] = nameLength;
+
+            long compressedSize = Integer.toUnsignedLong(archive.get(U32, position + 20));
+            long size = Integer.toUnsignedLong(archive.get(U32, position + 24));
+            long localHeaderOffset = Integer.toUnsignedLong(archive.get(U32, position + 42));
+            if (compressedSize == U32_MAX || size == U32_MAX || localHeaderOffset == U32_MAX) {
+                // The real values are in the ZIP64 extra field, in this order, but only those that overflowed
+                long field = findExtraField(archive, position + CENTRAL_HEADER_SIZE + nameLength, extraLength, ZIP64_EXTRA_ID);
+                int needed = (size == U32_MAX ? 8 : 0) + (compressedSize == U32_MAX ? 8 : 0)
+                        + (localHeaderOffset == U32_MAX ? 8 : 0);
+                if (field < 0 || Short.toUnsignedInt(archive.get(U16, field + 2)) < needed) {
+                    throw new ZipException("Missing ZIP64 sizes of entry " + index.getName(i) + ": " + zipFilePath);
+                }
+                long value = field + 4;
+                if (size == U32_MAX) {
+                    size = archive.get(U64, value);
+                    value += 8;
+                }
+                if (compressedSize == U32_MAX) {
+                    compressedSize = archive.get(U64, value);
+                    value += 8;
+                }
+                if (localHeaderOffset == U32_MAX) {
+                    localHeaderOffset = archive.get(U64, value);
+                }
+            }
+            index.compressedSizes[i] = compressedSize;
+            index.sizes[i] = size;
+            index.localHeaderOffsets[i] = localHeaderOffset + prefixLength;
+            if (index.localHeaderOffsets[i] < 0 || index.localHeaderOffsets[i] + LOCAL_HEADER_SIZE > directoryStart) {
+                throw new ZipException("Entry " + index.getName(i) + " points outside the archive: " + zipFilePath);
+            }
+            position = next;
+        }
+        return index;
+    }
+
+    /**
+     * Scans backwards over the space a trailing comment may take for the end of central directory record.
+     * @return The offset of the record, or -1 if there is none.
+     */
+    private static long findEnd(MemorySegment archive) {
+        long lowest = Math.max(0, archive.byteSize() - END_SIZE - MAX_COMMENT_SIZE);
+        for (long offset = archive.byteSize() - END_SIZE; offset >= lowest; offset--) {
+            if (archive.get(U32, offset) == END_SIGNATURE) {
+                int commentLength = Short.toUnsignedInt(archive.get(U16, offset + 20));
+                if (offset + END_SIZE + commentLength <= archive.byteSize()) {
+                    return offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The offset of the header of the extra field with the given id, or -1 if there is none.
+     */
+    private static long findExtraField(MemorySegment archive, long start, int length, int id) {
+        long position = start;
+        long end = start + length;
+        while (position + 4 <= end) {
+            int fieldId = Short.toUnsignedInt(archive.get(U16, position));
+            int fieldLength = Short.toUnsignedInt(archive.get(U16, position + 2));
+            if (fieldId == id) {
+                return position + 4 + fieldLength <= end ? position : -1;
+            }
+            position += 4 + fieldLength;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of entries, in central directory order.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param index The entry index.
+     * @return The entry name. Names are decoded as UTF-8, like {@link java.util.zip.ZipFile} does by default.
+     */
+    public String getName(int index) {
+        byte[] name = archive.asSlice(nameOffsets[index], nameLengths[index]).toArray(ValueLayout.JAVA_BYTE);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param index The entry index.
+     * @return Whether the entry is a directory, i.e. its name ends with a slash.
+     */
+    public boolean isDirectory(int index) {
+        return nameLengths[index] > 0
+                && archive.get(ValueLayout.JAVA_BYTE, nameOffsets[index] + nameLengths[index] - 1) == '/';
+    }
+
+    /**
+     * @param index The entry index.
+     * @return The compression method, e.g. {@link #STORED} or {@link #DEFLATED}.
+     */
+    public int getMethod(int index) {
+        return methods[index];
+    }
+
+    /**
+     * @param index The entry index.
+     * @return The CRC-32 of the uncompressed data.
+     */
+    public long getCrc(int index) {
+        return Integer.toUnsignedLong(crcs[index]);
+    }
+
+    /**
+     * @param index The entry index.
+     * @return The uncompressed size in bytes.
+     */
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @param index The entry index.
+     * @return The compressed size in bytes.
+     */
+    public long getCompressedSize(int index) {
+        return compressedSizes[index];
+    }
+
+    /**
+     * @param index The entry index.
+     * @return A {@link ZipEntry} with the name, method, CRC-32 and sizes of the entry, for code written
+     *         against {@link java.util.zip.ZipFile}, like {@link InstallManifest}.
+     */
+    public ZipEntry toZipEntry(int index) {
+        ZipEntry entry = new ZipEntry(getName(index));
+        entry.setMethod(methods[index]);
+        entry.setCrc(getCrc(index));
+        entry.setSize(sizes[index]);
+        entry.setCompressedSize(compressedSizes[index]);
+        return entry;
+    }
+
+    /**
+     * Returns the compressed data of an entry as a slice of the mapping. For {@link #STORED} entries
+     * this is the content itself, without any copy.
+     * @param index The entry index.
+     * @return The slice; valid until the index is closed.
+     * @throws ZipException If the local header of the entry is damaged or the entry is encrypted.
+     */
+    public MemorySegment getData(int index) throws ZipException {
+        return getData(index, archive);
+    }
+
+    /**
+     * Returns the compressed data of an entry as a slice of a mapping made with {@link #map(Arena)}.
+     * @param index The entry index.
+     * @param mapping A mapping of the whole archive.
+     * @return The slice; valid as long as the mapping is.
+     * @throws ZipException If the local header of the entry is damaged or the entry is encrypted.
+     */
+    public MemorySegment getData(int index, MemorySegment mapping) throws ZipException {
+        if ((flags[index] & FLAG_ENCRYPTED) != 0) {
+            throw new ZipException("Encrypted entries are not supported: " + getName(index));
+        }
+        long localHeaderOffset = localHeaderOffsets[index];
+        if (archive.get(U32, localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Damaged local header of entry " + getName(index));
+        }
+        // The local name and extra field may differ from the central directory, only their lengths matter here
+        long dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(archive.get(U16, localHeaderOffset + 26))
+                + Short.toUnsignedInt(archive.get(U16, localHeaderOffset + 28));
+        if (compressedSizes[index] < 0 || dataOffset + compressedSizes[index] > archive.byteSize()) {
+            throw new ZipException("Data of entry " + getName(index) + " runs past the end of the archive");
+        }
+        return mapping.asSlice(dataOffset, compressedSizes[index]);
+    }
+
+    /**
+     * Maps the archive once more, into an arena of the caller's choice. The index's own mapping is shared
+     * between threads, and the JDK's {@link java.util.zip.Inflater} and {@link java.util.zip.CRC32} do not
+     * accept buffers of shared mappings, so threads that inflate map the archive into a confined arena
+     * of their own.
+     * @param mappingArena The arena that owns the new mapping.
+     * @return A mapping of the whole archive, for {@link #getData(int, MemorySegment)}.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public MemorySegment map(Arena mappingArena) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFilePath, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, archive.byteSize(), mappingArena);
+        }
+    }
+
+    /**
+     * Detects the root directory from all entries instead of guessing it from the first one.
+     * @return The first path part shared by every entry, if it is a directory, or null if the entries
+     *         do not share a single root directory.
+     */
+    public String getRootDirectory() {
+        String root = null;
+        for (int i = 0; i < count; i++) {
+            String name = getName(i).replace('\\', '/');
+            // Leading slashes are skipped, as with the first-entry heuristic
+            int start = 0;
+            while (start < name.length() && name.charAt(start) == '/') {
+                start++;
+            }
+            int end = name.indexOf('/', start);
+            if (end < 0) {
+                // A file (or nothing) at the top level, so there is no single root directory
+                return null;
+            }
+            String part = name.substring(start, end);
+            if (part.isEmpty() || (root != null && !root.equals(part))) {
+                return null;
+            }
+            root = part;
+        }
+        return root;
+    }
+
+    /**
+     * Selects the entries at or below the given paths, for extracting part of an archive.
+     * @param paths Entry names relative to the archive root, e.g. {@code node-v20/bin} or
+     *              {@code node-v20/README.md}. A trailing slash is optional.
+     * @return The indexes of the matching entries, in central directory order.
+     */
+    public int[] select(Collection<String> paths) {
+        String[] prefixes = paths.stream()
+                .map(path -> path.replace('\\', '/'))
+                .map(path -> path.endsWith("/") ? path.substring(0, path.length() - 1) : path)
+                .toArray(String[]::new);
+        int[] selected = new int[count];
+        int selectedCount = 0;
+        for (int i = 0; i < count; i++) {
+            String name = getName(i).replace('\\', '/');
+            for (String prefix : prefixes) {
+                if (name.startsWith(prefix)
+                        && (name.length() == prefix.length() || name.charAt(prefix.length()) == '/')) {
+                    selected[selectedCount++] = i;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * Unmaps the archive. Slices returned by {@link #getData(int)} become invalid; mappings made with
+     * {@link #map(Arena)} belong to their own arenas.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -1,67 +1,354 @@
 package org.example.windows;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.example.components.LogArea;
 import org.example.utils.*;
-import java.io.File;
 
 import javax.swing.*;
 
 public class Console {
+    // How many install steps (downloads, commands) may run at the same time
+    private static final int MAX_PARALLEL_STEPS = 2;
+
+    // The packages of the installation; a FAT installer bundles exactly these
+    // The official Node.js distribution. Mirrors with the same layout are opt-in, as base URLs separated by
+    // spaces, e.g. -Dinstaller.nodeMirrors=https://npmmirror.com/mirrors/node/; the fastest one serves the download
+    private static final String NODE_VERSION = "v22.16.0";
+    private static final List<String> NODE_URLS = nodeUrls(System.getProperty("installer.nodeMirrors", ""));
+    // Node publishes the SHA-256 of every file of a release; the archive is checked against it while it downloads,
+    // whichever mirror it comes from
+    private static final ExpectedChecksum NODE_CHECKSUM =
+            ExpectedChecksum.fromChecksumFile("https://nodejs.org/dist/" + NODE_VERSION + "/SHASUMS256.txt");
+    private static final String LAUNCHER_URL = "https://github.com/StoppedwummPython/minecraft-launcher/archive/main.zip";
+    private static final FatBundle.Root NODE = new FatBundle.Root("Node", "", false);
+    private static final FatBundle.Root LAUNCHER = new FatBundle.Root("Minecraft", "", true);
+
+    /**
+     * Installs the launcher's npm dependencies. Restored from the node_modules cache instead when
+     * the same package-lock.json was installed before with the same Node.js version.
+     */
+    public static final String[] INSTALL_DEPENDENCIES_COMMAND = {"powershell.exe", "npm", "i"};
+
+    /**
+     * Starts the launcher once everything is installed.
+     */
+    public static final String[] LAUNCH_COMMAND = {"powershell.exe", "npm", "run", "start"};
+
     public static void createWindow(String[][] commands) {
-        JFrame frame = new JFrame("Console");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(500, 500);
+        createWindow(commands, null, () -> {});
+    }
+
+    /**
+     * Shows the console window and runs the installation and the commands on a worker thread.
+     * Must be called on the event dispatch thread.
+     *
+     * @param commands The commands to run after the packages are installed, in order.
+     * @param progressListener Receives the download and extraction progress of the packages, or null.
+     * @param onFinished Runs on the event dispatch thread once everything has finished.
+     */
+    public static void createWindow(String[][] commands, InstallProgressListener progressListener, Runnable onFinished) {
+        createWindow(commands, progressListener, onFinished, null);
+    }
 
-        JTextArea textArea = new JTextArea();
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
+    /**
+     * Shows the console window and runs the installation and the commands on a worker thread,
+     * so the Swing event thread stays free to repaint while downloads and npm run.
+     * If this is a FAT installer, the packages come from its offline bundle instead of the network.
+     * Must be called on the event dispatch thread.
+     *
+     * @param commands The commands to run after the packages are installed, in order.
+     * @param progressListener Receives the download and extraction progress of the packages, or null.
+     * @param onFinished Runs on the event dispatch thread once everything has finished.
+     * @param fatInstallerOutput Where to write a FAT installer once the commands have run, or null for none.
+     */
+    public static void createWindow(String[][] commands, InstallProgressListener progressListener, Runnable onFinished,
+                                    Path fatInstallerOutput) {
+        createWindow(commands, progressListener, onFinished, fatInstallerOutput, false);
+    }
 
-        frame.add(scrollPane);
+    /**
+     * Shows the console window and runs the commands on a worker thread, installing the packages first.
+     * With {@code skipIfProvisioned}, the worker first checks the install state recorded by the last completed
+     * installation; if nothing changed since, it neither installs the packages nor runs
+     * {@link #INSTALL_DEPENDENCIES_COMMAND}, and only the remaining commands (normally the launcher) run.
+     * Must be called on the event dispatch thread.
+     *
+     * @param commands The commands to run after the packages are installed, in order.
+     * @param progressListener Receives the download and extraction progress of the packages, or null.
+     * @param onFinished Runs on the event dispatch thread once everything has finished.
+     * @param fatInstallerOutput Where to write a FAT installer once the commands have run, or null for none.
+     * @param skipIfProvisioned Whether to skip the installation when {@link #isProvisioned()} says it is in place.
+     */
+    public static void createWindow(String[][] commands, InstallProgressListener progressListener, Runnable onFinished,
+                                    Path fatInstallerOutput, boolean skipIfProvisioned) {
+        LogArea log = new LogArea();
 
-        frame.setVisible(true);
+        // The work starts first; the window is built on a later event, so the caller's windows show
+        // without waiting for it and lines logged in the meantime appear once it is up
+        Thread worker = new Thread(() -> {
+            try {
+                // Reads the disk, so it belongs here and not on the event dispatch thread
+                boolean installPackages = !skipIfProvisioned || !isProvisioned();
+                String[][] planned = installPackages ? commands : Arrays.stream(commands)
+                        .filter(command -> !Arrays.equals(command, INSTALL_DEPENDENCIES_COMMAND))
+                        .toArray(String[][]::new);
+                runInstallation(planned, progressListener, log, fatInstallerOutput, installPackages);
+            } finally {
+                log.stop();
+                SwingUtilities.invokeLater(onFinished);
+            }
+        }, "console-worker");
+        worker.start();
 
-        SoftwareInstaller softwareInstaller = new SoftwareInstaller();
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Console");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setSize(500, 500);
+            frame.add(log.getPanel());
+            frame.setVisible(true);
+        });
+    }
+
+    /**
+     * Checks the install state recorded by the last completed installation against the machine as it is now.
+     * This reads the install markers and manifests, stats every file the packages installed and hashes the
+     * npm lockfiles, and then asks GitHub whether the launcher archive changed, since it is not pinned to a
+     * checksum. That takes noticeable time on large installs, slow disks or slow networks. Call it from a
+     * worker thread, never from the event dispatch thread.
+     *
+     * @return Whether the packages and node_modules are exactly as recorded, so only the launcher needs to start.
+     */
+    public static boolean isProvisioned() {
+        InstallState recorded = InstallState.load();
+        if (recorded == null) {
+            System.out.println("No install state recorded, installing.");
+            return false;
+        }
         try {
-            softwareInstaller.installSoftware("https://nodejs.org/dist/v22.16.0/node-v22.16.0-win-x64.zip", "Node", "", false);
-            softwareInstaller.installSoftware("https://github.com/StoppedwummPython/minecraft-launcher/archive/main.zip", "Minecraft", "", true);
-        }  catch (Exception e) {
-            e.printStackTrace();
-            textArea.append("Error installing software: " + e.getMessage() + "\n");
+            String difference = recorded.differenceFrom(InstallState.capture(packageUrls(), projectDir()));
+            if (difference == null) {
+                // The launcher archive moves with its branch, only its server can tell whether it changed
+                difference = recorded.remoteDifference(new DownloadCache(), Set.of(NODE.appName()));
+            }
+            if (difference != null) {
+                System.out.println("Install state changed (" + difference + "), installing.");
+                return false;
+            }
+            System.out.println("Install state unchanged, skipping installation.");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not check install state: " + e.getMessage());
+            return false;
         }
+    }
 
-        for (String[] command : commands) {
-            try {
-                Runtime rt = Runtime.getRuntime();
-                System.out.println(System.getProperty("user.home"));
-                Process proc = rt.exec(command, null, new File(Paths.get(System.getProperty("user.home"), "Minecraft", "minecraft-launcher-main").toAbsolutePath().toString()));
+    // The official download URL first, then the configured mirrors
+    private static List<String> nodeUrls(String mirrors) {
+        String file = NODE_VERSION + "/node-" + NODE_VERSION + "-win-x64.zip";
+        List<String> urls = new ArrayList<>();
+        urls.add("https://nodejs.org/dist/" + file);
+        for (String base : mirrors.trim().split("\\s+")) {
+            if (!base.isEmpty()) {
+                urls.add(base.endsWith("/") ? base + file : base + "/" + file);
+            }
+        }
+        return List.copyOf(urls);
+    }
 
-                BufferedReader stdInput = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+    // The URL each package is recorded with, by app name, in install order
+    private static Map<String, String> packageUrls() {
+        Map<String, String> urls = new LinkedHashMap<>();
+        urls.put(NODE.appName(), NODE_URLS.get(0));
+        urls.put(LAUNCHER.appName(), LAUNCHER_URL);
+        return urls;
+    }
 
-                BufferedReader stdError = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
+    // The npm project the commands run in
+    private static Path projectDir() {
+        return InstallerPaths.userHome().resolve("Minecraft").resolve("minecraft-launcher-main").toAbsolutePath();
+    }
 
-                // Read the output from the command
-                System.out.println("Here is the standard output of the command:\n");
-                String s = null;
-                while ((s = stdInput.readLine()) != null) {
-                    System.out.println(s);
-                    textArea.append(s + "\n"); // Append output to the text area
+    private static void runInstallation(String[][] commands, InstallProgressListener progressListener, LogArea log,
+                                        Path fatInstallerOutput, boolean installPackages) {
+        InstallTelemetry telemetry = new InstallTelemetry();
+        SoftwareInstaller softwareInstaller = new SoftwareInstaller();
+        softwareInstaller.setTelemetry(telemetry);
+        if (progressListener != null) {
+            softwareInstaller.addProgressListener(progressListener);
+        }
+        softwareInstaller.setDownloadConnections(4);
+        softwareInstaller.setMirrorStats(MirrorStats.load());
+        softwareInstaller.setExtractionThreads(Runtime.getRuntime().availableProcessors());
+        softwareInstaller.setIncrementalInstall(true);
+        softwareInstaller.setIoEngine(new NioIoEngine());
+        softwareInstaller.setIndexedExtraction(true);
+
+        InstallPlan plan = new InstallPlan();
+        String[] previous;
+        if (!installPackages) {
+            previous = new String[0];
+        } else if (FatBundle.isEmbedded()) {
+            // Everything comes out of the jar in a single pass, no network needed
+            plan.addStep("bundle", () -> {
+                try (FatBundle bundle = FatBundle.openEmbedded()) {
+                    softwareInstaller.installFromBundle(bundle);
                 }
+            });
+            previous = new String[] { "bundle" };
+        } else {
+            // The two packages do not depend on each other and download at the same time;
+            // the first command starts as soon as both are in place, the rest run in order.
+            plan.addPackage("node", softwareInstaller, NODE_URLS, NODE_CHECKSUM, NODE.appName(), NODE.relativeBinPath(), NODE.skipPath())
+                    .addPackage("launcher", softwareInstaller, LAUNCHER_URL, LAUNCHER.appName(), LAUNCHER.relativeBinPath(), LAUNCHER.skipPath());
+            previous = new String[] { "node", "launcher" };
+        }
+        if (installPackages) {
+            try {
+                // A state left by an earlier installation must not vouch for one that does not complete
+                InstallState.clear();
+            } catch (IOException e) {
+                System.err.println("Could not clear install state: " + e.getMessage());
+            }
+        }
+        boolean stateRecorded = !installPackages;
+        for (int i = 0; i < commands.length; i++) {
+            String[] command = commands[i];
+            String id = "command-" + (i + 1);
+            if (!stateRecorded && Arrays.equals(command, LAUNCH_COMMAND)) {
+                // The launcher runs until it is closed, so record the state once everything before it is done
+                plan.addStep("install-state", Console::recordInstallState, previous);
+                previous = new String[] { "install-state" };
+                stateRecorded = true;
+            }
+            if (Arrays.equals(command, INSTALL_DEPENDENCIES_COMMAND)) {
+                plan.addStep(id, () -> installDependencies(id, command, log, telemetry), previous);
+            } else {
+                plan.addStep(id, () -> runCommand(id, command, log, telemetry), previous);
+            }
+            previous = new String[] { id };
+        }
+        if (!stateRecorded) {
+            plan.addStep("install-state", Console::recordInstallState, previous);
+            previous = new String[] { "install-state" };
+        }
+        if (fatInstallerOutput != null) {
+            // After the commands, so the bundle contains the node_modules they resolved
+            plan.addStep("fat-installer", () -> {
+                softwareInstaller.createFatInstaller(fatInstallerOutput, List.of(NODE, LAUNCHER));
+                log.append("FAT installer written to " + fatInstallerOutput);
+            }, previous);
+        }
 
-                // Read any errors from the attempted command
-                while ((s = stdError.readLine()) != null) {
-                    System.out.println(s);
-                    textArea.append("Error: " + s + "\n"); // Append error to the text area
+        InstallScheduler.Report report = new InstallScheduler(MAX_PARALLEL_STEPS).run(plan);
+        report.print();
+        for (InstallScheduler.StepResult step : report.steps()) {
+            if (step.status() == InstallScheduler.Status.FAILED) {
+                log.append("Error in step " + step.id() + ": " + step.error().getMessage());
+            } else if (step.status() == InstallScheduler.Status.SKIPPED) {
+                log.append("Skipped step " + step.id() + " because a step it depends on failed.");
+            }
+        }
+        try {
+            Path reportFile = telemetry.writeReport(report);
+            System.out.println("Install report written to " + reportFile);
+        } catch (IOException e) {
+            // The report is only diagnostics, the installation itself is done
+            System.err.println("Could not write install report: " + e.getMessage());
+        }
+    }
+
+    private static void recordInstallState() throws IOException {
+        InstallState.capture(packageUrls(), projectDir()).save();
+        System.out.println("Install state recorded.");
+    }
+
+    private static void installDependencies(String id, String[] command, LogArea log, InstallTelemetry telemetry)
+            throws Exception {
+        Path projectDir = projectDir();
+        NodeModulesCache cache = new NodeModulesCache();
+        String key = NodeModulesCache.key(projectDir, NODE_VERSION);
+        if (key != null) {
+            long start = System.nanoTime();
+            try {
+                NodeModulesCache.TreeCopy restored = cache.restore(key, projectDir);
+                if (restored != null) {
+                    String summary = "Restored node_modules from cache: " + restored.files() + " files ("
+                            + restored.bytes() + " bytes) in " + (System.nanoTime() - start) / 1_000_000 + " ms";
+                    System.out.println(summary);
+                    log.append(summary);
+                    Map<String, Long> counters = new LinkedHashMap<>();
+                    counters.put("files", restored.files());
+                    counters.put("bytes", restored.bytes());
+                    telemetry.recordPhase(id, "restore", start, System.nanoTime(), 0, counters);
+                    return;
                 }
+            } catch (IOException e) {
+                // A broken snapshot only costs the time npm takes
+                System.err.println("Could not restore node_modules from cache: " + e.getMessage());
+            }
+        }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                textArea.append("Error executing command: " + e.getMessage() + "\n");
+        runCommand(id, command, log, telemetry);
+
+        // package-lock.json may only exist now that npm has written it
+        key = NodeModulesCache.key(projectDir, NODE_VERSION);
+        if (key != null) {
+            try {
+                NodeModulesCache.TreeCopy stored = cache.store(key, projectDir);
+                if (stored != null) {
+                    System.out.println("Stored node_modules in cache: " + stored.files() + " files ("
+                            + stored.bytes() + " bytes)");
+                }
+            } catch (IOException e) {
+                // The dependencies are installed; the next install just cannot reuse them
+                System.err.println("Could not store node_modules in cache: " + e.getMessage());
             }
         }
+    }
+
+    private static void runCommand(String id, String[] command, LogArea log, InstallTelemetry telemetry) throws Exception {
+        System.out.println(System.getProperty("user.home"));
+        Path workingDir = Paths.get(System.getProperty("user.home"), "Minecraft", "minecraft-launcher-main").toAbsolutePath();
+
+        long start = System.nanoTime();
+        // Only touched by the listener, whose calls are never concurrent
+        long[] outputLines = new long[1];
+        long[] outputChars = new long[1];
+        // stdout and stderr are read at the same time, so errors show up when they happen
+        ProcessRunner.Result result = new ProcessRunner().run(Arrays.asList(command), workingDir, event -> {
+            outputLines[0]++;
+            outputChars[0] += event.line().length();
+            System.out.println(event.line());
+            if (event.source() == ProcessRunner.Source.STDERR) {
+                log.append("Error: " + event.line()); // Append error to the log
+            } else {
+                log.append(event.line()); // Append output to the log
+            }
+        });
+
+        String summary = String.join(" ", command) + " exited with code " + result.exitCode() + " after "
+                + result.wallTimeMs() + " ms (first output after " + result.firstOutputMs() + " ms)";
+        System.out.println(summary);
+        log.append(summary);
 
-        
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("exitCode", (long) result.exitCode());
+        counters.put("firstOutputMs", result.firstOutputMs());
+        counters.put("outputLines", outputLines[0]);
+        counters.put("outputChars", outputChars[0]);
+        counters.put("timedOut", result.timedOut() ? 1L : 0L);
+        telemetry.recordPhase(id, "command", start, System.nanoTime(), 0, counters);
+        if (result.exitCode() != 0) {
+            throw new IOException(summary);
+        }
     }
 }
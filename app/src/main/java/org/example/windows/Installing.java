@@ -1,10 +1,38 @@
 package org.example.windows;
 
+import java.awt.GridLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import org.example.utils.InstallProgressListener;
 
-public class Installing {
+/**
+ * Window showing the progress of the running installation, one progress bar per package.
+ * <p>
+ * It is an {@link InstallProgressListener}: installer threads only store the latest values of each
+ * package and schedule a single repaint on the event dispatch thread if none is pending, so fast
+ * updates from several packages cost at most one {@code invokeLater} per repaint.
+ */
+public class Installing implements InstallProgressListener {
     private JFrame frame;
+    private JPanel rowsPanel;
+    private JLabel statusLabel;
+
+    // Latest state per package, written by installer threads and read on the event dispatch thread
+    private final Map<String, PackageState> states = new ConcurrentHashMap<>();
+    // Only touched on the event dispatch thread
+    private final Map<String, PackageRow> rows = new LinkedHashMap<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
     public Installing() {}
     public void createWindow() {
         // Create a new window for the installation process
@@ -12,8 +40,11 @@ public class Installing {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(400, 200);
         frame.setLocationRelativeTo(null); // Center the window on the screen
-        JLabel label = new JLabel("Installing... Please wait.", JLabel.CENTER);
-        frame.add(label);
+        statusLabel = new JLabel("Installing... Please wait.", JLabel.CENTER);
+        rowsPanel = new JPanel(new GridLayout(0, 1, 0, 4));
+        rowsPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        rowsPanel.add(statusLabel);
+        frame.add(rowsPanel);
         frame.setVisible(true);
     }
     public void closeWindow() {
@@ -21,4 +52,104 @@ public class Installing {
             frame.dispose(); // Close the window
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onProgress(String appName, Phase phase, long bytesDone, long bytesTotal,
+                           int entriesDone, int entriesTotal, long bytesPerSecond, long etaMillis) {
+        PackageState state = states.get(appName);
+        if (state == null) {
+            state = states.computeIfAbsent(appName, name -> new PackageState());
+        }
+        synchronized (state) {
+            state.phase = phase;
+            state.bytesDone = bytesDone;
+            state.bytesTotal = bytesTotal;
+            state.entriesDone = entriesDone;
+            state.entriesTotal = entriesTotal;
+            state.bytesPerSecond = bytesPerSecond;
+            state.etaMillis = etaMillis;
+        }
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refresh);
+        }
+    }
+
+    /**
+     * Runs on the event dispatch thread: copies the latest state of every package into its row.
+     */
+    private void refresh() {
+        refreshPending.set(false);
+        if (frame == null) {
+            return;
+        }
+        for (Map.Entry<String, PackageState> entry : states.entrySet()) {
+            PackageRow row = rows.get(entry.getKey());
+            if (row == null) {
+                row = new PackageRow();
+                rows.put(entry.getKey(), row);
+                rowsPanel.add(row.label);
+                rowsPanel.add(row.progressBar);
+                rowsPanel.revalidate();
+            }
+            PackageState state = entry.getValue();
+            synchronized (state) {
+                row.update(entry.getKey(), state);
+            }
+        }
+    }
+
+    private static class PackageState {
+        Phase phase;
+        long bytesDone;
+        long bytesTotal;
+        int entriesDone;
+        int entriesTotal;
+        long bytesPerSecond;
+        long etaMillis;
+    }
+
+    private static class PackageRow {
+        final JLabel label = new JLabel();
+        final JProgressBar progressBar = new JProgressBar(0, 1000);
+
+        PackageRow() {
+            progressBar.setStringPainted(true);
+        }
+
+        void update(String appName, PackageState state) {
+            StringBuilder text = new StringBuilder(appName).append(": ");
+            long done = state.bytesDone;
+            long total = state.bytesTotal;
+            switch (state.phase) {
+                case DOWNLOAD -> text.append("Downloading ").append(done / (1024 * 1024)).append(" MiB");
+                case EXTRACT, BUNDLE -> {
+                    text.append(state.phase == Phase.EXTRACT ? "Extracting " : "Bundling ").append(state.entriesDone).append(" files");
+                    if (state.entriesTotal > 0) {
+                        // Entries are a better measure than bytes for archives of many small files
+                        done = state.entriesDone;
+                        total = state.entriesTotal;
+                    }
+                }
+                case PATH -> text.append("Updating PATH");
+                case DONE -> text.append("Done");
+            }
+            if (state.phase == Phase.DOWNLOAD || state.phase == Phase.EXTRACT || state.phase == Phase.BUNDLE) {
+                text.append(", ").append(state.bytesPerSecond / 1024).append(" KiB/s");
+                if (state.etaMillis >= 0) {
+                    text.append(", ").append(state.etaMillis / 1000).append(" s left");
+                }
+            }
+            label.setText(text.toString());
+
+            if (state.phase == Phase.PATH || state.phase == Phase.DONE) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue(progressBar.getMaximum());
+            } else if (total > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue((int) Math.min(1000, done * 1000 / total));
+            } else {
+                progressBar.setIndeterminate(true);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.windows;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.function.BiConsumer; // Use BiConsumer for two arguments
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -7,13 +9,11 @@ import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
 // Assuming these are custom components
-import org.example.components.DirectoryBox;
 import org.example.components.RadioSel;
 // import org.example.components.Img; // If you uncomment this line later
 
 public class StartWindow {
     private JFrame frame;
-    private DirectoryBox directoryBox;
     private RadioSel radioSel;
     private JButton submitButton;
 
@@ -26,7 +26,6 @@ public class StartWindow {
         frame.setSize(500, 500);
         frame.setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
 
-        directoryBox = new DirectoryBox();
         radioSel = new RadioSel(new String[] { "Install Client", "Create FAT Installer" });
 
         // frame.add(Img.createImageLabel("/img/Minecraft-New-Logo.png", 400, 200));
@@ -66,6 +65,21 @@ public class StartWindow {
         frame.setVisible(true);
     }
 
+    /**
+     * Sets an action to run once, when the window has opened on screen.
+     *
+     * @param callback Runs on the event dispatch thread.
+     */
+    public void onShown(Runnable callback) {
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                frame.removeWindowListener(this);
+                callback.run();
+            }
+        });
+    }
+
     public void closeWindow() {
         frame.setVisible(false);
         frame.dispose();
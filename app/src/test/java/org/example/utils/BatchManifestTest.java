@@ -0,0 +1,62 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsCommandTimeouts() throws IOException {
+        BatchManifest manifest = BatchManifest.read(manifest("""
+                command.1=npm i
+                command.1.timeoutSeconds=600
+                command.2=npm run start
+                """));
+
+        List<BatchManifest.Command> commands = manifest.getCommands();
+        assertEquals(List.of("npm", "i"), commands.get(0).command());
+        assertEquals(Duration.ofMinutes(10), commands.get(0).timeout());
+        assertNull(commands.get(1).timeout());
+    }
+
+    @Test
+    void rejectsInvalidTimeouts() throws IOException {
+        for (String value : new String[] { "ten", "0", "-5" }) {
+            Path manifestPath = manifest("command.1=npm i\ncommand.1.timeoutSeconds=" + value + "\n");
+            IOException e = assertThrows(IOException.class, () -> BatchManifest.read(manifestPath));
+            assertTrue(e.getMessage().contains("command.1.timeoutSeconds"), e.getMessage());
+        }
+    }
+
+    @Test
+    void requiresChecksumForMirrors() throws IOException {
+        String mirroredPackage = """
+                package.1.id=node
+                package.1.url=https://nodejs.org/dist/node.zip https://mirror.example.org/node.zip
+                package.1.appName=Node
+                """;
+        IOException e = assertThrows(IOException.class, () -> BatchManifest.read(manifest(mirroredPackage)));
+        assertTrue(e.getMessage().contains("package.1.sha256"), e.getMessage());
+
+        BatchManifest manifest = BatchManifest.read(manifest(mirroredPackage + "package.1.sha256=" + "a".repeat(64) + "\n"));
+        assertEquals(2, manifest.getPackages().get(0).urls().size());
+    }
+
+    private Path manifest(String content) throws IOException {
+        return Files.writeString(tempDir.resolve("install.properties"), content);
+    }
+}
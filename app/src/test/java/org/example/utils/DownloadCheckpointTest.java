@@ -0,0 +1,148 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DownloadCheckpointTest {
+
+    private static final String URL = "https://example.org/node.zip";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mergesOverlappingAndAdjacentRanges() throws IOException {
+        DownloadCheckpoint checkpoint = fresh(probe("\"v1\"", null, 100));
+        checkpoint.markCompleted(0, 10);
+        checkpoint.markCompleted(20, 30);
+        checkpoint.markCompleted(50, 60);
+        assertRanges(List.of(new long[] { 10, 20 }, new long[] { 30, 50 }, new long[] { 60, 100 }), checkpoint.missingRanges());
+
+        // Adjacent on both sides
+        checkpoint.markCompleted(10, 20);
+        // Overlapping the end of one range and reaching into the next
+        checkpoint.markCompleted(25, 55);
+        // Inside a completed range, and empty
+        checkpoint.markCompleted(2, 8);
+        checkpoint.markCompleted(70, 70);
+
+        assertRanges(List.of(new long[] { 60, 100 }), checkpoint.missingRanges());
+        assertEquals(60, checkpoint.completedBytes());
+    }
+
+    @Test
+    void missingRangesCoverTheWholeFileWhenNothingIsDone() throws IOException {
+        DownloadCheckpoint checkpoint = fresh(probe("\"v1\"", null, 100));
+        assertRanges(List.of(new long[] { 0, 100 }), checkpoint.missingRanges());
+        checkpoint.markCompleted(0, 100);
+        assertTrue(checkpoint.missingRanges().isEmpty());
+    }
+
+    @Test
+    void resumesWhenTheValidatorIsUnchanged() throws IOException {
+        Path partPath = partWithCheckpoint(probe("\"v1\"", "Mon, 01 Jan 2024 00:00:00 GMT", 100), 0, 40);
+
+        DownloadCheckpoint resumed = DownloadCheckpoint.loadOrCreate(partPath, URL,
+                probe("\"v1\"", "Tue, 02 Jan 2024 00:00:00 GMT", 100));
+
+        // The ETag wins over the date when both sides have one
+        assertEquals(40, resumed.completedBytes());
+        assertTrue(Files.exists(partPath));
+    }
+
+    @Test
+    void restartsWhenTheETagChanged() throws IOException {
+        Path partPath = partWithCheckpoint(probe("\"v1\"", null, 100), 0, 40);
+
+        DownloadCheckpoint restarted = DownloadCheckpoint.loadOrCreate(partPath, URL, probe("\"v2\"", null, 100));
+
+        assertEquals(0, restarted.completedBytes());
+        assertFalse(Files.exists(partPath));
+        assertFalse(Files.exists(DownloadCheckpoint.sidecarFor(partPath)));
+    }
+
+    @Test
+    void resumesOnLastModifiedWhenThereIsNoETag() throws IOException {
+        String date = "Mon, 01 Jan 2024 00:00:00 GMT";
+        Path partPath = partWithCheckpoint(probe(null, date, 100), 10, 30);
+
+        assertEquals(20, DownloadCheckpoint.loadOrCreate(partPath, URL, probe(null, date, 100)).completedBytes());
+    }
+
+    @Test
+    void restartsWithoutAnyValidator() throws IOException {
+        Path partPath = partWithCheckpoint(probe(null, null, 100), 0, 40);
+
+        assertEquals(0, DownloadCheckpoint.loadOrCreate(partPath, URL, probe(null, null, 100)).completedBytes());
+        assertFalse(Files.exists(partPath));
+    }
+
+    @Test
+    void restartsWhenTheLengthChanged() throws IOException {
+        Path partPath = partWithCheckpoint(probe("\"v1\"", null, 100), 0, 40);
+
+        DownloadCheckpoint restarted = DownloadCheckpoint.loadOrCreate(partPath, URL, probe("\"v1\"", null, 120));
+
+        assertEquals(0, restarted.completedBytes());
+        assertEquals(120, restarted.getContentLength());
+    }
+
+    @Test
+    void restartsWhenTheCheckpointIsUnreadable() throws IOException {
+        Path partPath = partWithCheckpoint(probe("\"v1\"", null, 100), 0, 40);
+        Files.writeString(DownloadCheckpoint.sidecarFor(partPath), "completed=0-x\n");
+
+        assertEquals(0, DownloadCheckpoint.loadOrCreate(partPath, URL, probe("\"v1\"", null, 100)).completedBytes());
+    }
+
+    @Test
+    void weakETagsAreNotUsedForIfRange() throws IOException {
+        String date = "Mon, 01 Jan 2024 00:00:00 GMT";
+        assertEquals(date, fresh(probe("W/\"v1\"", date, 100)).ifRangeValidator());
+        assertEquals("\"v1\"", fresh(probe("\"v1\"", date, 100)).ifRangeValidator());
+    }
+
+    @Test
+    void completedPrefixOnlyCountsBytesFromTheStart() throws Exception {
+        DownloadCheckpoint checkpoint = fresh(probe("\"v1\"", null, 100));
+        checkpoint.markCompleted(20, 50);
+        assertEquals(0, checkpoint.awaitCompletedPrefix(0, 10));
+        checkpoint.markCompleted(0, 20);
+        assertEquals(50, checkpoint.awaitCompletedPrefix(0, 10));
+    }
+
+    private DownloadCheckpoint fresh(SegmentedDownloader.RangeProbe probe) throws IOException {
+        return DownloadCheckpoint.loadOrCreate(tempDir.resolve("fresh.part"), URL, probe);
+    }
+
+    private Path partWithCheckpoint(SegmentedDownloader.RangeProbe probe, long start, long end) throws IOException {
+        Path partPath = tempDir.resolve("node.zip.part");
+        DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, URL, probe);
+        Files.write(partPath, new byte[(int) probe.contentLength()]);
+        checkpoint.markCompleted(start, end);
+        checkpoint.save();
+        return partPath;
+    }
+
+    private static SegmentedDownloader.RangeProbe probe(String etag, String lastModified, long contentLength) {
+        return new SegmentedDownloader.RangeProbe(URL, URI.create(URL), contentLength, true, etag, lastModified, 0);
+    }
+
+    private static void assertRanges(List<long[]> expected, List<long[]> actual) {
+        assertEquals(expected.size(), actual.size(), "number of ranges");
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FatBundleTest {
+
+    private static final List<FatBundle.Root> ROOTS = List.of(new FatBundle.Root("app", "bin", false));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsFilesAndLinks() throws IOException {
+        Path appDir = Files.createDirectories(tempDir.resolve("home/app"));
+        Files.createDirectories(appDir.resolve("packages/lib"));
+        Files.writeString(appDir.resolve("packages/lib/index.js"), "module.exports = 42;");
+        Path script = Files.writeString(Files.createDirectories(appDir.resolve("bin")).resolve("run"), "#!/bin/sh\n");
+        script.toFile().setExecutable(true);
+        byte[] large = TestData.randomBytes(5 * 1024 * 1024);
+        Files.write(appDir.resolve("large.bin"), large);
+        // Like npm links a workspace package and a bin script
+        Files.createDirectories(appDir.resolve("node_modules"));
+        Files.createSymbolicLink(appDir.resolve("node_modules/lib"), Path.of("../packages/lib"));
+        Files.createSymbolicLink(appDir.resolve("node_modules/run"), Path.of("../bin/run"));
+
+        Path installDir = tempDir.resolve("install");
+        try (FatBundle bundle = createAndOpen(tempDir.resolve("home"))) {
+            assertEquals(3, bundle.getFileCount());
+            bundle.extract(List.of(installDir), 2, TestData.silentTracker(InstallProgressListener.Phase.EXTRACT));
+        }
+
+        assertTrue(Files.isSymbolicLink(installDir.resolve("node_modules/lib")));
+        assertEquals(Path.of("../packages/lib"), Files.readSymbolicLink(installDir.resolve("node_modules/lib")));
+        assertEquals("module.exports = 42;", Files.readString(installDir.resolve("node_modules/lib/index.js")));
+        assertTrue(Files.isSymbolicLink(installDir.resolve("node_modules/run")));
+        assertTrue(Files.isExecutable(installDir.resolve("bin/run")));
+        assertArrayEquals(large, Files.readAllBytes(installDir.resolve("large.bin")));
+    }
+
+    @Test
+    void refusesLinkPointingOutsideThePackage() throws IOException {
+        Path appDir = Files.createDirectories(tempDir.resolve("home/app"));
+        Files.writeString(tempDir.resolve("home/secret"), "secret");
+        Files.createSymbolicLink(appDir.resolve("escape"), Path.of("../secret"));
+
+        IOException e = assertThrows(IOException.class, () -> createAndOpen(tempDir.resolve("home")));
+        assertTrue(e.getMessage().contains("escape"), e.getMessage());
+        assertFalse(Files.exists(tempDir.resolve("out.jar")));
+    }
+
+    @Test
+    void refusesLinkEscapingThroughAnotherLink() throws IOException {
+        Path appDir = Files.createDirectories(tempDir.resolve("home/app"));
+        Files.createDirectories(appDir.resolve("dir"));
+        // By its text dir/escape points to dir/secret, but dir/up is the package itself, so up/.. is its parent
+        Files.createSymbolicLink(appDir.resolve("dir/up"), Path.of(".."));
+        Files.createSymbolicLink(appDir.resolve("dir/escape"), Path.of("up/../secret"));
+
+        assertThrows(IOException.class, () -> createAndOpen(tempDir.resolve("home")));
+    }
+
+    @Test
+    void detectsDamagedContent() throws IOException {
+        Path appDir = Files.createDirectories(tempDir.resolve("home/app"));
+        Files.writeString(appDir.resolve("file.txt"), "original content");
+        FatBundle.create(sourceJar(), tempDir.resolve("out.jar"), tempDir.resolve("home"), ROOTS,
+                TestData.silentTracker(InstallProgressListener.Phase.BUNDLE));
+        byte[] payload;
+        try (ZipFile jar = new ZipFile(tempDir.resolve("out.jar").toFile());
+             InputStream in = jar.getInputStream(jar.getEntry(FatBundle.PAYLOAD_ENTRY))) {
+            payload = in.readAllBytes();
+        }
+        // The content is followed by the four bytes of its CRC
+        int contentStart = payload.length - 4 - "original content".length();
+        payload[contentStart] ^= 1;
+
+        Path installDir = Files.createDirectories(tempDir.resolve("install"));
+        try (FatBundle bundle = FatBundle.open(new ByteArrayInputStream(payload))) {
+            IOException e = assertThrows(IOException.class, () -> bundle.extract(List.of(installDir), 1,
+                    TestData.silentTracker(InstallProgressListener.Phase.EXTRACT)));
+            assertTrue(e.getMessage().contains("CRC-32"), e.getMessage());
+        }
+    }
+
+    private FatBundle createAndOpen(Path userHome) throws IOException {
+        Path outputJar = tempDir.resolve("out.jar");
+        FatBundle.create(sourceJar(), outputJar, userHome, ROOTS, TestData.silentTracker(InstallProgressListener.Phase.BUNDLE));
+        try (ZipFile jar = new ZipFile(outputJar.toFile());
+             InputStream in = jar.getInputStream(jar.getEntry(FatBundle.PAYLOAD_ENTRY))) {
+            return FatBundle.open(new ByteArrayInputStream(in.readAllBytes()));
+        }
+    }
+
+    private Path sourceJar() throws IOException {
+        Path jar = tempDir.resolve("source.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InstallManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path extractionDir;
+
+    @BeforeEach
+    void createExtractionDir() throws IOException {
+        extractionDir = Files.createDirectory(tempDir.resolve("app"));
+    }
+
+    @Test
+    void sameEntryOnUntouchedFileIsUnchanged() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1", "app-1.0/README", "readme"));
+
+        assertTrue(manifest.isUnchanged(entry("app-1.0/bin/node", "v1"), extractionDir.resolve("app-1.0/bin/node")));
+    }
+
+    @Test
+    void entryWithOtherContentIsChanged() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1"));
+
+        // Same size, different CRC
+        assertFalse(manifest.isUnchanged(entry("app-1.0/bin/node", "v2"), extractionDir.resolve("app-1.0/bin/node")));
+    }
+
+    @Test
+    void newEntryIsChanged() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1"));
+
+        assertFalse(manifest.isUnchanged(entry("app-1.0/bin/npm", "v1"), extractionDir.resolve("app-1.0/bin/npm")));
+    }
+
+    @Test
+    void fileTouchedAfterTheInstallIsChanged() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1"));
+        Path file = extractionDir.resolve("app-1.0/bin/node");
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5_000));
+        assertFalse(manifest.isUnchanged(entry("app-1.0/bin/node", "v1"), file));
+
+        Files.delete(file);
+        assertFalse(manifest.isUnchanged(entry("app-1.0/bin/node", "v1"), file));
+    }
+
+    @Test
+    void removedEntriesAreThoseMissingFromTheNewerManifest() throws IOException {
+        InstallManifest previous = install(Map.of("app-1.0/a", "a", "app-1.0/b", "b", "app-1.0/c", "c"));
+        Path newer = zip(tempDir.resolve("newer.zip"), Map.of("app-1.0/b", "b2", "app-1.0/d", "d"));
+
+        List<String> removed = previous.removedEntries(InstallManifest.fromExtractedArchive(newer, extractionDir));
+
+        assertEquals(List.of("app-1.0/a", "app-1.0/c"), removed.stream().sorted().toList());
+    }
+
+    @Test
+    void survivesWriteAndRead() throws IOException {
+        install(Map.of("app-1.0/bin/node", "v1")).write(extractionDir);
+
+        InstallManifest read = InstallManifest.read(extractionDir);
+
+        assertNotNull(read);
+        assertFalse(read.isInProgress());
+        assertTrue(read.isUnchanged(entry("app-1.0/bin/node", "v1"), extractionDir.resolve("app-1.0/bin/node")));
+    }
+
+    @Test
+    void inProgressFlagIsKeptUntilTheNextWrite() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1"));
+        manifest.writeInProgress(extractionDir);
+
+        InstallManifest interrupted = InstallManifest.read(extractionDir);
+        assertTrue(interrupted.isInProgress());
+        // The entries of the previous archive are still there for the next update
+        assertTrue(interrupted.isUnchanged(entry("app-1.0/bin/node", "v1"), extractionDir.resolve("app-1.0/bin/node")));
+
+        interrupted.write(extractionDir);
+        assertFalse(InstallManifest.read(extractionDir).isInProgress());
+    }
+
+    @Test
+    void unreadableManifestIsIgnored() throws IOException {
+        Files.writeString(extractionDir.resolve(InstallManifest.FILE_NAME), "app-1.0/bin/node=not:a:number\n");
+
+        assertNull(InstallManifest.read(extractionDir));
+    }
+
+    @Test
+    void fingerprintChangesWhenAListedFileChanges() throws IOException {
+        InstallManifest manifest = install(Map.of("app-1.0/bin/node", "v1"));
+        String before = manifest.fingerprint(extractionDir);
+        Files.writeString(extractionDir.resolve("node_modules.txt"), "not from the archive");
+        assertEquals(before, manifest.fingerprint(extractionDir));
+
+        Files.writeString(extractionDir.resolve("app-1.0/bin/node"), "v1 patched");
+        assertFalse(before.equals(manifest.fingerprint(extractionDir)));
+    }
+
+    /**
+     * Writes the files into the extraction directory as an extraction would and returns their manifest.
+     */
+    private InstallManifest install(Map<String, String> files) throws IOException {
+        Path zipFilePath = zip(tempDir.resolve("installed.zip"), files);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = extractionDir.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        return InstallManifest.fromExtractedArchive(zipFilePath, extractionDir);
+    }
+
+    private static Path zip(Path zipFilePath, Map<String, String> files) throws IOException {
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                zipOut.putNextEntry(new ZipEntry(file.getKey()));
+                zipOut.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                zipOut.closeEntry();
+            }
+        }
+        return zipFilePath;
+    }
+
+    private static ZipEntry entry(String name, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setSize(data.length);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class InstallSchedulerTest {
+
+    @Test
+    void stepsStartAfterTheirDependencies() {
+        List<String> order = new CopyOnWriteArrayList<>();
+        InstallPlan plan = new InstallPlan()
+                .addStep("node", () -> { sleep(50); order.add("node"); })
+                .addStep("launcher", () -> order.add("launcher"))
+                .addStep("npm", () -> order.add("npm"), "node", "launcher")
+                .addStep("start", () -> order.add("start"), "npm");
+
+        InstallScheduler.Report report = new InstallScheduler(4).run(plan);
+
+        assertTrue(report.succeeded());
+        assertTrue(order.indexOf("npm") > order.indexOf("node"));
+        assertTrue(order.indexOf("npm") > order.indexOf("launcher"));
+        assertEquals("start", order.get(3));
+    }
+
+    @Test
+    void failureSkipsDependentsButNotIndependentSteps() {
+        AtomicInteger ran = new AtomicInteger();
+        InstallPlan plan = new InstallPlan()
+                .addStep("node", () -> { throw new IOException("download failed"); })
+                .addStep("launcher", ran::incrementAndGet)
+                .addStep("npm", ran::incrementAndGet, "node", "launcher")
+                .addStep("start", ran::incrementAndGet, "npm")
+                .addStep("docs", ran::incrementAndGet, "launcher");
+
+        InstallScheduler.Report report = new InstallScheduler(2).run(plan);
+        Map<String, InstallScheduler.StepResult> steps = byId(report);
+
+        assertFalse(report.succeeded());
+        assertEquals(InstallScheduler.Status.FAILED, steps.get("node").status());
+        assertEquals("download failed", steps.get("node").error().getMessage());
+        assertEquals(InstallScheduler.Status.SUCCEEDED, steps.get("launcher").status());
+        assertEquals(InstallScheduler.Status.SKIPPED, steps.get("npm").status());
+        assertEquals(InstallScheduler.Status.SKIPPED, steps.get("start").status());
+        assertEquals(InstallScheduler.Status.SUCCEEDED, steps.get("docs").status());
+        assertEquals(2, ran.get());
+        assertEquals(-1, steps.get("start").startMs());
+        assertEquals(0, steps.get("start").durationMs());
+        assertNull(steps.get("start").error());
+    }
+
+    @Test
+    void runsAtMostMaxConcurrencyStepsAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        InstallPlan plan = new InstallPlan();
+        for (int i = 0; i < 8; i++) {
+            plan.addStep("step-" + i, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(30);
+                running.decrementAndGet();
+            });
+        }
+
+        assertTrue(new InstallScheduler(3).run(plan).succeeded());
+        assertEquals(3, peak.get());
+    }
+
+    @Test
+    void criticalPathIsTheLongestChainOfDurations() {
+        InstallPlan plan = new InstallPlan()
+                .addStep("node", () -> sleep(120))
+                .addStep("launcher", () -> sleep(20))
+                .addStep("npm", () -> sleep(60), "node", "launcher")
+                .addStep("docs", () -> sleep(20), "launcher");
+
+        InstallScheduler.Report report = new InstallScheduler(4).run(plan);
+        Map<String, InstallScheduler.StepResult> steps = byId(report);
+
+        InstallScheduler.StepResult node = steps.get("node");
+        InstallScheduler.StepResult npm = steps.get("npm");
+        InstallScheduler.StepResult docs = steps.get("docs");
+        assertEquals(node.durationMs(), node.criticalPathMs());
+        // Through node, the slower of the two dependencies
+        assertEquals(node.durationMs() + npm.durationMs(), npm.criticalPathMs());
+        assertEquals(steps.get("launcher").durationMs() + docs.durationMs(), docs.criticalPathMs());
+        assertTrue(npm.criticalPathMs() >= 180, "critical path " + npm.criticalPathMs());
+        assertTrue(npm.startMs() >= node.endMs());
+        assertTrue(report.totalMs() >= npm.criticalPathMs());
+    }
+
+    @Test
+    void planRejectsUnknownAndDuplicateSteps() {
+        InstallPlan plan = new InstallPlan().addStep("node", () -> { });
+
+        assertThrows(IllegalArgumentException.class, () -> plan.addStep("node", () -> { }));
+        assertThrows(IllegalArgumentException.class, () -> plan.addStep("npm", () -> { }, "launcher"));
+        assertThrows(IllegalArgumentException.class, () -> new InstallScheduler(0));
+        assertNotNull(plan.getSteps().get(0).action());
+    }
+
+    private static Map<String, InstallScheduler.StepResult> byId(InstallScheduler.Report report) {
+        Map<String, InstallScheduler.StepResult> steps = new HashMap<>();
+        for (InstallScheduler.StepResult step : report.steps()) {
+            steps.put(step.id(), step);
+        }
+        return steps;
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
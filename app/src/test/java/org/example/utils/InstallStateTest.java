@@ -0,0 +1,77 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InstallStateTest {
+
+    private static final byte[] ARCHIVE = TestData.randomBytes(4096);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void unpinnedArchiveIsCurrentWhileTheServerAnswersNotModified() throws IOException {
+        try (RangeServer server = new RangeServer(ARCHIVE, false)) {
+            DownloadCache cache = new DownloadCache(tempDir.resolve("cache"), DownloadCache.DEFAULT_MAX_BYTES);
+            InstallState state = recordedState(cache, server.url("main.zip"));
+
+            assertNull(state.remoteDifference(cache, Set.of("Node")));
+
+            // A new commit on the branch: same URL, new content
+            server.setETag("\"next\"");
+            assertNotNull(state.remoteDifference(cache, Set.of("Node")));
+        }
+    }
+
+    @Test
+    void unpinnedArchiveWithoutCachedValidatorsCountsAsChanged() throws IOException {
+        try (RangeServer server = new RangeServer(ARCHIVE, false)) {
+            DownloadCache cache = new DownloadCache(tempDir.resolve("cache"), DownloadCache.DEFAULT_MAX_BYTES);
+            InstallState state = recordedState(cache, server.url("main.zip"));
+            DownloadCache emptyCache = new DownloadCache(tempDir.resolve("empty"), DownloadCache.DEFAULT_MAX_BYTES);
+
+            assertNotNull(state.remoteDifference(emptyCache, Set.of("Node")));
+            // Pinned packages are never asked about, so only the unpinned one decides
+            assertNull(state.remoteDifference(emptyCache, Set.of("Node", "Minecraft")));
+        }
+    }
+
+    @Test
+    void unreachableServerCountsAsChanged() throws IOException {
+        DownloadCache cache = new DownloadCache(tempDir.resolve("cache"), DownloadCache.DEFAULT_MAX_BYTES);
+        String url;
+        try (RangeServer server = new RangeServer(ARCHIVE, false)) {
+            url = server.url("main.zip");
+        }
+        InstallState state = recordedState(cache, url);
+
+        assertEquals("the archive of Minecraft may have changed on the server", state.remoteDifference(cache, Set.of("Node")));
+    }
+
+    // A pinned Node package and a launcher downloaded through the cache from the given URL
+    private InstallState recordedState(DownloadCache cache, String launcherUrl) throws IOException {
+        Path archive = tempDir.resolve("main.zip");
+        Files.write(archive, ARCHIVE);
+        DownloadCache.Entry entry = cache.store(launcherUrl, archive, "\"test\"", null);
+        Path statePath = tempDir.resolve("install-state.properties");
+        Files.writeString(statePath, String.join("\n",
+                "packages=2",
+                "package.0.appName=Node",
+                "package.0.url=https\\://nodejs.org/dist/node.zip",
+                "package.0.sha256=" + "0".repeat(64),
+                "package.1.appName=Minecraft",
+                "package.1.url=" + launcherUrl.replace(":", "\\:"),
+                "package.1.sha256=" + entry.sha256()));
+        return InstallState.load(statePath);
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MirrorStatsTest {
+
+    private static final URI MIRROR = URI.create("https://mirror.example.org/dist/v1/archive.zip");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsMovingAveragesAcrossRuns() throws IOException {
+        Path statsPath = tempDir.resolve("state/mirrors.properties");
+        MirrorStats stats = MirrorStats.load(statsPath);
+        stats.recordLatency(MIRROR, 100);
+        stats.recordLatency(MIRROR, 200);
+        stats.save();
+
+        MirrorStats loaded = MirrorStats.load(statsPath);
+        // 0.3 * 200 + 0.7 * 100
+        assertEquals(130, loaded.expectedMillis(MIRROR, -1, -1));
+        // Blended with a new measurement the same way: 0.3 * 30 + 0.7 * 130
+        assertEquals(100, loaded.expectedMillis(MIRROR, 30, -1));
+    }
+
+    @Test
+    void identifiesMirrorsByOrigin() {
+        MirrorStats stats = new MirrorStats();
+        stats.recordLatency(MIRROR, 100);
+
+        assertEquals(100, stats.expectedMillis(URI.create("https://mirror.example.org:443/other/file.tar.gz"), -1, -1));
+        assertEquals(0, stats.expectedMillis(URI.create("http://mirror.example.org/dist/v1/archive.zip"), -1, -1));
+    }
+
+    @Test
+    void addsTransferTimeFromThroughput() {
+        MirrorStats stats = new MirrorStats();
+        stats.recordLatency(MIRROR, 50);
+        // 1 MiB/s
+        stats.recordThroughput(MIRROR, 1024 * 1024, 1_000_000_000L);
+
+        assertEquals(50 + 4_000, stats.expectedMillis(MIRROR, -1, 4L * 1024 * 1024));
+        // Without a known length only the latency counts
+        assertEquals(50, stats.expectedMillis(MIRROR, -1, -1));
+    }
+
+    @Test
+    void penalizesConsecutiveFailuresUntilTheMirrorAnswers() throws IOException {
+        Path statsPath = tempDir.resolve("mirrors.properties");
+        MirrorStats stats = MirrorStats.load(statsPath);
+        stats.recordFailure(MIRROR);
+        stats.recordFailure(MIRROR);
+        stats.save();
+
+        MirrorStats loaded = MirrorStats.load(statsPath);
+        assertEquals(10_000 + 20, loaded.expectedMillis(MIRROR, 20, -1));
+        loaded.recordLatency(MIRROR, 20);
+        assertEquals(20, loaded.expectedMillis(MIRROR, -1, -1));
+    }
+
+    @Test
+    void startsEmptyFromUnreadableFile() throws IOException {
+        Path statsPath = tempDir.resolve("mirrors.properties");
+        // An invalid \\u escape makes Properties.load fail
+        Files.writeString(statsPath, "key=\\u12");
+
+        MirrorStats stats = MirrorStats.load(statsPath);
+
+        assertEquals(42, stats.expectedMillis(MIRROR, 42, -1));
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NodeModulesCacheTest {
+
+    private static final String NODE_VERSION = "v22.16.0";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void restoredFilesDoNotShareContentWithTheSnapshot() throws IOException {
+        NodeModulesCache cache = new NodeModulesCache(tempDir.resolve("cache"), NodeModulesCache.DEFAULT_MAX_BYTES);
+        Path projectDir = project("project", "lock-1", 100);
+        String key = NodeModulesCache.key(projectDir, NODE_VERSION);
+        assertNotNull(cache.store(key, projectDir));
+
+        Path otherProject = project("other", "lock-1", 0);
+        assertNotNull(cache.restore(key, otherProject));
+        // Like patch-package, which writes into the installed file
+        Path restoredFile = otherProject.resolve("node_modules/pkg/index.js");
+        Files.writeString(restoredFile, "patched");
+
+        Path thirdProject = project("third", "lock-1", 0);
+        cache.restore(key, thirdProject);
+        assertEquals("x".repeat(100), Files.readString(thirdProject.resolve("node_modules/pkg/index.js")));
+        assertFalse(Files.exists(thirdProject.resolve("node_modules.restoring")));
+    }
+
+    @Test
+    void laterWritesInTheProjectDoNotChangeTheSnapshot() throws IOException {
+        NodeModulesCache cache = new NodeModulesCache(tempDir.resolve("cache"), NodeModulesCache.DEFAULT_MAX_BYTES);
+        Path projectDir = project("project", "lock-1", 100);
+        String key = NodeModulesCache.key(projectDir, NODE_VERSION);
+        assertNotNull(cache.store(key, projectDir));
+
+        // A postinstall step writing into an installed file after the snapshot was taken
+        Files.writeString(projectDir.resolve("node_modules/pkg/index.js"), "rewritten");
+
+        Path otherProject = project("other", "lock-1", 0);
+        cache.restore(key, otherProject);
+        assertEquals("x".repeat(100), Files.readString(otherProject.resolve("node_modules/pkg/index.js")));
+    }
+
+    @Test
+    void doesNotStoreTreeLargerThanTheCache() throws IOException {
+        NodeModulesCache cache = new NodeModulesCache(tempDir.resolve("cache"), 50);
+        Path projectDir = project("project", "lock-1", 100);
+        String key = NodeModulesCache.key(projectDir, NODE_VERSION);
+
+        assertNull(cache.store(key, projectDir));
+        assertNull(cache.restore(key, project("other", "lock-1", 0)));
+        assertFalse(Files.exists(tempDir.resolve("cache/snapshots/" + key + ".tmp")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSnapshots() throws IOException, InterruptedException {
+        NodeModulesCache cache = new NodeModulesCache(tempDir.resolve("cache"), 250);
+        Path first = project("first", "lock-1", 100);
+        Path second = project("second", "lock-2", 100);
+        String firstKey = NodeModulesCache.key(first, NODE_VERSION);
+        String secondKey = NodeModulesCache.key(second, NODE_VERSION);
+        cache.store(firstKey, first);
+        Thread.sleep(5);
+        cache.store(secondKey, second);
+        Thread.sleep(5);
+        // Using the first one makes the second the least recently used
+        assertNotNull(cache.restore(firstKey, project("restored", "lock-1", 0)));
+        Thread.sleep(5);
+
+        Path third = project("third", "lock-3", 100);
+        cache.store(NodeModulesCache.key(third, NODE_VERSION), third);
+
+        assertNotNull(cache.restore(firstKey, project("again", "lock-1", 0)));
+        assertNull(cache.restore(secondKey, project("gone", "lock-2", 0)));
+        assertTrue(Files.exists(tempDir.resolve("cache/.lock")));
+    }
+
+    private Path project(String name, String lockContent, int fileSize) throws IOException {
+        Path projectDir = Files.createDirectories(tempDir.resolve(name));
+        Files.writeString(projectDir.resolve("package-lock.json"), lockContent);
+        if (fileSize > 0) {
+            Path file = Files.createDirectories(projectDir.resolve("node_modules/pkg")).resolve("index.js");
+            Files.writeString(file, "x".repeat(fileSize));
+        }
+        return projectDir;
+    }
+}
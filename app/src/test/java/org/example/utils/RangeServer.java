@@ -0,0 +1,197 @@
+package org.example.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process HTTP server for the download tests and benchmarks. It serves one file from memory,
+ * answers HEAD requests, conditional requests on its ETag and, if enabled, single byte-range requests,
+ * so downloads run without any network in the way. Misbehaving servers can be simulated: one that advertises ranges but answers
+ * them with the whole file, one that drops range responses half way, and slow ones, with latency
+ * before every response or a limited or stalled transfer rate.
+ */
+final class RangeServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] body;
+    private final boolean acceptRanges;
+    private volatile boolean ignoreRanges;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond = -1;
+    private volatile String etag = "\"test\"";
+    private final AtomicInteger rangesToFail = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    /**
+     * Starts the server on a free loopback port.
+     * @param body The file to serve.
+     * @param acceptRanges Whether to advertise and honor {@code Range} requests.
+     * @throws IOException If the server cannot be started.
+     */
+    RangeServer(byte[] body, boolean acceptRanges) throws IOException {
+        this.body = body;
+        this.acceptRanges = acceptRanges;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "range-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @param fileName The file name to put in the URL path.
+     * @return The URL the file is served under.
+     */
+    String url(String fileName) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/" + fileName;
+    }
+
+    /**
+     * Keeps advertising {@code Accept-Ranges} but answers range requests with the whole file and
+     * HTTP 200, like servers behind some proxies do.
+     * @param ignoreRanges Whether to ignore {@code Range} headers.
+     */
+    void setIgnoreRanges(boolean ignoreRanges) {
+        this.ignoreRanges = ignoreRanges;
+    }
+
+    /**
+     * Makes the next range responses send only the first half of their range and then drop the connection.
+     * @param count How many range responses to cut short.
+     */
+    void failNextRanges(int count) {
+        rangesToFail.set(count);
+    }
+
+    /**
+     * Delays every response, HEAD included, before its headers are sent.
+     * @param latencyMillis The delay in milliseconds.
+     */
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Limits how fast response bodies are sent.
+     * @param bytesPerSecond The rate; 0 stalls every body after its headers, negative means unlimited.
+     */
+    void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Changes the ETag the file is served with, as if it had been replaced. Requests whose
+     * {@code If-None-Match} carries the current ETag are answered with 304.
+     * @param etag The new ETag, quotes included.
+     */
+    void setETag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * @return The number of GET requests answered so far, HEAD requests not included.
+     */
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return The {@code Range} headers of all GET requests so far, in arrival order.
+     */
+    List<String> getRequestedRanges() {
+        return ranges;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (acceptRanges) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (!head) {
+                requests.incrementAndGet();
+                if (range != null) {
+                    ranges.add(range);
+                }
+            }
+            int start = 0;
+            int end = body.length;
+            int status = 200;
+            if (acceptRanges && !ignoreRanges && range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", 2);
+                start = Integer.parseInt(bounds[0]);
+                end = bounds[1].isEmpty() ? body.length : Integer.parseInt(bounds[1]) + 1;
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + body.length);
+            }
+            if (head) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(end - start));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            boolean fail = status == 206 && rangesToFail.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+            exchange.sendResponseHeaders(status, end - start);
+            OutputStream out = exchange.getResponseBody();
+            if (fail) {
+                out.write(body, start, (end - start) / 2);
+                out.flush();
+                // Closing with bytes missing makes the server drop the connection
+                return;
+            }
+            write(out, start, end);
+            out.close();
+        } catch (IOException | InterruptedException e) {
+            // The client went away, the response was cut short on purpose or the server was closed
+        }
+    }
+
+    private void write(OutputStream out, int start, int end) throws IOException, InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate < 0) {
+            out.write(body, start, end - start);
+            return;
+        }
+        // Ten chunks a second, so a throttled transfer still moves steadily
+        int chunk = (int) Math.max(1, rate / 10);
+        for (int position = start; position < end; position += chunk) {
+            if (rate == 0) {
+                // Stalled until the client gives up or the server is closed
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            out.write(body, position, Math.min(chunk, end - position));
+            out.flush();
+            Thread.sleep(100);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,268 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentedDownloaderTest {
+
+    private static final int FILE_SIZE = 6 * 1024 * 1024;
+    private static final byte[] CONTENT = TestData.randomBytes(FILE_SIZE);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void downloadsInParallelSegments() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, true)) {
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+            SegmentedDownloader.RangeProbe probe = downloader.probe(server.url("archive.zip"));
+            assertTrue(probe.supportsRanges());
+            assertEquals(FILE_SIZE, probe.contentLength());
+
+            Path partPath = tempDir.resolve("archive.zip.part");
+            DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, probe.url(), probe);
+            MessageDigest digest = Digests.newSha256();
+            downloader.download(List.of(probe), partPath, checkpoint, tracker(), digest);
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(partPath));
+            assertEquals(4, server.getRequestedRanges().size());
+            assertEquals(FILE_SIZE, requestedBytes(server.getRequestedRanges()));
+            assertTrue(checkpoint.missingRanges().isEmpty());
+            assertEquals(Digests.toHex(Digests.newSha256().digest(CONTENT)), Digests.toHex(digest.digest()));
+        }
+    }
+
+    @Test
+    void fallsBackToSingleStreamWithoutAcceptRanges() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, false)) {
+            SoftwareInstaller installer = new SoftwareInstaller();
+            installer.setDownloadConnections(4);
+            Path savePath = tempDir.resolve("archive.zip");
+
+            SegmentedDownloader.RangeProbe probe = installer.downloadFile(server.url("archive.zip"), savePath, tracker());
+
+            assertFalse(probe.supportsRanges());
+            assertArrayEquals(CONTENT, Files.readAllBytes(savePath));
+            assertTrue(server.getRequestedRanges().isEmpty());
+            assertEquals(1, server.getRequestCount());
+            assertFalse(Files.exists(tempDir.resolve("archive.zip.part")));
+        }
+    }
+
+    @Test
+    void reportsRangeAnsweredWithWholeFile() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, true)) {
+            server.setIgnoreRanges(true);
+            SegmentedDownloader downloader = new SegmentedDownloader(1);
+            SegmentedDownloader.RangeProbe probe = downloader.probe(server.url("archive.zip"));
+            Path partPath = tempDir.resolve("archive.zip.part");
+            DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, probe.url(), probe);
+
+            assertThrows(SegmentedDownloader.RangeNotHonoredException.class,
+                    () -> downloader.download(probe, partPath, checkpoint, tracker()));
+            assertEquals(0, checkpoint.completedBytes());
+        }
+    }
+
+    @Test
+    void fallsBackToSingleStreamWhenRangeIsAnsweredWithWholeFile() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, true)) {
+            server.setIgnoreRanges(true);
+            SoftwareInstaller installer = new SoftwareInstaller();
+            installer.setDownloadConnections(4);
+            Path savePath = tempDir.resolve("archive.zip");
+
+            installer.downloadFile(server.url("archive.zip"), savePath, tracker());
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(savePath));
+            assertFalse(server.getRequestedRanges().isEmpty());
+            assertFalse(Files.exists(tempDir.resolve("archive.zip.part")));
+            assertFalse(Files.exists(DownloadCheckpoint.sidecarFor(tempDir.resolve("archive.zip.part"))));
+        }
+    }
+
+    @Test
+    void retriesOnlyWhatAFailedSegmentLeftMissing() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, true)) {
+            String url = server.url("archive.zip");
+            Path partPath = tempDir.resolve("archive.zip.part");
+            // One connection, so the failure is the only thing in flight
+            SegmentedDownloader single = new SegmentedDownloader(1);
+            SegmentedDownloader.RangeProbe probe = single.probe(url);
+            DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, url, probe);
+            server.failNextRanges(1);
+
+            assertThrows(IOException.class, () -> single.download(probe, partPath, checkpoint, tracker()));
+            long kept = checkpoint.completedBytes();
+            assertTrue(kept > 0 && kept < FILE_SIZE, "kept " + kept);
+
+            // The next attempt resumes from the saved checkpoint and asks for the rest only
+            int earlierRequests = server.getRequestedRanges().size();
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+            SegmentedDownloader.RangeProbe retryProbe = downloader.probe(url);
+            DownloadCheckpoint resumed = DownloadCheckpoint.loadOrCreate(partPath, url, retryProbe);
+            assertEquals(kept, resumed.completedBytes());
+            downloader.download(retryProbe, partPath, resumed, tracker());
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(partPath));
+            List<String> retried = server.getRequestedRanges().subList(earlierRequests, server.getRequestedRanges().size());
+            assertEquals(FILE_SIZE - kept, requestedBytes(retried));
+        }
+    }
+
+    @Test
+    void ranksMirrorsByProbeLatency() throws IOException {
+        try (RangeServer slow = new RangeServer(CONTENT, true);
+             RangeServer fast = new RangeServer(CONTENT, true)) {
+            // Well within the grace period, so both are ranked
+            slow.setLatencyMillis(150);
+            MirrorStats stats = new MirrorStats();
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+            downloader.setMirrorStats(stats);
+
+            List<SegmentedDownloader.RangeProbe> ranked = downloader.probeMirrors(
+                    List.of(slow.url("archive.zip"), fast.url("archive.zip")));
+
+            assertEquals(List.of(fast.url("archive.zip"), slow.url("archive.zip")),
+                    ranked.stream().map(SegmentedDownloader.RangeProbe::url).toList());
+            assertTrue(ranked.get(1).latencyMillis() >= 150, "latency " + ranked.get(1).latencyMillis());
+            assertTrue(stats.expectedMillis(URI.create(slow.url("")), -1, -1) >= 150);
+        }
+    }
+
+    @Test
+    void leavesOutMirrorsSlowerThanTheGracePeriod() throws IOException {
+        try (RangeServer slow = new RangeServer(CONTENT, true);
+             RangeServer fast = new RangeServer(CONTENT, true)) {
+            slow.setLatencyMillis(3_000);
+            MirrorStats stats = new MirrorStats();
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+            downloader.setMirrorStats(stats);
+
+            long startNanos = System.nanoTime();
+            List<SegmentedDownloader.RangeProbe> ranked = downloader.probeMirrors(
+                    List.of(slow.url("archive.zip"), fast.url("archive.zip")));
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+            assertEquals(1, ranked.size());
+            assertEquals(fast.url("archive.zip"), ranked.get(0).url());
+            // Waited for the grace period, not for the slow mirror
+            assertTrue(elapsedMillis >= 250 && elapsedMillis < 3_000, "probing took " + elapsedMillis + " ms");
+            // The slow mirror is remembered as taking at least as long as it kept the probe waiting
+            long slowMillis = stats.expectedMillis(URI.create(slow.url("")), -1, -1);
+            assertTrue(slowMillis >= 250 && slowMillis < 3_000, "recorded " + slowMillis + " ms");
+        }
+    }
+
+    @Test
+    void leavesOutFailedMirrorsAndPenalizesThem() throws IOException {
+        String deadUrl;
+        try (RangeServer dead = new RangeServer(CONTENT, true)) {
+            deadUrl = dead.url("archive.zip");
+        }
+        try (RangeServer server = new RangeServer(CONTENT, true)) {
+            MirrorStats stats = new MirrorStats();
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+            downloader.setMirrorStats(stats);
+
+            List<SegmentedDownloader.RangeProbe> ranked = downloader.probeMirrors(List.of(deadUrl, server.url("archive.zip")));
+
+            assertEquals(List.of(server.url("archive.zip")), ranked.stream().map(SegmentedDownloader.RangeProbe::url).toList());
+            assertEquals(5_000, stats.expectedMillis(URI.create(deadUrl), 0, -1));
+        }
+    }
+
+    @Test
+    void leavesOutMirrorsWithADifferentLength() throws IOException {
+        try (RangeServer server = new RangeServer(CONTENT, true);
+             RangeServer other = new RangeServer(TestData.randomBytes(FILE_SIZE / 2), true)) {
+            other.setLatencyMillis(100);
+            SegmentedDownloader downloader = new SegmentedDownloader(4);
+
+            List<SegmentedDownloader.RangeProbe> ranked = downloader.probeMirrors(
+                    List.of(other.url("archive.zip"), server.url("archive.zip")));
+
+            assertEquals(List.of(server.url("archive.zip")), ranked.stream().map(SegmentedDownloader.RangeProbe::url).toList());
+        }
+    }
+
+    @Test
+    void movesASegmentBelowTheHedgeThresholdToTheNextMirror() throws IOException {
+        try (RangeServer slow = new RangeServer(CONTENT, true);
+             RangeServer fast = new RangeServer(CONTENT, true)) {
+            slow.setBytesPerSecond(64 * 1024);
+            // One connection, so the single segment starts on the first mirror
+            SegmentedDownloader downloader = new SegmentedDownloader(1);
+            MirrorStats stats = new MirrorStats();
+            downloader.setMirrorStats(stats);
+            SegmentedDownloader.RangeProbe slowProbe = downloader.probe(slow.url("archive.zip"));
+            SegmentedDownloader.RangeProbe fastProbe = downloader.probe(fast.url("archive.zip"));
+            Path partPath = tempDir.resolve("archive.zip.part");
+            DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, slowProbe.url(), slowProbe);
+            MessageDigest digest = Digests.newSha256();
+
+            long startNanos = System.nanoTime();
+            downloader.download(List.of(slowProbe, fastProbe), partPath, checkpoint, tracker(), digest);
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(partPath));
+            assertEquals(Digests.toHex(Digests.newSha256().digest(CONTENT)), Digests.toHex(digest.digest()));
+            assertEquals(List.of("bytes=0-" + (FILE_SIZE - 1)), slow.getRequestedRanges());
+            // The fast mirror got only what the slow one had not delivered when the watchdog gave up
+            assertEquals(1, fast.getRequestedRanges().size());
+            long movedFrom = Long.parseLong(fast.getRequestedRanges().get(0).substring("bytes=".length()).split("-")[0]);
+            assertTrue(movedFrom > 0 && movedFrom < FILE_SIZE / 2, "moved from byte " + movedFrom);
+            // The first window is not judged, so the switch comes after the second one
+            assertTrue(elapsedMillis >= 4_000 && elapsedMillis < 15_000, "took " + elapsedMillis + " ms");
+            // The throughput it delivered ranks it far behind next time
+            assertTrue(stats.expectedMillis(URI.create(slow.url("")), 0, FILE_SIZE)
+                    > 10 * stats.expectedMillis(URI.create(fast.url("")), 0, FILE_SIZE));
+        }
+    }
+
+    @Test
+    void failsOverWhenAMirrorDropsTheSegment() throws IOException {
+        try (RangeServer failing = new RangeServer(CONTENT, true);
+             RangeServer server = new RangeServer(CONTENT, true)) {
+            failing.failNextRanges(1);
+            SegmentedDownloader downloader = new SegmentedDownloader(1);
+            SegmentedDownloader.RangeProbe failingProbe = downloader.probe(failing.url("archive.zip"));
+            SegmentedDownloader.RangeProbe probe = downloader.probe(server.url("archive.zip"));
+            Path partPath = tempDir.resolve("archive.zip.part");
+            DownloadCheckpoint checkpoint = DownloadCheckpoint.loadOrCreate(partPath, failingProbe.url(), failingProbe);
+
+            downloader.download(List.of(failingProbe, probe), partPath, checkpoint, tracker(), null);
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(partPath));
+            // Only the bytes the checkpoint had not recorded are fetched again
+            assertEquals(1, server.getRequestedRanges().size());
+            assertTrue(requestedBytes(server.getRequestedRanges()) < FILE_SIZE);
+        }
+    }
+
+    private static long requestedBytes(List<String> ranges) {
+        long total = 0;
+        for (String range : ranges) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            total += Long.parseLong(bounds[1]) - Long.parseLong(bounds[0]) + 1;
+        }
+        return total;
+    }
+
+    private static ProgressTracker tracker() {
+        return TestData.silentTracker(InstallProgressListener.Phase.DOWNLOAD);
+    }
+}
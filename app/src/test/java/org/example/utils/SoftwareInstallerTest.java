@@ -0,0 +1,115 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SoftwareInstallerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void downloadsTarArchiveIntoTheCacheBeforeExtracting() throws Exception {
+        byte[] archive = gzip(new TarBuilder()
+                .directory("tool-1.0/")
+                .executable("tool-1.0/bin/tool", "#!/bin/sh\necho tool\n")
+                .symlink("tool-1.0/bin/tool-link", "tool")
+                .toByteArray());
+        String sha256 = Digests.toHex(Digests.newSha256().digest(archive));
+        String previousHome = System.getProperty("user.home");
+        System.setProperty("user.home", tempDir.toString());
+        try (RangeServer server = new RangeServer(archive, true)) {
+            SoftwareInstaller installer = new SoftwareInstaller();
+            installer.setDownloadCache(new DownloadCache(tempDir.resolve("cache"), DownloadCache.DEFAULT_MAX_BYTES));
+
+            installer.installSoftware(List.of(server.url("tool-1.0.tar.gz")), ExpectedChecksum.sha256(sha256),
+                    "Tool", "bin", true);
+
+            Path binPath = tempDir.resolve("Tool/tool-1.0/bin");
+            assertTrue(Files.isExecutable(binPath.resolve("tool")));
+            assertTrue(Files.isSymbolicLink(binPath.resolve("tool-link")));
+            int requests = server.getRequestCount();
+
+            // The archive went through the cache, so a second package with the same digest downloads nothing
+            installer.installSoftware(List.of(server.url("tool-1.0.tar.gz")), ExpectedChecksum.sha256(sha256),
+                    "ToolCopy", "bin", true);
+
+            assertEquals(requests, server.getRequestCount());
+            assertEquals("#!/bin/sh\necho tool\n", Files.readString(tempDir.resolve("ToolCopy/tool-1.0/bin/tool")));
+        } finally {
+            System.setProperty("user.home", previousHome);
+        }
+    }
+
+    @Test
+    void streamedInstallRecordsItsManifest() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            // Deflated entries written to a stream carry their CRC and size only after the data
+            out.putNextEntry(new ZipEntry("tool-1.0/bin/tool.cmd"));
+            out.write("@echo tool".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("tool-1.0/README"));
+            out.write("x".repeat(1000).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] archive = zip.toByteArray();
+        String previousHome = System.getProperty("user.home");
+        System.setProperty("user.home", tempDir.toString());
+        try (RangeServer server = new RangeServer(archive, false)) {
+            SoftwareInstaller installer = new SoftwareInstaller();
+            installer.setDownloadCache(null);
+            installer.setStreamingExtraction(true);
+
+            installer.installSoftware(List.of(server.url("tool-1.0.zip")), null, "Tool", "bin", true);
+
+            Path extractionDir = tempDir.resolve("Tool");
+            InstallManifest manifest = InstallManifest.read(extractionDir);
+            assertNotNull(manifest);
+            assertNotNull(manifest.fingerprint(extractionDir));
+            // The same CRCs and sizes the central directory reports, so a later install can skip these entries
+            Path archivePath = tempDir.resolve("tool-1.0.zip");
+            Files.write(archivePath, archive);
+            try (ZipFile zipFile = new ZipFile(archivePath.toFile())) {
+                for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                    assertTrue(manifest.isUnchanged(entry, extractionDir.resolve(entry.getName())), entry.getName());
+                }
+            }
+        } finally {
+            System.setProperty("user.home", previousHome);
+        }
+    }
+
+    @Test
+    void rejectsMirrorsWithoutChecksum() {
+        SoftwareInstaller installer = new SoftwareInstaller();
+        List<String> mirrors = List.of("https://nodejs.org/dist/node.zip", "https://mirror.example.org/node.zip");
+
+        assertThrows(IllegalArgumentException.class, () -> installer.installSoftware(mirrors, null, "Node", "", true));
+        assertThrows(IllegalArgumentException.class,
+                () -> new InstallPlan().addPackage("node", installer, mirrors, null, "Node", "", true));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes tar archives block by block for the tests, including the header variants real tools produce
+ * (ustar prefixes, GNU long names, pax headers, base-256 sizes), so the reader can be tested against
+ * exact bytes without depending on a tar binary.
+ */
+final class TarBuilder {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    TarBuilder file(String name, String content) {
+        return entry('0', "", name, "", 0644, content.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    TarBuilder executable(String name, String content) {
+        return entry('0', "", name, "", 0755, content.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    TarBuilder directory(String name) {
+        return entry('5', "", name, "", 0755, new byte[0], false);
+    }
+
+    TarBuilder symlink(String name, String target) {
+        return entry('2', "", name, target, 0777, new byte[0], false);
+    }
+
+    TarBuilder hardLink(String name, String target) {
+        return entry('1', "", name, target, 0644, new byte[0], false);
+    }
+
+    /**
+     * A file whose name is split into the ustar prefix and name fields.
+     */
+    TarBuilder ustarFile(String prefix, String name, String content) {
+        return entry('0', prefix, name, "", 0644, content.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * A file whose size field is written in GNU base-256 instead of octal.
+     */
+    TarBuilder base256File(String name, String content) {
+        return entry('0', "", name, "", 0644, content.getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * A GNU long name ({@code L}) or long link name ({@code K}) entry for the entry that follows.
+     */
+    TarBuilder gnuLong(char type, String value) {
+        byte[] data = (value + '\0').getBytes(StandardCharsets.UTF_8);
+        return entry(type, "", "././@LongLink", "", 0644, data, false);
+    }
+
+    /**
+     * A pax extended ({@code x}) or global ({@code g}) header with the given {@code key=value} records.
+     */
+    TarBuilder pax(char type, String... records) {
+        StringBuilder data = new StringBuilder();
+        for (String record : records) {
+            // The length prefix counts itself, so grow it until it is stable
+            int length = record.getBytes(StandardCharsets.UTF_8).length + 2;
+            while (Integer.toString(length).length() + record.getBytes(StandardCharsets.UTF_8).length + 2 != length) {
+                length = Integer.toString(length).length() + record.getBytes(StandardCharsets.UTF_8).length + 2;
+            }
+            data.append(length).append(' ').append(record).append('\n');
+        }
+        return entry(type, "", "PaxHeaders/entry", "", 0644, data.toString().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * A header whose size field does not match its data, as written when a pax size takes over.
+     */
+    TarBuilder fileWithHeaderSize(String name, long headerSize, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        out.writeBytes(header('0', "", name, "", 0644, headerSize, false));
+        writeData(data);
+        return this;
+    }
+
+    /**
+     * @return The archive, closed by the two zero blocks of the end-of-archive marker.
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.writeBytes(out.toByteArray());
+        archive.writeBytes(new byte[2 * BLOCK_SIZE]);
+        return archive.toByteArray();
+    }
+
+    private TarBuilder entry(char type, String prefix, String name, String linkName, int mode, byte[] data, boolean base256) {
+        out.writeBytes(header(type, prefix, name, linkName, mode, data.length, base256));
+        writeData(data);
+        return this;
+    }
+
+    private void writeData(byte[] data) {
+        out.writeBytes(data);
+        out.writeBytes(new byte[(BLOCK_SIZE - data.length % BLOCK_SIZE) % BLOCK_SIZE]);
+    }
+
+    private static byte[] header(char type, String prefix, String name, String linkName, int mode, long size, boolean base256) {
+        byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, 100, name);
+        put(header, 100, 8, octal(mode, 7));
+        put(header, 108, 8, octal(0, 7));
+        put(header, 116, 8, octal(0, 7));
+        if (base256) {
+            header[124] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                header[135 - i] = (byte) (size >>> (8 * i));
+            }
+        } else {
+            put(header, 124, 12, octal(size, 11));
+        }
+        put(header, 136, 12, octal(0, 11));
+        header[156] = (byte) type;
+        put(header, 157, 100, linkName);
+        put(header, 257, 6, "ustar\0");
+        put(header, 263, 2, "00");
+        put(header, 345, 155, prefix);
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+        put(header, 148, 8, octal(checksum, 6) + "\0 ");
+        return header;
+    }
+
+    private static String octal(long value, int digits) {
+        String octal = Long.toOctalString(value);
+        return "0".repeat(Math.max(0, digits - octal.length())) + octal;
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > length) {
+            throw new IllegalArgumentException("Does not fit in " + length + " bytes: " + value);
+        }
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
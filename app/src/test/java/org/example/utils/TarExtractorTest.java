@@ -0,0 +1,98 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TarExtractorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extractsFilesAndLinks() throws IOException {
+        byte[] archive = new TarBuilder()
+                .directory("root/")
+                .executable("root/bin/node", "#!binary")
+                .symlink("root/bin/npm", "../lib/npm-cli.js")
+                .hardLink("root/bin/node-copy", "root/bin/node")
+                .file("root/lib/npm-cli.js", "console.log('npm')")
+                .toByteArray();
+        Path destDir = Files.createDirectories(tempDir.resolve("dest"));
+
+        ArchiveFormat.Result result = extract(archive, destDir);
+
+        assertEquals("root", result.rootDirectoryName());
+        assertEquals(List.of("root/bin/node", "root/bin/npm", "root/bin/node-copy", "root/lib/npm-cli.js"), result.fileNames());
+        assertTrue(Files.isExecutable(destDir.resolve("root/bin/node")));
+        // The link points to an entry that came later in the archive
+        assertTrue(Files.isSymbolicLink(destDir.resolve("root/bin/npm")));
+        assertEquals("console.log('npm')", Files.readString(destDir.resolve("root/bin/npm")));
+        assertEquals("#!binary", Files.readString(destDir.resolve("root/bin/node-copy")));
+    }
+
+    @Test
+    void rejectsSymlinkEscapingThroughAnEarlierLink() throws IOException {
+        // Each link looks harmless on its own: a/b/../x would be inside, but a is the destination itself
+        byte[] archive = new TarBuilder()
+                .symlink("a", ".")
+                .symlink("a/b", "../x")
+                .toByteArray();
+        Path destDir = Files.createDirectories(tempDir.resolve("dest"));
+
+        IOException e = assertThrows(IOException.class, () -> extract(archive, destDir));
+        assertTrue(e.getMessage().contains("outside"), e.getMessage());
+        assertFalse(Files.exists(destDir.resolve("b"), LinkOption.NOFOLLOW_LINKS));
+    }
+
+    @Test
+    void rejectsHardLinkEscapingThroughASymlink() throws IOException {
+        Files.writeString(tempDir.resolve("secret.txt"), "secret");
+        // By its text the target is dest/secret.txt, an entry of the archive
+        byte[] archive = new TarBuilder()
+                .file("secret.txt", "harmless")
+                .symlink("self", ".")
+                .hardLink("stolen", "self/../secret.txt")
+                .toByteArray();
+        Path destDir = Files.createDirectories(tempDir.resolve("dest"));
+
+        assertThrows(IOException.class, () -> extract(archive, destDir));
+        assertFalse(Files.exists(destDir.resolve("stolen")));
+    }
+
+    @Test
+    void rejectsAbsoluteAndParentSymlinks() throws IOException {
+        for (String target : new String[] { "/etc/passwd", "../outside", "dir/../../outside" }) {
+            byte[] archive = new TarBuilder().directory("dir/").symlink("link", target).toByteArray();
+            Path destDir = Files.createDirectories(tempDir.resolve("dest-" + target.hashCode()));
+
+            assertThrows(IOException.class, () -> extract(archive, destDir), target);
+            assertFalse(Files.exists(destDir.resolve("link"), LinkOption.NOFOLLOW_LINKS));
+        }
+    }
+
+    @Test
+    void rejectsEntryOutsideTheDestination() throws IOException {
+        byte[] archive = new TarBuilder().file("../escaped.txt", "content").toByteArray();
+        Path destDir = Files.createDirectories(tempDir.resolve("dest"));
+
+        assertThrows(IOException.class, () -> extract(archive, destDir));
+        assertFalse(Files.exists(tempDir.resolve("escaped.txt")));
+    }
+
+    private static ArchiveFormat.Result extract(byte[] archive, Path destDir) throws IOException {
+        return new TarExtractor().extract(new ByteArrayInputStream(archive), destDir,
+                TestData.silentTracker(InstallProgressListener.Phase.EXTRACT));
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TarReaderTest {
+
+    private static final String LONG_NAME = "node-v22.16.0-linux-x64/" + "lib/node_modules/".repeat(10) + "package.json";
+
+    @Test
+    void readsPlainEntries() throws IOException {
+        byte[] archive = new TarBuilder()
+                .directory("./root/")
+                .executable("./root/bin/node", "#!binary")
+                .symlink("root/bin/npm", "../lib/npm-cli.js")
+                .hardLink("root/bin/node2", "./root/bin/node")
+                .toByteArray();
+
+        List<TarReader.Entry> entries = readAll(archive, new ArrayList<>());
+
+        assertEquals(List.of(
+                new TarReader.Entry("root/", TarReader.Type.DIRECTORY, 0, 0755, null),
+                new TarReader.Entry("root/bin/node", TarReader.Type.FILE, 8, 0755, null),
+                new TarReader.Entry("root/bin/npm", TarReader.Type.SYMLINK, 0, 0777, "../lib/npm-cli.js"),
+                new TarReader.Entry("root/bin/node2", TarReader.Type.HARDLINK, 0, 0644, "root/bin/node")), entries);
+    }
+
+    @Test
+    void joinsUstarPrefixAndName() throws IOException {
+        byte[] archive = new TarBuilder().ustarFile("root/some/deep", "file.txt", "content").toByteArray();
+        List<String> contents = new ArrayList<>();
+
+        List<TarReader.Entry> entries = readAll(archive, contents);
+
+        assertEquals("root/some/deep/file.txt", entries.get(0).name());
+        assertEquals(List.of("content"), contents);
+    }
+
+    @Test
+    void appliesGnuLongNameAndLongLinkName() throws IOException {
+        byte[] archive = new TarBuilder()
+                .gnuLong('L', LONG_NAME)
+                .file("truncated-name", "{}")
+                .gnuLong('L', LONG_NAME + ".link")
+                .gnuLong('K', LONG_NAME)
+                .symlink("truncated-link", "truncated-target")
+                .file("short", "after")
+                .toByteArray();
+        List<String> contents = new ArrayList<>();
+
+        List<TarReader.Entry> entries = readAll(archive, contents);
+
+        assertEquals(LONG_NAME, entries.get(0).name());
+        assertEquals(LONG_NAME + ".link", entries.get(1).name());
+        assertEquals(LONG_NAME, entries.get(1).linkName());
+        // The long name only applies to the entry right after it
+        assertEquals("short", entries.get(2).name());
+        assertEquals(List.of("{}", "after"), contents);
+    }
+
+    @Test
+    void appliesPaxPathLinkPathAndSize() throws IOException {
+        byte[] archive = new TarBuilder()
+                .pax('g', "comment=0123456789abcdef")
+                .pax('x', "path=" + LONG_NAME, "mtime=1700000000.5")
+                .file("truncated-name", "{}")
+                .pax('x', "linkpath=" + LONG_NAME)
+                .symlink("link", "truncated-target")
+                // A size that does not fit the header's octal field is carried by pax; the header says 0
+                .pax('x', "size=12")
+                .fileWithHeaderSize("large", 0, "pax-sized!!!")
+                .file("next", "still in sync")
+                .toByteArray();
+        List<String> contents = new ArrayList<>();
+
+        List<TarReader.Entry> entries = readAll(archive, contents);
+
+        assertEquals(4, entries.size());
+        assertEquals(LONG_NAME, entries.get(0).name());
+        assertEquals(LONG_NAME, entries.get(1).linkName());
+        assertEquals(12, entries.get(2).size());
+        assertEquals(List.of("{}", "pax-sized!!!", "still in sync"), contents);
+    }
+
+    @Test
+    void readsBase256Size() throws IOException {
+        byte[] archive = new TarBuilder().base256File("big", "base-256 sized").file("next", "ok").toByteArray();
+        List<String> contents = new ArrayList<>();
+
+        List<TarReader.Entry> entries = readAll(archive, contents);
+
+        assertEquals("base-256 sized".length(), entries.get(0).size());
+        assertEquals(List.of("base-256 sized", "ok"), contents);
+    }
+
+    @Test
+    void skipsUnreadDataOfAnEntry() throws IOException {
+        byte[] archive = new TarBuilder().file("first", "x".repeat(2000)).file("second", "y").toByteArray();
+        TarReader reader = new TarReader(new ByteArrayInputStream(archive));
+
+        assertEquals("first", reader.next().name());
+        assertEquals("second", reader.next().name());
+        byte[] buffer = new byte[10];
+        assertEquals(1, reader.read(buffer));
+        assertNull(reader.next());
+    }
+
+    @Test
+    void rejectsCorruptedHeader() {
+        byte[] archive = new TarBuilder().file("file", "content").toByteArray();
+        archive[0] ^= 1;
+
+        IOException e = assertThrows(IOException.class, () -> new TarReader(new ByteArrayInputStream(archive)).next());
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    }
+
+    @Test
+    void rejectsArchiveEndingInsideAnEntry() throws IOException {
+        byte[] archive = new TarBuilder().file("file", "x".repeat(1000)).toByteArray();
+        TarReader reader = new TarReader(new ByteArrayInputStream(Arrays.copyOf(archive, 700)));
+        reader.next();
+        byte[] buffer = new byte[1000];
+
+        assertThrows(IOException.class, () -> {
+            while (reader.read(buffer) != -1) {
+                // Reads what is there, then fails instead of reporting the end of the entry
+            }
+        });
+    }
+
+    private static List<TarReader.Entry> readAll(byte[] archive, List<String> contents) throws IOException {
+        TarReader reader = new TarReader(new ByteArrayInputStream(archive));
+        List<TarReader.Entry> entries = new ArrayList<>();
+        byte[] buffer = new byte[7];
+        TarReader.Entry entry;
+        while ((entry = reader.next()) != null) {
+            entries.add(entry);
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+            if (entry.type() == TarReader.Type.FILE) {
+                contents.add(data.toString(StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.utils;
+
+import java.util.Random;
+
+/**
+ * Helpers shared by the tests.
+ */
+final class TestData {
+
+    private TestData() {
+    }
+
+    /**
+     * @param size The size in bytes.
+     * @return Reproducible random bytes, so a mix-up of ranges cannot go unnoticed.
+     */
+    static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * @param phase The phase the tracker is for.
+     * @return A tracker that reports to nobody.
+     */
+    static ProgressTracker silentTracker(InstallProgressListener.Phase phase) {
+        return new ProgressTracker((appName, p, bytesDone, bytesTotal, entriesDone, entriesTotal, bytesPerSecond, etaMillis) -> {
+        }, "test", phase);
+    }
+}
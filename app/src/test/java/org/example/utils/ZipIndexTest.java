@@ -0,0 +1,222 @@
+package org.example.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipIndexTest {
+
+    private static final byte[] STORED_CONTENT = "stored content".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEFLATED_CONTENT = "deflated ".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void indexesEntriesAndServesTheirData() throws Exception {
+        Path zipFilePath = writeArchive(tempDir.resolve("plain.zip"), new byte[0]);
+
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            assertArchive(index);
+        }
+    }
+
+    @Test
+    void indexesArchiveWithDataInFront() throws Exception {
+        // Like the launcher of a self-extracting file; every recorded offset is off by its length
+        Path zipFilePath = writeArchive(tempDir.resolve("prefixed.zip"), "#!/bin/sh launcher\n".repeat(50).getBytes(StandardCharsets.UTF_8));
+
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            assertArchive(index);
+        }
+    }
+
+    @Test
+    void indexesZip64ArchiveWithMoreThan65535Entries() throws IOException {
+        int count = 70_000;
+        Path zipFilePath = tempDir.resolve("many.zip");
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
+            zipOut.setLevel(0);
+            for (int i = 0; i < count; i++) {
+                zipOut.putNextEntry(new ZipEntry("many/" + i));
+                zipOut.closeEntry();
+            }
+        }
+
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            assertEquals(count, index.size());
+            assertEquals("many/69999", index.getName(count - 1));
+            assertEquals("many", index.getRootDirectory());
+        }
+    }
+
+    @Test
+    void readsSizesAndOffsetFromZip64ExtraField() throws Exception {
+        for (int prefixLength : new int[] { 0, 1000 }) {
+            Path zipFilePath = tempDir.resolve("zip64-" + prefixLength + ".zip");
+            Files.write(zipFilePath, zip64Archive("root/file.txt", STORED_CONTENT, new byte[prefixLength]));
+
+            try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+                assertEquals(1, index.size());
+                assertEquals("root/file.txt", index.getName(0));
+                assertEquals(STORED_CONTENT.length, index.getSize(0));
+                assertEquals(STORED_CONTENT.length, index.getCompressedSize(0));
+                assertEquals(crc(STORED_CONTENT), index.getCrc(0));
+                assertArrayEquals(STORED_CONTENT, index.getData(0).toArray(ValueLayout.JAVA_BYTE));
+            }
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotArchives() throws IOException {
+        Path notZip = Files.writeString(tempDir.resolve("not.zip"), "just text");
+
+        assertThrows(ZipException.class, () -> ZipIndex.open(notZip));
+    }
+
+    @Test
+    void rootDirectoryNeedsEveryEntryBelowIt() throws IOException {
+        Path zipFilePath = tempDir.resolve("flat.zip");
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
+            zipOut.putNextEntry(new ZipEntry("app/bin/node"));
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("README"));
+            zipOut.closeEntry();
+        }
+
+        try (ZipIndex index = ZipIndex.open(zipFilePath)) {
+            assertNull(index.getRootDirectory());
+        }
+    }
+
+    private static void assertArchive(ZipIndex index) throws ZipException, DataFormatException {
+        assertEquals(4, index.size());
+        assertEquals("app-1.0/", index.getName(0));
+        assertTrue(index.isDirectory(0));
+        assertEquals("app-1.0", index.getRootDirectory());
+
+        assertEquals("app-1.0/stored.txt", index.getName(1));
+        assertFalse(index.isDirectory(1));
+        assertEquals(ZipIndex.STORED, index.getMethod(1));
+        assertEquals(crc(STORED_CONTENT), index.getCrc(1));
+        assertArrayEquals(STORED_CONTENT, index.getData(1).toArray(ValueLayout.JAVA_BYTE));
+
+        assertEquals(ZipIndex.DEFLATED, index.getMethod(2));
+        assertEquals(DEFLATED_CONTENT.length, index.getSize(2));
+        assertTrue(index.getCompressedSize(2) < index.getSize(2));
+        assertArrayEquals(DEFLATED_CONTENT, inflate(index.getData(2).toArray(ValueLayout.JAVA_BYTE), DEFLATED_CONTENT.length));
+
+        assertArrayEquals(new int[] { 1, 2 }, index.select(List.of("app-1.0/stored.txt", "app-1.0/deflated.txt/")));
+        assertArrayEquals(new int[] { 3 }, index.select(List.of("app-1.0/bin")));
+        assertEquals(0, index.select(List.of("app-1.0/bi")).length);
+    }
+
+    private static Path writeArchive(Path zipFilePath, byte[] prefix) throws IOException {
+        try (OutputStream out = Files.newOutputStream(zipFilePath)) {
+            out.write(prefix);
+            ZipOutputStream zipOut = new ZipOutputStream(out);
+            zipOut.putNextEntry(new ZipEntry("app-1.0/"));
+            zipOut.closeEntry();
+            ZipEntry stored = new ZipEntry("app-1.0/stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_CONTENT.length);
+            stored.setCrc(crc(STORED_CONTENT));
+            zipOut.putNextEntry(stored);
+            zipOut.write(STORED_CONTENT);
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("app-1.0/deflated.txt"));
+            zipOut.write(DEFLATED_CONTENT);
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("app-1.0/bin/node"));
+            zipOut.closeEntry();
+            zipOut.finish();
+        }
+        return zipFilePath;
+    }
+
+    /**
+     * Builds an archive with one stored entry whose sizes and local header offset are all in the ZIP64
+     * extra field, as writers do for entries over 4 GiB, followed by the ZIP64 end records.
+     */
+    private static byte[] zip64Archive(String name, byte[] content, byte[] prefix) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(prefix.length + 512 + content.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(prefix);
+        long archiveStart = buffer.position();
+
+        buffer.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt((int) crc(content))
+                .putInt(-1).putInt(-1).putShort((short) nameBytes.length).putShort((short) 20)
+                .put(nameBytes).putShort((short) 1).putShort((short) 16)
+                .putLong(content.length).putLong(content.length)
+                .put(content);
+
+        long directoryOffset = buffer.position() - archiveStart;
+        buffer.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt((int) crc(content))
+                .putInt(-1).putInt(-1).putShort((short) nameBytes.length).putShort((short) 28)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1)
+                .put(nameBytes).putShort((short) 1).putShort((short) 24)
+                .putLong(content.length).putLong(content.length).putLong(0);
+        long directorySize = buffer.position() - archiveStart - directoryOffset;
+
+        long zip64EndOffset = buffer.position() - archiveStart;
+        buffer.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(1).putLong(1).putLong(directorySize).putLong(directoryOffset);
+        buffer.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) -1).putShort((short) -1)
+                .putInt(-1).putInt(-1).putShort((short) 0);
+
+        byte[] archive = new byte[buffer.position()];
+        buffer.flip().get(archive);
+        return archive;
+    }
+
+    private static byte[] inflate(byte[] compressed, int size) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished() && out.size() < size) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}